@@ -1,344 +1,742 @@
-// Copyright (C) 2013, 2015-2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape;
-
-import jurbano.melodyshape.comparison.*;
-import jurbano.melodyshape.comparison.alignment.GlobalAligner;
-import jurbano.melodyshape.comparison.alignment.HybridAligner;
-import jurbano.melodyshape.comparison.alignment.LocalAligner;
-import jurbano.melodyshape.comparison.bspline.BSplinePitchNGramComparer;
-import jurbano.melodyshape.comparison.bspline.BSplineShapeNGramComparer;
-import jurbano.melodyshape.comparison.bspline.BSplineTimeNGramComparer;
-import jurbano.melodyshape.model.*;
-import jurbano.melodyshape.ranking.Result;
-import jurbano.melodyshape.ranking.ResultRanker;
-import jurbano.melodyshape.ranking.UntieResultRanker;
-import jurbano.melodyshape.ui.ConsoleUIObserver;
-import jurbano.melodyshape.ui.GraphicalUIObserver;
-import jurbano.melodyshape.ui.UIObserver;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.*;
-
-/**
- * Main class of the tool. Contains all the logic to read MIDI collections,
- * instantiate and run algorithms. Delegates presentation logic in
- * {@code UIObserver}s.
- * 
- * @author Julián Urbano
- */
-public class MelodyShape
-{
-	/**
-	 * Update progress to user interface every so melodies compared.
-	 */
-	public static int VERBOSE_PERIOD = 50;
-	/**
-	 * The release version number.
-	 */
-	public static String VERSION = "1.4";
-	/**
-	 * The copyright notice, including date and version.
-	 */
-	public static String COPYRIGHT_NOTICE ="MelodyShape " + MelodyShape.VERSION
-			+ "  Copyright (C) 2013-2016  Julian Urbano <urbano.julian@gmail.com>\n"
-			+ "This program is distributed under the terms of the MIT License.";
-	/**
-	 * The list of algorithms available in the release.
-	 */
-	public static List<String> ALGORITHMS = Arrays.asList("2010-domain", "2010-pitchderiv", "2010-shape", "2011-pitch",
-			"2011-time", "2011-shape", "2012-shapeh", "2012-shapel", "2012-shapeg", "2012-time", "2012-shapetime",
-			"2013-shapeh", "2013-time", "2013-shapetime",
-			"2014-shapeh", "2014-time", "2014-shapetime",
-			"2015-shapeh", "2015-time", "2015-shapetime");
-
-	/**
-	 * Returns the list of queries found in a path.
-	 * 
-	 * @param path
-	 *            the path to read queries from (a single file or a directory).
-	 * @return the list of melodies read.
-	 */
-	public static ArrayList<Melody> readQueries(File path) {
-		MelodyReader reader = new MidiReader();
-		ArrayList<Melody> queries = new ArrayList<Melody>();
-		if (path.isDirectory()) {
-			// query path is a directory, read all files
-			for (File qFile : path.listFiles())
-				try {
-					if (reader.accept(path, qFile.getName()))
-						queries.add(reader.read(qFile.getName(), qFile.getAbsolutePath()));
-				} catch (IOException ex) {
-					throw new IllegalArgumentException("bad format in query file '" + qFile.getAbsolutePath() + "': "
-							+ ex.getMessage(), ex);
-				}
-		} else {
-			// query path is a single file
-			try {
-				queries.add(reader.read(path.getName(), path.getAbsolutePath()));
-			} catch (IOException ex) {
-				throw new IllegalArgumentException("bad format in query file '" + path.getAbsolutePath() + "': "
-						+ ex.getMessage(), ex);
-			}
-		}
-		return queries;
-	}
-
-	/**
-	 * Returns a melody collection found in a path.
-	 *
-	 * @param path
-	 *            the path to the directory containing all melodies.
-	 * @return the melody collection.
-	 */
-	public static MelodyCollection readCollection(File path) {
-		MelodyReader reader = new MidiReader();
-		try {
-			return new InMemoryMelodyCollection(path.getName(), path.getAbsolutePath(), reader);
-		} catch (IOException ex) {
-			throw new IllegalArgumentException(ex.getMessage());
-		}
-	}
-
-	/**
-	 * Returns a melody main comparer given its name.
-	 * 
-	 * @param name
-	 *            the name of the melody main comparer.
-	 * @param coll
-	 *            the collection of melodies to use with the comparer.
-	 * @return the melody main comparer.
-	 */
-	public static MelodyComparer getMainComparer(String name, MelodyCollection coll) {
-		if (Arrays.asList("2010-domain").contains(name))
-			return new NGramMelodyComparer(3, new HybridAligner(new FrequencyNGramComparer(coll, 3,
-					new IntervalPitchNGramComparer()))); // faster without cache
-		else if (Arrays.asList("2010-pitchderiv").contains(name))
-			return new NGramMelodyComparer(3, new HybridAligner(new CachedNGramComparer(new FrequencyNGramComparer(
-					coll, 3, new BSplinePitchNGramComparer()))));
-		else if (Arrays.asList("2010-shape", "2011-shape", "2012-shapeh", "2013-shapeh", "2014-shapeh", "2015-shapeh",
-				"2012-shapetime", "2013-shapetime", "2014-shapetime", "2015-shapetime").contains(name))
-			return new NGramMelodyComparer(3, new HybridAligner(new CachedNGramComparer(new FrequencyNGramComparer(
-					coll, 3, new BSplineShapeNGramComparer(8, 1, 0.5)))));
-		else if (Arrays.asList("2011-pitch").contains(name))
-			return new NGramMelodyComparer(4, new HybridAligner(new CachedNGramComparer(new CombinedNGramComparer(
-					new BSplinePitchNGramComparer(), 1, 2.1838, new BSplineTimeNGramComparer(), 0, 0.4772))));
-		else if (Arrays.asList("2011-time", "2012-time", "2013-time", "2014-time", "2015-time").contains(name))
-			return new NGramMelodyComparer(4, new HybridAligner(new CachedNGramComparer(new CombinedNGramComparer(
-					new BSplinePitchNGramComparer(), 1, 2.1838, new BSplineTimeNGramComparer(), 0.5, 0.4772))));
-		else if (Arrays.asList("2012-shapel").contains(name))
-			return new NGramMelodyComparer(3, new LocalAligner(new CachedNGramComparer(new FrequencyNGramComparer(coll,
-					3, new BSplineShapeNGramComparer(8, 1, 0.5)))));
-		else if (Arrays.asList("2012-shapeg").contains(name))
-			return new NGramMelodyComparer(3, new GlobalAligner(new CachedNGramComparer(new FrequencyNGramComparer(
-					coll, 3, new BSplineShapeNGramComparer(8, 1, 0.5)))));
-		else
-			throw new IllegalArgumentException("unrecognized algorithm name: '" + name + "'");
-	}
-
-	/**
-	 * Returns a results main ranker given its name.
-	 * 
-	 * @param name
-	 *            the name of the results main ranker.
-	 * @param coll
-	 *            the collection of melodies to compare.
-	 * 
-	 * @return the results main ranker.
-	 */
-	public static ResultRanker getMainRanker(String name, MelodyCollection coll) {
-		if (Arrays.asList("2010-domain", "2010-pitchderiv", "2010-shape", "2011-shape", "2012-shapeh", "2012-shapel",
-				"2012-shapeg", "2012-shapetime", "2013-shapeh", "2013-shapetime", "2014-shapeh", "2014-shapetime",
-				"2015-shapeh", "2015-shapetime").contains(name))
-			return new UntieResultRanker(new NGramMelodyComparer(3, new HybridAligner(new EqualPitchNGramComparer())));
-		else if(Arrays.asList("2011-pitch", "2011-time", "2012-time", "2013-time", "2014-time", "2015-time").contains(name))
-			return new UntieResultRanker(new NGramMelodyComparer(4, new HybridAligner(new EqualPitchNGramComparer())));
-		else
-			throw new IllegalArgumentException("unrecognized algorithm name: '" + name + "'");
-	}
-	
-	/**
-	 * Returns a melody re-rank comparer given its name (for 201x-shapetime algorithms).
-	 * 
-	 * @param name
-	 *            the name of the melody re-rank comparer.
-	 * @param coll
-	 *            the collection of melodies to use with the comparer.
-	 * @return the melody re-rank comparer or {@code null} if the comparer does not re-rank.
-	 */
-	public static MelodyComparer getRerankComparer(String name, MelodyCollection coll) {
-		if (Arrays.asList("2012-shapetime", "2013-shapetime", "2014-shapetime", "2015-shapetime").contains(name))
-			return new NGramMelodyComparer(4, new HybridAligner(new CachedNGramComparer(new CombinedNGramComparer(
-					new BSplinePitchNGramComparer(), 1, 2.1838, new BSplineTimeNGramComparer(), 0.5, 0.4772))));
-		else
-			return null;
-	}
-	
-	/**
-	 * Returns a results re-rank ranker given its name (for 201x-shapetime algorithms).
-	 * 
-	 * @param name
-	 *            the name of the results re-rank ranker.
-	 * @param coll
-	 *            the collection of melodies to compare.
-	 * 
-	 * @return the results re-rank ranker or {@code null} if the comparer does not re-rank.
-	 */
-	public static ResultRanker getRerankRanker(String name, MelodyCollection coll) {
-		if (Arrays.asList("2012-shapetime", "2013-shapetime", "2014-shapetime", "2015-shapetime").contains(name))
-			return new UntieResultRanker(new NGramMelodyComparer(3, new HybridAligner(new EqualPitchNGramComparer())));
-		else
-			return null;
-	}
-
-		
-	/**
-	 * Runs an algorithm (comparer and ranker) as specified.
-	 * 
-	 * @param melodyCmp
-	 *            the base melody comparer.
-	 * @param melodyCmpRerank
-	 *            the melody comparer to rerank, or {@code null} if no reranking
-	 *            is needed.
-	 * @param ranker
-	 *            the base results ranker.
-	 * @param rankerRerank
-	 *            the results ranker to rerank, or {@code null} if no reranking
-	 *            is needed.
-	 * @param kOpt
-	 *            the cutoff.
-	 * @param queries
-	 *            the list of queries.
-	 * @param numQuery
-	 *            the index of the particular query to run.
-	 * @param coll
-	 *            the collection of melodies to compare with the query.
-	 * @param tOpt
-	 *            the number of threads to use.
-	 * @param observer
-	 *            the user interface observer to notify changes.
-	 * @return the ranked list of results.
-	 */
-	public static Result[] runAlgorithm(MelodyComparer melodyCmp, MelodyComparer melodyCmpRerank, ResultRanker ranker,
-			ResultRanker rankerRerank, int kOpt, ArrayList<Melody> queries, int numQuery, MelodyCollection coll, int tOpt, UIObserver observer){		
-		Melody query = queries.get(numQuery);
-		Result[] results = MelodyShape.runComparer(melodyCmp, query, coll, coll.size(), numQuery, queries.size(), tOpt, observer);
-		observer.updateStartRanker(query, numQuery, queries.size());
-		ranker.rank(query, results, kOpt);
-
-		if (melodyCmpRerank!=null && rankerRerank!=null) {
-			// Get top results with score as large as the k-th (can be more than k due to ties)
-			double kScore = results[Math.min(kOpt, results.length) - 1].getScore();
-			ArrayList<Melody> melodiesRerank = new ArrayList<Melody>();
-			for (int k = 0; k < results.length; k++)
-				if (results[k].getScore() >= kScore)
-					melodiesRerank.add(results[k].getMelody());
-				else
-					break;
-			// rerun
-			results = MelodyShape.runComparer(melodyCmpRerank, query, melodiesRerank, melodiesRerank.size(),
-					numQuery, queries.size(), tOpt, null);
-			// rerank
-			rankerRerank.rank(query, results, kOpt);
-		}
-		return results;
-	}
-	
-	/**
-	 * Runs a {@link MelodyComparer} for a query {@link Melody} and a collection
-	 * of melodies.
-	 * 
-	 * @param melodyCmp
-	 *            the comparer to use.
-	 * @param query
-	 *            the query melody.
-	 * @param coll
-	 *            the collection of melodies.
-	 * @param collSize
-	 *            the number of melodies in the collection.
-	 * @param numQuery
-	 *            the query number, for verbosing purposes.
-	 * @param totalQueries
-	 *            the total number of queries, for verbosing purposes.
-	 * @param tOpt
-	 *            the number of threads to use.
-	 * @param observer
-	 *            the user interface observe to notify of progress.
-	 * @return the array of results, not necessarily sorted by similarity.
-	 * @throws RuntimeException
-	 *             if there is some error or an {@link InterruptedException} is
-	 *             received.
-	 */
-	public static Result[] runComparer(final MelodyComparer melodyCmp, final Melody query, final Iterable<Melody> coll,
-			final int collSize, final int numQuery, final int totalQueries, int tOpt, final UIObserver observer)
-			throws RuntimeException {
-		// Create one callable per melody
-		ArrayList<Callable<Result>> callables = new ArrayList<>(collSize);
-		CountDownLatch latch = new CountDownLatch(collSize);
-
-		for (final Melody m : coll) {
-			callables.add(new Callable<Result>() {
-				CountDownLatch latch;
-				
-				Callable<Result> init(CountDownLatch latch) {
-					this.latch = latch;
-					return this;
-				}
-				
-				@Override
-				public Result call() throws Exception {
-					Result r = new Result(m, melodyCmp.compare(query, m));
-					synchronized (this.latch) { // don't know if we need to sync here, but just in case
-						this.latch.countDown();
-						if (observer != null && this.latch.getCount() % MelodyShape.VERBOSE_PERIOD == 0)
-							observer.updateProgressComparer(query, numQuery, totalQueries, 1.0 - ((double) this.latch.getCount()) / collSize);
-					}
-					return r;
-				}
-			}.init(latch));
-		}
-		// Execute all callables and collect results
-		ExecutorService service = Executors.newFixedThreadPool(tOpt);
-		
-		Result[] res = new Result[collSize];
-		try {
-			List<Future<Result>> futures = service.invokeAll(callables);
-			if (observer!=null)
-				observer.updateProgressComparer(query, numQuery, totalQueries, 1);
-			for (int i = 0; i < futures.size(); i++)
-				res[i] = futures.get(i).get();
-			service.shutdown();
-		} catch (InterruptedException | ExecutionException ex) {
-			service.shutdownNow();
-			throw new RuntimeException(ex);
-		}
-		return res;
-	}
-
-	/**
-	 * @param args
-	 */
-	public static void main(String[] args) {
-		UIObserver observer = null;
-		
-		// if -gui is present, run graphical ui
-		for (String arg : args)
-			if (arg.equals("-gui"))
-				observer = new GraphicalUIObserver();
-		
-		if(observer==null){			
-			try{
-				System.in.available(); // throws if not in console
-				observer=new ConsoleUIObserver(args);
-			}catch(Exception ex){
-				observer = new GraphicalUIObserver();
-			}
-		}
-		observer.start();
-	}
-}
+// Copyright (C) 2013, 2015-2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape;
+
+import jurbano.melodyshape.comparison.*;
+import jurbano.melodyshape.comparison.alignment.AlignerFactory;
+import jurbano.melodyshape.comparison.alignment.AlignmentLimits;
+import jurbano.melodyshape.comparison.alignment.AlignmentPrecision;
+import jurbano.melodyshape.comparison.alignment.GlobalAligner;
+import jurbano.melodyshape.comparison.bspline.BSplinePitchNGramComparer;
+import jurbano.melodyshape.comparison.bspline.BSplineShapeNGramComparer;
+import jurbano.melodyshape.comparison.bspline.BSplineShapeTableNGramComparer;
+import jurbano.melodyshape.comparison.bspline.BSplineTimeNGramComparer;
+import jurbano.melodyshape.model.*;
+import jurbano.melodyshape.ranking.Result;
+import jurbano.melodyshape.ranking.ResultRanker;
+import jurbano.melodyshape.ranking.ScoreHeap;
+import jurbano.melodyshape.ranking.UntieResultRanker;
+import jurbano.melodyshape.ui.ConsoleUIObserver;
+import jurbano.melodyshape.ui.GraphicalUIObserver;
+import jurbano.melodyshape.ui.UIObserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Main class of the tool. Contains all the logic to read MIDI collections,
+ * instantiate and run algorithms. Delegates presentation logic in
+ * {@code UIObserver}s.
+ * 
+ * @author Julián Urbano
+ */
+public class MelodyShape
+{
+	/**
+	 * Update progress to user interface every so melodies compared.
+	 */
+	public static int VERBOSE_PERIOD = 50;
+	/**
+	 * Maximum number of melodies compared with the query in a single call.
+	 */
+	public static int CHUNK_SIZE = 16;
+	/**
+	 * The release version number.
+	 */
+	public static String VERSION = "1.4";
+	/**
+	 * The copyright notice, including date and version.
+	 */
+	public static String COPYRIGHT_NOTICE ="MelodyShape " + MelodyShape.VERSION
+			+ "  Copyright (C) 2013-2016  Julian Urbano <urbano.julian@gmail.com>\n"
+			+ "This program is distributed under the terms of the MIT License.";
+	/**
+	 * The list of algorithms available in the release.
+	 */
+	public static List<String> ALGORITHMS = Arrays.asList("2010-domain", "2010-pitchderiv", "2010-shape", "2011-pitch",
+			"2011-time", "2011-shape", "2012-shapeh", "2012-shapel", "2012-shapeg", "2012-time", "2012-shapetime",
+			"2013-shapeh", "2013-time", "2013-shapetime",
+			"2014-shapeh", "2014-time", "2014-shapetime",
+			"2015-shapeh", "2015-time", "2015-shapetime");
+
+	/**
+	 * Returns the list of queries found in a path.
+	 * 
+	 * @param path
+	 *            the path to read queries from (a single file or a directory).
+	 * @return the list of melodies read.
+	 */
+	public static ArrayList<Melody> readQueries(File path) {
+		MelodyReader reader = new MidiReader();
+		ArrayList<Melody> queries = new ArrayList<Melody>();
+		if (path.isDirectory()) {
+			// query path is a directory, read all files
+			for (File qFile : path.listFiles())
+				try {
+					if (reader.accept(path, qFile.getName()))
+						queries.add(reader.read(qFile.getName(), qFile.getAbsolutePath()));
+				} catch (IOException ex) {
+					throw new IllegalArgumentException("bad format in query file '" + qFile.getAbsolutePath() + "': "
+							+ ex.getMessage(), ex);
+				}
+		} else {
+			// query path is a single file
+			try {
+				queries.add(reader.read(path.getName(), path.getAbsolutePath()));
+			} catch (IOException ex) {
+				throw new IllegalArgumentException("bad format in query file '" + path.getAbsolutePath() + "': "
+						+ ex.getMessage(), ex);
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Returns a melody collection found in a path.
+	 *
+	 * @param path
+	 *            the path to the directory containing all melodies.
+	 * @return the melody collection.
+	 */
+	public static MelodyCollection readCollection(File path) {
+		MelodyReader reader = new MidiReader();
+		try {
+			return new InMemoryMelodyCollection(path.getName(), path.getAbsolutePath(), reader);
+		} catch (IOException ex) {
+			throw new IllegalArgumentException(ex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns a melody main comparer given its name.
+	 * 
+	 * @param name
+	 *            the name of the melody main comparer.
+	 * @param coll
+	 *            the collection of melodies to use with the comparer.
+	 * @return the melody main comparer.
+	 */
+	public static MelodyComparer getMainComparer(String name, MelodyCollection coll) {
+		return MelodyShape.getMainComparer(name, coll, AlignmentLimits.NONE);
+	}
+
+	/**
+	 * Returns a melody main comparer given its name, with limits on the cells
+	 * computed by hybrid and global aligners.
+	 * 
+	 * @param name
+	 *            the name of the melody main comparer.
+	 * @param coll
+	 *            the collection of melodies to use with the comparer.
+	 * @param limits
+	 *            the band and X-drop limits of the aligner, ignored by local
+	 *            aligners.
+	 * @return the melody main comparer.
+	 */
+	public static MelodyComparer getMainComparer(String name, MelodyCollection coll, AlignmentLimits limits) {
+		return MelodyShape.getMainComparer(name, coll, limits, AlignmentPrecision.DOUBLE);
+	}
+
+	/**
+	 * Returns a melody main comparer given its name, with limits on the cells
+	 * computed by hybrid and global aligners, and the arithmetic precision of
+	 * all aligners.
+	 * 
+	 * @param name
+	 *            the name of the melody main comparer.
+	 * @param coll
+	 *            the collection of melodies to use with the comparer.
+	 * @param limits
+	 *            the band and X-drop limits of the aligner, ignored by local
+	 *            aligners.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 * @return the melody main comparer.
+	 */
+	public static MelodyComparer getMainComparer(String name, MelodyCollection coll, AlignmentLimits limits,
+			AlignmentPrecision precision) {
+		return MelodyShape.getMainComparer(name, coll, limits, precision, 0);
+	}
+
+	/**
+	 * Returns a melody main comparer given its name, with limits on the cells
+	 * computed by hybrid and global aligners, the arithmetic precision of all
+	 * aligners, and the size of the cache of n-gram scores.
+	 * 
+	 * @param name
+	 *            the name of the melody main comparer.
+	 * @param coll
+	 *            the collection of melodies to use with the comparer.
+	 * @param limits
+	 *            the band and X-drop limits of the aligner, ignored by local
+	 *            aligners.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 * @param cacheBytes
+	 *            the maximum number of bytes of a {@link ClockCachedNGramComparer},
+	 *            or 0 to use a {@link CachedNGramComparer} of the default size.
+	 * @return the melody main comparer.
+	 */
+	public static MelodyComparer getMainComparer(String name, MelodyCollection coll, AlignmentLimits limits,
+			AlignmentPrecision precision, long cacheBytes) {
+		if (Arrays.asList("2010-domain").contains(name))
+			return new NGramMelodyComparer(3, AlignerFactory.newHybridAligner(new FrequencyNGramComparer(coll, 3,
+					new IntervalPitchNGramComparer()), limits, precision)); // faster without cache
+		else if (Arrays.asList("2010-pitchderiv").contains(name))
+			return new NGramMelodyComparer(3, AlignerFactory.newHybridAligner(MelodyShape.newCache(
+					new FrequencyNGramComparer(coll, 3, new BSplinePitchNGramComparer()), cacheBytes), limits, precision));
+		else if (Arrays.asList("2010-shape", "2011-shape", "2012-shapeh", "2013-shapeh", "2014-shapeh", "2015-shapeh",
+				"2012-shapetime", "2013-shapetime", "2014-shapetime", "2015-shapetime").contains(name))
+			return new NGramMelodyComparer(3, AlignerFactory.newHybridAligner(MelodyShape.newCache(
+					new FrequencyNGramComparer(coll, 3, new BSplineShapeTableNGramComparer(8, 1, 0.5)), cacheBytes),
+							limits, precision));
+		else if (Arrays.asList("2011-pitch").contains(name))
+			return new NGramMelodyComparer(4, AlignerFactory.newHybridAligner(MelodyShape.newCache(
+					new CombinedNGramComparer(new BSplinePitchNGramComparer(), 1, 2.1838,
+							new BSplineTimeNGramComparer(), 0, 0.4772), cacheBytes), limits, precision));
+		else if (Arrays.asList("2011-time", "2012-time", "2013-time", "2014-time", "2015-time").contains(name))
+			return new NGramMelodyComparer(4, AlignerFactory.newHybridAligner(MelodyShape.newCache(
+					new CombinedNGramComparer(new BSplinePitchNGramComparer(), 1, 2.1838,
+							new BSplineTimeNGramComparer(), 0.5, 0.4772), cacheBytes), limits, precision));
+		else if (Arrays.asList("2012-shapel").contains(name))
+			return new NGramMelodyComparer(3, AlignerFactory.newLocalAligner(MelodyShape.newCache(new FrequencyNGramComparer(coll,
+					3, new BSplineShapeTableNGramComparer(8, 1, 0.5)), cacheBytes), precision));
+		else if (Arrays.asList("2012-shapeg").contains(name))
+			return new NGramMelodyComparer(3, new GlobalAligner(MelodyShape.newCache(new FrequencyNGramComparer(
+					coll, 3, new BSplineShapeTableNGramComparer(8, 1, 0.5)), cacheBytes), limits, precision));
+		else
+			throw new IllegalArgumentException("unrecognized algorithm name: '" + name + "'");
+	}
+
+	/**
+	 * Returns a cache for an n-gram comparer: a {@link ClockCachedNGramComparer}
+	 * of the specified number of bytes, or a {@link CachedNGramComparer} of the
+	 * default size if it is 0.
+	 * 
+	 * @param comparer
+	 *            the n-gram comparer to cache.
+	 * @param cacheBytes
+	 *            the maximum number of bytes of the cache, or 0.
+	 * @return the cached n-gram comparer.
+	 */
+	static CachedNGramComparer newCache(NGramComparer comparer, long cacheBytes) {
+		if (cacheBytes < 0)
+			throw new IllegalArgumentException("the cache size must be non-negative: " + cacheBytes);
+		if (cacheBytes == 0)
+			return new CachedNGramComparer(comparer);
+		return new ClockCachedNGramComparer(comparer, cacheBytes);
+	}
+
+	/**
+	 * Returns a results main ranker given its name.
+	 * 
+	 * @param name
+	 *            the name of the results main ranker.
+	 * @param coll
+	 *            the collection of melodies to compare.
+	 * 
+	 * @return the results main ranker.
+	 */
+	public static ResultRanker getMainRanker(String name, MelodyCollection coll) {
+		if (Arrays.asList("2010-domain", "2010-pitchderiv", "2010-shape", "2011-shape", "2012-shapeh", "2012-shapel",
+				"2012-shapeg", "2012-shapetime", "2013-shapeh", "2013-shapetime", "2014-shapeh", "2014-shapetime",
+				"2015-shapeh", "2015-shapetime").contains(name))
+			return new UntieResultRanker(new NGramMelodyComparer(3, AlignerFactory.newHybridAligner(new EqualPitchNGramComparer())));
+		else if(Arrays.asList("2011-pitch", "2011-time", "2012-time", "2013-time", "2014-time", "2015-time").contains(name))
+			return new UntieResultRanker(new NGramMelodyComparer(4, AlignerFactory.newHybridAligner(new EqualPitchNGramComparer())));
+		else
+			throw new IllegalArgumentException("unrecognized algorithm name: '" + name + "'");
+	}
+	
+	/**
+	 * Returns a melody re-rank comparer given its name (for 201x-shapetime algorithms).
+	 * 
+	 * @param name
+	 *            the name of the melody re-rank comparer.
+	 * @param coll
+	 *            the collection of melodies to use with the comparer.
+	 * @return the melody re-rank comparer or {@code null} if the comparer does not re-rank.
+	 */
+	public static MelodyComparer getRerankComparer(String name, MelodyCollection coll) {
+		return MelodyShape.getRerankComparer(name, coll, 0);
+	}
+
+	/**
+	 * Returns a melody re-rank comparer given its name (for 201x-shapetime
+	 * algorithms), with the size of the cache of n-gram scores.
+	 * 
+	 * @param name
+	 *            the name of the melody re-rank comparer.
+	 * @param coll
+	 *            the collection of melodies to use with the comparer.
+	 * @param cacheBytes
+	 *            the maximum number of bytes of a {@link ClockCachedNGramComparer},
+	 *            or 0 to use a {@link CachedNGramComparer} of the default size.
+	 * @return the melody re-rank comparer or {@code null} if the comparer does not re-rank.
+	 */
+	public static MelodyComparer getRerankComparer(String name, MelodyCollection coll, long cacheBytes) {
+		if (Arrays.asList("2012-shapetime", "2013-shapetime", "2014-shapetime", "2015-shapetime").contains(name))
+			return new NGramMelodyComparer(4, AlignerFactory.newHybridAligner(MelodyShape.newCache(new CombinedNGramComparer(
+					new BSplinePitchNGramComparer(), 1, 2.1838, new BSplineTimeNGramComparer(), 0.5, 0.4772), cacheBytes)));
+		else
+			return null;
+	}
+	
+	/**
+	 * Returns a results re-rank ranker given its name (for 201x-shapetime algorithms).
+	 * 
+	 * @param name
+	 *            the name of the results re-rank ranker.
+	 * @param coll
+	 *            the collection of melodies to compare.
+	 * 
+	 * @return the results re-rank ranker or {@code null} if the comparer does not re-rank.
+	 */
+	public static ResultRanker getRerankRanker(String name, MelodyCollection coll) {
+		if (Arrays.asList("2012-shapetime", "2013-shapetime", "2014-shapetime", "2015-shapetime").contains(name))
+			return new UntieResultRanker(new NGramMelodyComparer(3, AlignerFactory.newHybridAligner(new EqualPitchNGramComparer())));
+		else
+			return null;
+	}
+
+
+	/**
+	 * Returns an n-gram index over a collection of melodies to select the
+	 * candidates of an algorithm given its name. Shape algorithms index the
+	 * shape form of n-grams, and the others index their interval form, with
+	 * the same n-gram length as the main comparer.
+	 * 
+	 * @param name
+	 *            the name of the algorithm.
+	 * @param coll
+	 *            the collection of melodies to index.
+	 * @param candidates
+	 *            the maximum number of candidates to select per query.
+	 * @return the n-gram index.
+	 */
+	public static NGramIndex getIndex(String name, MelodyCollection coll, int candidates) {
+		if (Arrays.asList("2010-shape", "2011-shape", "2012-shapeh", "2012-shapel", "2012-shapeg", "2012-shapetime",
+				"2013-shapeh", "2013-shapetime", "2014-shapeh", "2014-shapetime", "2015-shapeh", "2015-shapetime")
+				.contains(name))
+			return new NGramIndex(coll, 3, new BSplineShapeNGramComparer(), candidates);
+		else if (Arrays.asList("2010-domain", "2010-pitchderiv").contains(name))
+			return new NGramIndex(coll, 3, new IntervalPitchNGramComparer(), candidates);
+		else if (Arrays.asList("2011-pitch", "2011-time", "2012-time", "2013-time", "2014-time", "2015-time")
+				.contains(name))
+			return new NGramIndex(coll, 4, new IntervalPitchNGramComparer(), candidates);
+		else
+			throw new IllegalArgumentException("unrecognized algorithm name: '" + name + "'");
+	}
+
+	/**
+	 * Returns a MinHash index over a collection of melodies to select the
+	 * candidates of an algorithm given its name. Shape algorithms index the
+	 * shape form of n-grams, and the others index their interval form, with
+	 * the same n-gram length as the main comparer.
+	 * 
+	 * @param name
+	 *            the name of the algorithm.
+	 * @param coll
+	 *            the collection of melodies to index.
+	 * @param bands
+	 *            the number of bands of the signatures.
+	 * @param rows
+	 *            the number of values in each band.
+	 * @return the MinHash index.
+	 */
+	public static MinHashIndex getMinHashIndex(String name, MelodyCollection coll, int bands, int rows) {
+		if (Arrays.asList("2010-shape", "2011-shape", "2012-shapeh", "2012-shapel", "2012-shapeg", "2012-shapetime",
+				"2013-shapeh", "2013-shapetime", "2014-shapeh", "2014-shapetime", "2015-shapeh", "2015-shapetime")
+				.contains(name))
+			return new MinHashIndex(coll, 3, new BSplineShapeNGramComparer(), bands, rows);
+		else if (Arrays.asList("2010-domain", "2010-pitchderiv").contains(name))
+			return new MinHashIndex(coll, 3, new IntervalPitchNGramComparer(), bands, rows);
+		else if (Arrays.asList("2011-pitch", "2011-time", "2012-time", "2013-time", "2014-time", "2015-time")
+				.contains(name))
+			return new MinHashIndex(coll, 4, new IntervalPitchNGramComparer(), bands, rows);
+		else
+			throw new IllegalArgumentException("unrecognized algorithm name: '" + name + "'");
+	}
+		
+	/**
+	 * Runs an algorithm (comparer and ranker) as specified.
+	 * 
+	 * @param melodyCmp
+	 *            the base melody comparer.
+	 * @param melodyCmpRerank
+	 *            the melody comparer to rerank, or {@code null} if no reranking
+	 *            is needed.
+	 * @param ranker
+	 *            the base results ranker.
+	 * @param rankerRerank
+	 *            the results ranker to rerank, or {@code null} if no reranking
+	 *            is needed.
+	 * @param kOpt
+	 *            the cutoff.
+	 * @param queries
+	 *            the list of queries.
+	 * @param numQuery
+	 *            the index of the particular query to run.
+	 * @param coll
+	 *            the collection of melodies to compare with the query.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @param observer
+	 *            the user interface observer to notify changes.
+	 * @return the ranked list of the top {@code kOpt} results, plus those tied
+	 *         with the last one.
+	 */
+	public static Result[] runAlgorithm(MelodyComparer melodyCmp, MelodyComparer melodyCmpRerank, ResultRanker ranker,
+			ResultRanker rankerRerank, int kOpt, ArrayList<Melody> queries, int numQuery, MelodyCollection coll, int tOpt, UIObserver observer){		
+		return MelodyShape.runAlgorithm(melodyCmp, melodyCmpRerank, ranker, rankerRerank, kOpt, queries, numQuery,
+				coll, null, tOpt, observer);
+	}
+
+	/**
+	 * Runs an algorithm (comparer and ranker) as specified, comparing the
+	 * query only with some candidates from the collection, such as those
+	 * selected by a {@link MelodyIndex}.
+	 * 
+	 * @param melodyCmp
+	 *            the base melody comparer.
+	 * @param melodyCmpRerank
+	 *            the melody comparer to rerank, or {@code null} if no reranking
+	 *            is needed.
+	 * @param ranker
+	 *            the base results ranker.
+	 * @param rankerRerank
+	 *            the results ranker to rerank, or {@code null} if no reranking
+	 *            is needed.
+	 * @param kOpt
+	 *            the cutoff.
+	 * @param queries
+	 *            the list of queries.
+	 * @param numQuery
+	 *            the index of the particular query to run.
+	 * @param coll
+	 *            the collection of melodies to compare with the query.
+	 * @param candidates
+	 *            the candidates from the collection, or {@code null} to
+	 *            compare with all melodies.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @param observer
+	 *            the user interface observer to notify changes.
+	 * @return the ranked list of the top {@code kOpt} results, plus those tied
+	 *         with the last one, only with candidate melodies, so it may be
+	 *         empty.
+	 */
+	public static Result[] runAlgorithm(MelodyComparer melodyCmp, MelodyComparer melodyCmpRerank, ResultRanker ranker,
+			ResultRanker rankerRerank, int kOpt, ArrayList<Melody> queries, int numQuery, MelodyCollection coll,
+			List<Melody> candidates, int tOpt, UIObserver observer) {
+		Melody query = queries.get(numQuery);
+		Iterable<Melody> melodies = coll;
+		int collSize = coll.size();
+		if (candidates != null) {
+			melodies = candidates;
+			collSize = candidates.size();
+		}
+		// melodies that cannot make it into the top k are abandoned early
+		TopKThreshold threshold = kOpt < collSize ? new TopKThreshold(kOpt) : null;
+		// only the top k results, plus ties, are kept for the ranker
+		Result[] results = MelodyShape.runComparer(melodyCmp, query, melodies, collSize, numQuery, queries.size(), tOpt,
+				observer, threshold, kOpt);
+		observer.updateStartRanker(query, numQuery, queries.size());
+		ranker.rank(query, results, kOpt, tOpt);
+
+		if (melodyCmpRerank!=null && rankerRerank!=null && results.length > 0) {
+			// Get top results with score as large as the k-th (can be more than k due to ties)
+			double kScore = results[Math.min(kOpt, results.length) - 1].getScore();
+			ArrayList<Melody> melodiesRerank = new ArrayList<Melody>();
+			for (int k = 0; k < results.length; k++)
+				if (results[k].getScore() >= kScore)
+					melodiesRerank.add(results[k].getMelody());
+				else
+					break;
+			// rerun
+			results = MelodyShape.runComparer(melodyCmpRerank, query, melodiesRerank, melodiesRerank.size(),
+					numQuery, queries.size(), tOpt, null);
+			// rerank
+			rankerRerank.rank(query, results, kOpt, tOpt);
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs a {@link MelodyComparer} for a query {@link Melody} and a collection
+	 * of melodies.
+	 * 
+	 * @param melodyCmp
+	 *            the comparer to use.
+	 * @param query
+	 *            the query melody.
+	 * @param coll
+	 *            the collection of melodies.
+	 * @param collSize
+	 *            the number of melodies in the collection.
+	 * @param numQuery
+	 *            the query number, for verbosing purposes.
+	 * @param totalQueries
+	 *            the total number of queries, for verbosing purposes.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @param observer
+	 *            the user interface observe to notify of progress.
+	 * @return the array of results, not necessarily sorted by similarity.
+	 * @throws RuntimeException
+	 *             if there is some error or an {@link InterruptedException} is
+	 *             received.
+	 */
+	public static Result[] runComparer(final MelodyComparer melodyCmp, final Melody query, final Iterable<Melody> coll,
+			final int collSize, final int numQuery, final int totalQueries, int tOpt, final UIObserver observer)
+			throws RuntimeException {
+		return MelodyShape.runComparer(melodyCmp, query, coll, collSize, numQuery, totalQueries, tOpt, observer, null);
+	}
+
+	/**
+	 * Runs a {@link MelodyComparer} for a query {@link Melody} and a collection
+	 * of melodies. Melodies are compared in chunks of at most
+	 * {@link #CHUNK_SIZE}, with one call to
+	 * {@link MelodyComparer#compare(Melody, List, TopKThreshold, double[])}
+	 * per chunk. If there is a threshold, melodies are compared in decreasing
+	 * order of their
+	 * {@link MelodyComparer#getUpperBounds(Melody, List, double[]) upper bound},
+	 * and those whose bound falls below the threshold are not compared at all.
+	 * 
+	 * @param melodyCmp
+	 *            the comparer to use.
+	 * @param query
+	 *            the query melody.
+	 * @param coll
+	 *            the collection of melodies.
+	 * @param collSize
+	 *            the number of melodies in the collection.
+	 * @param numQuery
+	 *            the query number, for verbosing purposes.
+	 * @param totalQueries
+	 *            the total number of queries, for verbosing purposes.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @param observer
+	 *            the user interface observe to notify of progress.
+	 * @param threshold
+	 *            the threshold to abandon comparisons that cannot make it
+	 *            into the top k, or {@code null} to compute all scores.
+	 * @return the array of results, in collection order. The score of
+	 *         abandoned comparisons is {@link Double#NEGATIVE_INFINITY}.
+	 * @throws RuntimeException
+	 *             if there is some error or an {@link InterruptedException} is
+	 *             received.
+	 */
+	public static Result[] runComparer(final MelodyComparer melodyCmp, final Melody query, final Iterable<Melody> coll,
+			final int collSize, final int numQuery, final int totalQueries, int tOpt, final UIObserver observer,
+			final TopKThreshold threshold)
+			throws RuntimeException {
+		return MelodyShape.runComparer(melodyCmp, query, coll, collSize, numQuery, totalQueries, tOpt, observer,
+				threshold, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Runs a {@link MelodyComparer} for a query {@link Melody} and a collection
+	 * of melodies, keeping only the top {@code k} results. Each thread keeps
+	 * the best scores it computes in its own {@link ScoreHeap}, and the heaps
+	 * are merged at the end, so only the results kept are ever created.
+	 * 
+	 * @param melodyCmp
+	 *            the comparer to use.
+	 * @param query
+	 *            the query melody.
+	 * @param coll
+	 *            the collection of melodies.
+	 * @param collSize
+	 *            the number of melodies in the collection.
+	 * @param numQuery
+	 *            the query number, for verbosing purposes.
+	 * @param totalQueries
+	 *            the total number of queries, for verbosing purposes.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @param observer
+	 *            the user interface observe to notify of progress.
+	 * @param threshold
+	 *            the threshold to abandon comparisons that cannot make it
+	 *            into the top k, or {@code null} to compute all scores.
+	 * @param k
+	 *            the number of results to keep.
+	 * @return the array of the top {@code k} results, plus those tied with
+	 *         the {@code k}-th, in collection order.
+	 * @throws RuntimeException
+	 *             if there is some error or an {@link InterruptedException} is
+	 *             received.
+	 * @see #runComparer(MelodyComparer, Melody, Iterable, int, int, int, int,
+	 *      UIObserver, TopKThreshold)
+	 */
+	public static Result[] runComparer(final MelodyComparer melodyCmp, final Melody query, final Iterable<Melody> coll,
+			final int collSize, final int numQuery, final int totalQueries, int tOpt, final UIObserver observer,
+			final TopKThreshold threshold, final int k)
+			throws RuntimeException {
+		final ArrayList<Melody> melodies = new ArrayList<Melody>(collSize);
+		for (Melody m : coll)
+			melodies.add(m);
+		// With a threshold, compare by decreasing upper bound of the score, so
+		// the threshold rises early and melodies whose bound cannot reach it
+		// are skipped without comparing them
+		final double[] bounds = new double[collSize];
+		final int[] order = new int[collSize];
+		if (threshold != null) {
+			melodyCmp.getUpperBounds(query, melodies, bounds);
+			// sort keys with the bound in the high bits, mapped so that larger
+			// bounds come first, and the ordinal in the low bits. Bounds are
+			// rounded to float, which only matters for the order
+			long[] keys = new long[collSize];
+			for (int i = 0; i < collSize; i++) {
+				int bits = Float.floatToIntBits((float) -bounds[i]);
+				if (bits < 0)
+					bits ^= Integer.MAX_VALUE;
+				keys[i] = ((long) bits << 32) | i;
+			}
+			Arrays.sort(keys);
+			for (int i = 0; i < collSize; i++)
+				order[i] = (int) keys[i];
+		} else {
+			for (int i = 0; i < collSize; i++)
+				order[i] = i;
+		}
+		// Each thread takes chunks of melodies in turn, so the query is
+		// prepared once per chunk, but there are still enough chunks to
+		// balance threads
+		final int chunkSize = Math.max(1, Math.min(MelodyShape.CHUNK_SIZE, collSize / (4 * tOpt)));
+		final AtomicInteger nextChunk = new AtomicInteger();
+		ArrayList<Callable<ScoreHeap>> callables = new ArrayList<>();
+		CountDownLatch latch = new CountDownLatch(collSize);
+
+		for (int t = 0; t < tOpt; t++) {
+			callables.add(new Callable<ScoreHeap>() {
+				CountDownLatch latch;
+				
+				Callable<ScoreHeap> init(CountDownLatch latch) {
+					this.latch = latch;
+					return this;
+				}
+				
+				@Override
+				public ScoreHeap call() throws Exception {
+					ScoreHeap heap = new ScoreHeap(k);
+					int from;
+					while ((from = nextChunk.getAndAdd(chunkSize)) < collSize) {
+						int to = Math.min(from + chunkSize, collSize);
+						ArrayList<Melody> compared = new ArrayList<Melody>(to - from);
+						for (int i = from; i < to; i++)
+							if (threshold == null || !threshold.canPrune(bounds[order[i]]))
+								compared.add(melodies.get(order[i]));
+						double[] scores = new double[compared.size()];
+						melodyCmp.compare(query, compared, threshold, scores);
+						for (int i = from, c = 0; i < to; i++) {
+							int ordinal = order[i];
+							if (c < compared.size() && compared.get(c) == melodies.get(ordinal))
+								heap.offer(ordinal, scores[c++]);
+							else
+								heap.offer(ordinal, Double.NEGATIVE_INFINITY);
+						}
+						synchronized (this.latch) { // don't know if we need to sync here, but just in case
+							for (int i = from; i < to; i++) {
+								this.latch.countDown();
+								if (observer != null && this.latch.getCount() % MelodyShape.VERBOSE_PERIOD == 0)
+									observer.updateProgressComparer(query, numQuery, totalQueries, 1.0 - ((double) this.latch.getCount()) / collSize);
+							}
+						}
+					}
+					return heap;
+				}
+			}.init(latch));
+		}
+		// Execute all callables and merge their results
+		ExecutorService service = Executors.newFixedThreadPool(tOpt);
+		
+		ScoreHeap heap = new ScoreHeap(k);
+		try {
+			List<Future<ScoreHeap>> futures = service.invokeAll(callables);
+			if (observer!=null)
+				observer.updateProgressComparer(query, numQuery, totalQueries, 1);
+			for (Future<ScoreHeap> future : futures)
+				heap.addAll(future.get());
+			service.shutdown();
+		} catch (InterruptedException | ExecutionException ex) {
+			service.shutdownNow();
+			throw new RuntimeException(ex);
+		}
+		return heap.toResults(melodies);
+	}
+
+	/**
+	 * Explains the top results of a query with a {@link MelodyComparer}, in
+	 * parallel, and stores the explanations in the results.
+	 * 
+	 * @param melodyCmp
+	 *            the comparer that computed the scores of the results.
+	 * @param query
+	 *            the query melody.
+	 * @param results
+	 *            the ranked list of results.
+	 * @param kOpt
+	 *            the cutoff, so only the first {@code kOpt} results are
+	 *            explained.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @throws RuntimeException
+	 *             if there is some error or an {@link InterruptedException} is
+	 *             received.
+	 * @see Result#getAlignment()
+	 */
+	public static void explainResults(final MelodyComparer melodyCmp, final Melody query, Result[] results, int kOpt,
+			int tOpt) throws RuntimeException {
+		ArrayList<Callable<Void>> callables = new ArrayList<>();
+		for (int k = 0; k < kOpt && k < results.length; k++) {
+			final Result r = results[k];
+			callables.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					r.setAlignment(melodyCmp.explain(query, r.getMelody()));
+					return null;
+				}
+			});
+		}
+		ExecutorService service = Executors.newFixedThreadPool(tOpt);
+		try {
+			for (Future<Void> future : service.invokeAll(callables))
+				future.get();
+			service.shutdown();
+		} catch (InterruptedException | ExecutionException ex) {
+			service.shutdownNow();
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		UIObserver observer = null;
+		
+		// if -gui is present, run graphical ui
+		for (String arg : args)
+			if (arg.equals("-gui"))
+				observer = new GraphicalUIObserver();
+		
+		if(observer==null){			
+			try{
+				System.in.available(); // throws if not in console
+				observer=new ConsoleUIObserver(args);
+			}catch(Exception ex){
+				observer = new GraphicalUIObserver();
+			}
+		}
+		observer.start();
+	}
+}
@@ -0,0 +1,31 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import jurbano.melodyshape.comparison.alignment.MelodyAligner;
+
+/**
+ * An {@link NGramComparer} that knows an upper bound of its similarity scores.
+ * <p>
+ * Aligners use the bound to abandon alignments that cannot reach a certain
+ * score. Comparers that do not implement this interface are assumed to have no
+ * bound, so their alignments are never abandoned.
+ *
+ * @author Julián Urbano
+ * @see MelodyAligner
+ */
+public interface BoundedNGramComparer extends NGramComparer
+{
+	/**
+	 * Gets an upper bound of the similarity score between an n-gram and any
+	 * other non-{@code null} n-gram. It must never be smaller than
+	 * {@code compare(g, g2)} for any {@code g2}.
+	 * 
+	 * @param g
+	 *            the n-gram.
+	 * @return the upper bound, or {@link Double#POSITIVE_INFINITY} if no
+	 *         bound is known.
+	 */
+	public double getMaxScore(NGram g);
+}
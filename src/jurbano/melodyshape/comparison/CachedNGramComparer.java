@@ -1,147 +1,225 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison;
-
-import java.util.HashMap;
-
-/**
- * Provides a caching mechanism for an {@link NGramComparer} to speed up
- * computations.
- * <p>
- * Whenever a similarity score is computed between two {@link NGram}s, it is
- * cached so that the next time that two {@link NGram}s with the same
- * identifiers are computed the cached score is returned and the underlying
- * {@link NGramComparer} is not called again.
- * <p>
- * A similarity score is associated to a pair of {@link NGram}s according to
- * their identifiers, assuming a symmetric {@link NGramComparer}, that is,
- * {@code compare(n1, n2)=compare(n2, n1)}.
- * <p>
- * The internal caching mechanism employs a {@link HashMap} mapping the
- * {@code NGram}s' identifiers to their similarity score. This class does not
- * implement a replacement policy; whenever the cache is full no more similarity
- * scores are added, regardless of the age of cached scores.
- * <p>
- * Note that this class does not guarantee faster execution in all cases; if the
- * computation of the cached {@link NGramComparer} is faster than checking and
- * retrieving previous scores, the use of a cache will actually reduce
- * efficiency.
- * 
- * @author Julián Urbano
- * @see NGramComparer
- */
-public class CachedNGramComparer implements NGramComparer
-{
-	static final int DEFAULT_MAX_CACHE_SIZE = 2000000;
-	
-	protected NGramComparer comparer;
-	
-	protected HashMap<String, Double> cache;
-	protected int maxCacheSize;
-	
-	/**
-	 * Gets the maximum number of scores to cache.
-	 * 
-	 * @return the maximum number of scores to cache.
-	 */
-	public int getMaxCacheSize() {
-		return maxCacheSize;
-	}
-	
-	/**
-	 * Sets the maximum number of scores to cache.
-	 * <p>
-	 * If the current cache is larger than {@code maxCacheSize} it is not
-	 * reduced.
-	 * 
-	 * @param maxCacheSize
-	 *            the maximum number of scores to cache.
-	 */
-	public void setMaxCacheSize(int maxCacheSize) {
-		this.maxCacheSize = maxCacheSize;
-	}
-	
-	/**
-	 * Constructs a new {@code CachedNGramComparer} of the specified size.
-	 * 
-	 * @param comparer
-	 *            the {@link NGramComparer} to cache.
-	 * @param maxCacheSize
-	 *            the maximum number of scores to cache.
-	 */
-	public CachedNGramComparer(NGramComparer comparer, int maxCacheSize) {
-		this.comparer = comparer;
-		this.maxCacheSize = maxCacheSize;
-		this.cache = new HashMap<String, Double>();
-	}
-	
-	/**
-	 * Constructs a new {@code CachedNGramComparer} with the default maximum
-	 * size (2 million scores).
-	 * 
-	 * @param comparer
-	 *            the {@link NGramComparer} to cache.
-	 */
-	public CachedNGramComparer(NGramComparer comparer) {
-		this(comparer, CachedNGramComparer.DEFAULT_MAX_CACHE_SIZE);
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "Cache(comparer)"}, where
-	 *         {@code comparer} is the name of the cached {@link NGramComparer}.
-	 */
-	@Override
-	public String getName() {
-		return "Cache(" + this.comparer.getName() + ")";
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public double compare(NGram n1, NGram n2) {
-		String id1 = this.getNGramId(n1);
-		String id2 = this.getNGramId(n2);
-		String id = id1.compareTo(id2) < 0 ? id1 + "," + id2 : id2 + "," + id1;
-		
-		Double diff = this.cache.get(id);
-		if (diff != null)
-			return diff;
-		else {
-			double newDiff = this.comparer.compare(n1, n2);
-			synchronized (this.cache) {
-				if (this.cache.size() < this.maxCacheSize)
-					this.cache.put(id, newDiff);
-			}
-			return newDiff;
-		}
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public String getNGramId(NGram g) {
-		return this.comparer.getNGramId(g);
-	}
-	
-	/**
-	 * Gets the number of scores currently cached.
-	 * 
-	 * @return the number of scores currently cached.
-	 */
-	public int size() {
-		return this.cache.size();
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public String toString() {
-		return "Cache(" + this.comparer.getName() + ")[size=" + this.cache.size() + "/" + maxCacheSize + "]";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+/**
+ * Provides a caching mechanism for an {@link NGramComparer} to speed up
+ * computations.
+ * <p>
+ * Whenever a similarity score is computed between two {@link NGram}s, it is
+ * cached so that the next time that two {@link NGram}s with the same
+ * identifiers are computed the cached score is returned and the underlying
+ * {@link NGramComparer} is not called again.
+ * <p>
+ * A similarity score is associated to an ordered pair of {@link NGram}s
+ * according to their identifiers, so {@code compare(n1, n2)} and
+ * {@code compare(n2, n1)} are cached apart. Cached scores are therefore the
+ * same as those of the underlying {@link NGramComparer} even if it is not
+ * symmetric, and they do not depend on the order in which pairs are compared.
+ * <p>
+ * The internal caching mechanism maps every distinct {@code NGram} identifier
+ * to an integer with an {@link NGramVocabulary}, and employs a {@link ScoreTable} to map pairs of these
+ * integers to their similarity score. This class is thread-safe. This class
+ * does not implement a replacement policy; whenever the cache is full no more
+ * similarity scores are added, regardless of the age of cached scores. See
+ * {@link ClockCachedNGramComparer} for a cache with a replacement policy.
+ * <p>
+ * If the cached comparer is a {@link VersionedNGramComparer}, all cached
+ * scores are discarded whenever its version changes.
+ * <p>
+ * Note that this class does not guarantee faster execution in all cases; if the
+ * computation of the cached {@link NGramComparer} is faster than checking and
+ * retrieving previous scores, the use of a cache will actually reduce
+ * efficiency.
+ * 
+ * @author Julián Urbano
+ * @see NGramComparer
+ */
+public class CachedNGramComparer implements VersionedNGramComparer, BoundedNGramComparer
+{
+	static final int DEFAULT_MAX_CACHE_SIZE = 2000000;
+	
+	protected NGramComparer comparer;
+	
+	protected volatile ScoreTable cache;
+	protected volatile long cacheVersion;
+	protected NGramVocabulary vocabulary;
+	protected int maxCacheSize;
+	
+	/**
+	 * Gets the maximum number of scores to cache.
+	 * 
+	 * @return the maximum number of scores to cache.
+	 */
+	public int getMaxCacheSize() {
+		return maxCacheSize;
+	}
+	
+	/**
+	 * Sets the maximum number of scores to cache.
+	 * <p>
+	 * If the current cache is larger than {@code maxCacheSize} it is not
+	 * reduced.
+	 * 
+	 * @param maxCacheSize
+	 *            the maximum number of scores to cache.
+	 */
+	public void setMaxCacheSize(int maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+	}
+	
+	/**
+	 * Constructs a new {@code CachedNGramComparer} of the specified size.
+	 * 
+	 * @param comparer
+	 *            the {@link NGramComparer} to cache.
+	 * @param maxCacheSize
+	 *            the maximum number of scores to cache.
+	 */
+	public CachedNGramComparer(NGramComparer comparer, int maxCacheSize) {
+		this(comparer, new ScoreTable(), maxCacheSize);
+	}
+	
+	/**
+	 * Constructs a new {@code CachedNGramComparer} that uses the specified
+	 * {@link ScoreTable} to store scores.
+	 * 
+	 * @param comparer
+	 *            the {@link NGramComparer} to cache.
+	 * @param cache
+	 *            the table to store scores.
+	 * @param maxCacheSize
+	 *            the maximum number of scores to cache.
+	 */
+	protected CachedNGramComparer(NGramComparer comparer, ScoreTable cache, int maxCacheSize) {
+		this.comparer = comparer;
+		this.maxCacheSize = maxCacheSize;
+		this.cache = cache;
+		this.cacheVersion = this.getVersion();
+		this.vocabulary = NGramVocabulary.getVocabulary(comparer);
+	}
+	
+	/**
+	 * Constructs a new {@code CachedNGramComparer} with the default maximum
+	 * size (2 million scores).
+	 * 
+	 * @param comparer
+	 *            the {@link NGramComparer} to cache.
+	 */
+	public CachedNGramComparer(NGramComparer comparer) {
+		this(comparer, CachedNGramComparer.DEFAULT_MAX_CACHE_SIZE);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "Cache(comparer)"}, where
+	 *         {@code comparer} is the name of the cached {@link NGramComparer}.
+	 */
+	@Override
+	public String getName() {
+		return "Cache(" + this.comparer.getName() + ")";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double compare(NGram n1, NGram n2) {
+		long key = ScoreTable.getPairKey(this.vocabulary.getId(n1), this.vocabulary.getId(n2));
+		
+		ScoreTable cache = this.getCache();
+		double diff = cache.get(key);
+		if (Double.isNaN(diff)) {
+			diff = this.comparer.compare(n1, n2);
+			cache.put(key, diff, this.maxCacheSize);
+		}
+		return diff;
+	}
+	
+	/**
+	 * Gets the table of scores for the current version of the cached
+	 * comparer, replacing it with a new and empty table if the version
+	 * changed.
+	 * <p>
+	 * The version is read before the table, so a score computed after this
+	 * call is never older than the scores in the table returned.
+	 * 
+	 * @return the table of scores.
+	 */
+	protected ScoreTable getCache() {
+		long version = this.getVersion();
+		if (version != this.cacheVersion) {
+			synchronized (this) {
+				if (version != this.cacheVersion) {
+					this.cache = this.newCache();
+					this.cacheVersion = version;
+				}
+			}
+		}
+		return this.cache;
+	}
+	
+	/**
+	 * Creates a new and empty table of scores, when the previous one is
+	 * discarded.
+	 * 
+	 * @return the table of scores.
+	 */
+	protected ScoreTable newCache() {
+		return new ScoreTable();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the version of the cached comparer, or 0 if it is not a
+	 *         {@link VersionedNGramComparer}.
+	 */
+	@Override
+	public long getVersion() {
+		if (this.comparer instanceof VersionedNGramComparer)
+			return ((VersionedNGramComparer) this.comparer).getVersion();
+		return 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getNGramId(NGram g) {
+		return this.comparer.getNGramId(g);
+	}
+	
+	/**
+	 * Gets the number of scores currently cached.
+	 * 
+	 * @return the number of scores currently cached.
+	 */
+	public int size() {
+		return this.cache.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "Cache(" + this.comparer.getName() + ")[size=" + this.cache.size() + "/" + maxCacheSize + "]";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the upper bound of the underlying {@link NGramComparer}, or
+	 *         {@link Double#POSITIVE_INFINITY} if it is not a
+	 *         {@link BoundedNGramComparer}.
+	 */
+	@Override
+	public double getMaxScore(NGram g) {
+		if (!(this.comparer instanceof BoundedNGramComparer))
+			return Double.POSITIVE_INFINITY;
+		return ((BoundedNGramComparer) this.comparer).getMaxScore(g);
+	}
+}
@@ -0,0 +1,95 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+/**
+ * A {@link CachedNGramComparer} of bounded size in bytes that replaces cached
+ * scores with a frequency-aware CLOCK policy.
+ * <p>
+ * Unlike {@link CachedNGramComparer}, this cache keeps adding new scores once
+ * it is full, evicting scores that have not been used recently. It is
+ * therefore better suited for long streams of queries, where the working set
+ * of {@link NGram} pairs shifts over time. The size limit accounts for the
+ * table of scores, but not for the mapping between n-gram identifiers and
+ * integers.
+ * <p>
+ * The maximum number of scores to cache is initially the number of scores
+ * that fit in the bytes. It can be set lower, in which case the cache evicts
+ * scores down to the new size as new ones are added; setting it higher has no
+ * effect beyond the bytes.
+ * 
+ * @author Julián Urbano
+ * @see ClockScoreTable
+ */
+public class ClockCachedNGramComparer extends CachedNGramComparer
+{
+	static final long DEFAULT_MAX_CACHE_BYTES = 64L * 1024 * 1024;
+	
+	protected long maxCacheBytes;
+	
+	/**
+	 * Constructs a new {@code ClockCachedNGramComparer} that uses at most the
+	 * specified number of bytes.
+	 * 
+	 * @param comparer
+	 *            the {@link NGramComparer} to cache.
+	 * @param maxCacheBytes
+	 *            the maximum number of bytes used to cache scores.
+	 */
+	public ClockCachedNGramComparer(NGramComparer comparer, long maxCacheBytes) {
+		this(comparer, new ClockScoreTable(maxCacheBytes), maxCacheBytes);
+	}
+	
+	/**
+	 * Constructs a new {@code ClockCachedNGramComparer} with the default
+	 * maximum size (64 MiB).
+	 * 
+	 * @param comparer
+	 *            the {@link NGramComparer} to cache.
+	 */
+	public ClockCachedNGramComparer(NGramComparer comparer) {
+		this(comparer, ClockCachedNGramComparer.DEFAULT_MAX_CACHE_BYTES);
+	}
+	
+	private ClockCachedNGramComparer(NGramComparer comparer, ClockScoreTable cache, long maxCacheBytes) {
+		super(comparer, cache, cache.getCapacity());
+		this.maxCacheBytes = maxCacheBytes;
+	}
+	
+	/**
+	 * Gets the maximum number of bytes used to cache scores.
+	 * 
+	 * @return the maximum number of bytes.
+	 */
+	public long getMaxCacheBytes() {
+		return this.maxCacheBytes;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ScoreTable newCache() {
+		return new ClockScoreTable(this.maxCacheBytes);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "ClockCache(comparer)"}, where
+	 *         {@code comparer} is the name of the cached {@link NGramComparer}.
+	 */
+	@Override
+	public String getName() {
+		return "ClockCache(" + this.comparer.getName() + ")";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return this.getName() + "[size=" + this.cache.size() + "/" + this.maxCacheSize + ", bytes=" + this.maxCacheBytes + "]";
+	}
+}
@@ -0,0 +1,183 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+/**
+ * A {@link ScoreTable} of fixed size in bytes that replaces scores following
+ * a frequency-aware CLOCK policy.
+ * <p>
+ * Every slot has a small saturating counter that is incremented each time its
+ * score is read. When a stripe is full, its clock hand sweeps the slots
+ * decrementing their counters, and the first score whose counter is already
+ * zero is evicted. Frequently read scores thus survive several sweeps, while
+ * scores that are not read anymore are eventually replaced, so the contents
+ * of the table follow a shifting working set. A stripe is also full when it
+ * holds its share of the maximum number of scores passed to
+ * {@link #put(long, double, int)}.
+ *
+ * @author Julián Urbano
+ * @see CachedNGramComparer
+ */
+public class ClockScoreTable extends ScoreTable
+{
+	/**
+	 * The number of bytes used by each slot: key, score and counter.
+	 */
+	public static final int BYTES_PER_SLOT = 8 + 8 + 1;
+	static final int MAX_FREQUENCY = 3;
+	static final int MIN_STRIPE_CAPACITY = 16;
+
+	/**
+	 * Constructs a new and empty {@code ClockScoreTable} that uses at most
+	 * the specified number of bytes.
+	 *
+	 * @param maxBytes
+	 *            the maximum number of bytes used by the table.
+	 */
+	public ClockScoreTable(long maxBytes) {
+		super(ClockScoreTable.getStripeCapacity(maxBytes));
+	}
+
+	/**
+	 * Computes the number of slots per stripe so that the whole table uses at
+	 * most {@code maxBytes} bytes.
+	 *
+	 * @param maxBytes
+	 *            the maximum number of bytes used by the table.
+	 * @return the number of slots per stripe, a power of 2.
+	 */
+	static int getStripeCapacity(long maxBytes) {
+		long slots = maxBytes / ClockScoreTable.BYTES_PER_SLOT / ScoreTable.STRIPES;
+		slots = Math.min(slots, 1 << 30);
+		return Math.max(ClockScoreTable.MIN_STRIPE_CAPACITY, Integer.highestOneBit((int) slots));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Stripe newStripe(int capacity) {
+		return new ClockStripe(capacity);
+	}
+
+	/**
+	 * Gets the maximum number of scores that fit in the table.
+	 *
+	 * @return the maximum number of scores.
+	 */
+	public int getCapacity() {
+		int capacity = 0;
+		for (Stripe stripe : this.stripes)
+			capacity += ((ClockStripe) stripe).limit;
+		return capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The score is stored unless {@code maxSize} is not positive, because if
+	 * the stripe is full a different score is evicted first. Each stripe holds
+	 * at most its share of {@code maxSize} scores, and at most as many as fit
+	 * in its bytes, so if {@code maxSize} is reduced the table shrinks as new
+	 * scores are added.
+	 */
+	@Override
+	public boolean put(long key, double score, int maxSize) {
+		if (maxSize < 1)
+			return false;
+		long hash = ScoreTable.hash(key);
+		ClockStripe stripe = (ClockStripe) this.stripes[(int) (hash >>> 58)];
+		int limit = (int) Math.min(stripe.limit, ((long) maxSize + ScoreTable.STRIPES - 1) / ScoreTable.STRIPES);
+		synchronized (stripe) {
+			int slot = stripe.find(key, (int) hash);
+			if (stripe.keys[slot] == key) {
+				stripe.scores[slot] = score;
+				return true;
+			}
+			if (stripe.size >= limit) {
+				while (stripe.size >= limit) {
+					stripe.evict();
+					this.size.decrementAndGet();
+				}
+				slot = stripe.find(key, (int) hash);
+			}
+			this.size.incrementAndGet();
+			stripe.insert(slot, key, score, (int) hash);
+			return true;
+		}
+	}
+
+	/**
+	 * An open-addressing table with linear probing, of fixed capacity and
+	 * with a clock hand to evict scores.
+	 */
+	protected static class ClockStripe extends Stripe
+	{
+		byte[] frequencies;
+		int limit;
+		int hand;
+
+		ClockStripe(int capacity) {
+			super(capacity);
+			this.frequencies = new byte[capacity];
+			this.limit = capacity / 4 * 3;
+		}
+
+		@Override
+		double get(long key, int hash) {
+			int slot = this.find(key, hash);
+			if (this.keys[slot] != key)
+				return Double.NaN;
+			if (this.frequencies[slot] < ClockScoreTable.MAX_FREQUENCY)
+				this.frequencies[slot]++;
+			return this.scores[slot];
+		}
+
+		@Override
+		void insert(int slot, long key, double score, int hash) {
+			this.keys[slot] = key;
+			this.scores[slot] = score;
+			this.frequencies[slot] = 0;
+			this.size++;
+		}
+
+		void evict() {
+			int mask = this.keys.length - 1;
+			while (true) {
+				if (this.keys[this.hand] != ScoreTable.EMPTY) {
+					if (this.frequencies[this.hand] == 0) {
+						// the slot is refilled with a following key, if any, so
+						// the hand stays here to check it in the next sweep
+						this.remove(this.hand);
+						return;
+					}
+					this.frequencies[this.hand]--;
+				}
+				this.hand = (this.hand + 1) & mask;
+			}
+		}
+
+		void remove(int slot) {
+			// backward shift deletion, so that probe sequences remain unbroken
+			int mask = this.keys.length - 1;
+			int empty = slot;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (this.keys[next] == ScoreTable.EMPTY)
+					break;
+				int home = (int) ScoreTable.hash(this.keys[next]) & mask;
+				boolean stays = empty <= next ? (empty < home && home <= next) : (empty < home || home <= next);
+				if (!stays) {
+					this.keys[empty] = this.keys[next];
+					this.scores[empty] = this.scores[next];
+					this.frequencies[empty] = this.frequencies[next];
+					empty = next;
+				}
+			}
+			this.keys[empty] = ScoreTable.EMPTY;
+			this.size--;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.ArrayList;
+
+import jurbano.melodyshape.model.Melody;
+import jurbano.melodyshape.model.Note;
+
+/**
+ * The immutable, compiled form of a {@link Melody} for a given n-gram length.
+ * <p>
+ * It holds the sequence of {@link NGram}s of the melody, together with packed
+ * arrays of the features that n-gram comparers need: pitch intervals, pitches
+ * relative to the first note of each n-gram, durations relative to the first
+ * note of each n-gram. A {@code CompiledMelody} is built
+ * only once per melody and n-gram length, and then stored in the melody so
+ * that it is shared by all comparers, aligners and rankers. Because the same
+ * {@link NGram} objects are used in every comparison, features stored in them
+ * are not computed again either.
+ *
+ * @author Julián Urbano
+ * @see Melody
+ * @see NGram
+ */
+public class CompiledMelody
+{
+	static final int COMPILED_FEATURE = Melody.newFeatureSlot();
+
+	protected final Melody melody;
+	protected final int nGramLength;
+	protected final ArrayList<NGram> nGrams;
+	protected final int[] pitchIntervals;
+	protected final int[] relativePitches;
+	protected final double[] durationRatios;
+
+	/**
+	 * Constructs the {@code CompiledMelody} of a {@link Melody} for the
+	 * specified n-gram length.
+	 *
+	 * @param melody
+	 *            the melody.
+	 * @param nGramLength
+	 *            the n-gram length, that is, number of {@code Note}s.
+	 */
+	protected CompiledMelody(Melody melody, int nGramLength) {
+		this.melody = melody;
+		this.nGramLength = nGramLength;
+
+		int size = melody.size();
+		int count = Math.max(0, size - nGramLength + 1);
+		this.pitchIntervals = new int[Math.max(0, size - 1)];
+		for (int i = 1; i < size; i++)
+			this.pitchIntervals[i - 1] = melody.get(i).getPitch() - melody.get(i - 1).getPitch();
+
+		this.relativePitches = new int[count * nGramLength];
+		this.durationRatios = new double[count * nGramLength];
+		this.nGrams = new ArrayList<NGram>(count);
+		for (int i = 0; i < count; i++) {
+			Note first = melody.get(i);
+			for (int j = 0; j < nGramLength; j++) {
+				Note note = melody.get(i + j);
+				this.relativePitches[i * nGramLength + j] = note.getPitch() - first.getPitch();
+				this.durationRatios[i * nGramLength + j] = note.getDuration() / (double) first.getDuration();
+			}
+			this.nGrams.add(new NGram(this, i));
+		}
+	}
+
+	/**
+	 * Gets the {@code CompiledMelody} of a {@link Melody} for the specified
+	 * n-gram length, compiling it only the first time.
+	 *
+	 * @param melody
+	 *            the melody.
+	 * @param nGramLength
+	 *            the n-gram length, that is, number of {@code Note}s.
+	 * @return the compiled melody.
+	 */
+	public static CompiledMelody get(Melody melody, int nGramLength) {
+		CompiledMelody[] compiled = (CompiledMelody[]) melody.getFeature(CompiledMelody.COMPILED_FEATURE);
+		if (compiled != null && nGramLength < compiled.length && compiled[nGramLength] != null)
+			return compiled[nGramLength];
+
+		CompiledMelody c = new CompiledMelody(melody, nGramLength);
+		CompiledMelody[] newCompiled = new CompiledMelody[Math.max(nGramLength + 1, compiled == null ? 0 : compiled.length)];
+		if (compiled != null)
+			System.arraycopy(compiled, 0, newCompiled, 0, compiled.length);
+		newCompiled[nGramLength] = c;
+		melody.setFeature(CompiledMelody.COMPILED_FEATURE, newCompiled);
+		return c;
+	}
+
+	/**
+	 * Gets the {@link Melody} this object was compiled from.
+	 *
+	 * @return the melody.
+	 */
+	public Melody getMelody() {
+		return this.melody;
+	}
+
+	/**
+	 * Gets the n-gram length of this {@code CompiledMelody}.
+	 *
+	 * @return the n-gram length.
+	 */
+	public int getNGramLength() {
+		return this.nGramLength;
+	}
+
+	/**
+	 * Gets the sequence of n-grams of the melody. The list is shared and must
+	 * not be modified.
+	 *
+	 * @return the sequence of n-grams.
+	 */
+	public ArrayList<NGram> getNGrams() {
+		return this.nGrams;
+	}
+
+	/**
+	 * Gets the pitch interval between a note of the melody and the next one.
+	 *
+	 * @param note
+	 *            the index of the note.
+	 * @return the pitch of note {@code note+1} minus the pitch of note
+	 *         {@code note}.
+	 */
+	public int getPitchInterval(int note) {
+		return this.pitchIntervals[note];
+	}
+
+	/**
+	 * Gets the pitch of a note of an n-gram relative to the first note of the
+	 * n-gram.
+	 *
+	 * @param nGram
+	 *            the index of the n-gram.
+	 * @param note
+	 *            the index of the note within the n-gram.
+	 * @return the relative pitch.
+	 */
+	public int getRelativePitch(int nGram, int note) {
+		return this.relativePitches[nGram * this.nGramLength + note];
+	}
+
+	/**
+	 * Gets the duration of a note of an n-gram relative to the duration of the
+	 * first note of the n-gram.
+	 *
+	 * @param nGram
+	 *            the index of the n-gram.
+	 * @param note
+	 *            the index of the note within the n-gram.
+	 * @return the ratio between both durations.
+	 */
+	public double getDurationRatio(int nGram, int note) {
+		return this.durationRatios[nGram * this.nGramLength + note];
+	}
+}
@@ -1,177 +1,365 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison;
-
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.HashMap;
-
-import jurbano.melodyshape.model.Melody;
-import jurbano.melodyshape.model.MelodyCollection;
-
-/**
- * A similarity function between two {@link NGram} objects that uses a second
- * {@link NGramComparer} for mismatches and the frequency of n-grams in the
- * collection for insertions, deletions and matches.
- * 
- * @author Julián Urbano
- * @see NGram
- * @see NGramComparer
- */
-public class FrequencyNGramComparer implements NGramComparer {
-	protected HashMap<String, Long> nGramCounts;
-	protected long nGramCountSum;
-
-	protected NGramComparer mismatchComparer;
-
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "Freq(comparer)"}, where
-	 *         {@code comparer} is the name of the underlying
-	 *         {@link NGramComparer}.
-	 */
-	@Override
-	public String getName() {
-		return "Freq(" + this.mismatchComparer.getName() + ")";
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public String getNGramId(NGram g) {
-		return this.mismatchComparer.getNGramId(g);
-	}
-
-	/**
-	 * Constructs a new {@code FrequencyNGramComparer} for the specified
-	 * {@link MelodyCollection} and using the specified
-	 * {@link NGramMelodyComparer}. The frequency of all n-grams in the
-	 * collection are computed here.
-	 * 
-	 * @param coll
-	 *            the collection of melodies.
-	 * @param nGramLength
-	 *            the length of the n-grams to compute.
-	 * @param mismatchComparer
-	 *            the n-gram comparer for mismatches.
-	 */
-	public FrequencyNGramComparer(MelodyCollection coll, int nGramLength, NGramComparer mismatchComparer) {
-		this.mismatchComparer = mismatchComparer;
-		this.nGramCounts = new HashMap<String, Long>();
-		this.nGramCountSum = 0;
-
-		for (Melody m : coll) {
-			for (NGram n : NGram.getNGrams(m, nGramLength)) {
-				String nGramId = this.getNGramId(n);
-				Long l = this.nGramCounts.get(nGramId);
-				if (l == null)
-					this.nGramCounts.put(nGramId, 1l);
-				else
-					this.nGramCounts.put(nGramId, l + 1);
-				this.nGramCountSum++;
-			}
-		}
-	}
-
-	/**
-	 * Constructs a new {@code FrequencyNGramComparer} for the specified
-	 * {@link NGramMelodyComparer} reading n-gram frequencies from a file.
-	 * 
-	 * @param statsPath
-	 *            the path to a file containing the n-gram frequencies in a
-	 *            collection of melodies.
-	 * @param mismatchComparer
-	 *            the n-gram comparer for mismatches.
-	 * @throws IOException
-	 *             if an I/O or format error occurs.
-	 * @see FrequencyNGramComparer#saveStatistics(String)
-	 */
-	public FrequencyNGramComparer(String statsPath, NGramComparer mismatchComparer) throws IOException {
-		this.mismatchComparer = mismatchComparer;
-
-		ObjectInputStream objStream = null;
-		try {
-			objStream = new ObjectInputStream(new FileInputStream(statsPath));
-			this.nGramCountSum = objStream.readLong();
-			@SuppressWarnings("unchecked")
-			HashMap<String, Long> counts = (HashMap<String, Long>) objStream.readObject();
-			this.nGramCounts = counts;
-		} catch (IOException e) {
-			throw e;
-		} catch (ClassNotFoundException e2) {
-			throw new IOException("Incorrect format in statistics file " + statsPath);
-		} finally {
-			if (objStream != null)
-				objStream.close();
-		}
-	}
-
-	/**
-	 * Saves the frequency of all n-grams in this {@code FrequencyNGramComparer}
-	 * to the specified file.
-	 * 
-	 * @param path
-	 *            the path of the file to save the n-gram frequencies.
-	 * @throws IOException
-	 *             if an I/O error occurs.
-	 */
-	public void saveStatistics(String path) throws IOException {
-		ObjectOutputStream objStream = null;
-		try {
-			objStream = new ObjectOutputStream(new FileOutputStream(path));
-			objStream.writeLong(this.nGramCountSum);
-			objStream.writeObject(this.nGramCounts);
-		} catch (IOException e) {
-			throw e;
-		} finally {
-			if (objStream != null)
-				objStream.close();
-		}
-	}
-
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return {@code -(1-f)} if either {@link NGram} is {@code null},
-	 *         {@code (1-f)} if they are the same, and the (dis)similarity
-	 *         returned by the underlying {@link NGramComparer} if they are
-	 *         different.
-	 */
-	@Override
-	public double compare(NGram n1, NGram n2) {
-		if (n1 == null) {
-			Long f2 = this.nGramCounts.get(this.getNGramId(n2));
-			if (f2 != null)
-				return -1.0d + f2.doubleValue() / this.nGramCountSum;
-			else
-				return -1.0d / this.nGramCountSum;
-		}
-		if (n2 == null) {
-			Long f1 = this.nGramCounts.get(this.getNGramId(n1));
-			if (f1 != null)
-				return -1.0d + f1.doubleValue() / this.nGramCountSum;
-			else
-				return -1.0d / this.nGramCountSum;
-		}
-		if (this.getNGramId(n1).equals(this.getNGramId(n2))) {
-			Long freq = this.nGramCounts.get(this.getNGramId(n1));
-			if (freq == null)
-				return 1.0d - 1.0d / this.nGramCountSum;
-			else
-				return 1.0d - freq.doubleValue() / this.nGramCountSum;
-		}
-
-		return this.mismatchComparer.compare(n1, n2);
-	}
-
-	@Override
-	public String toString() {
-		return "Freq(" + this.mismatchComparer.getName() + ")[count=" + nGramCounts.size() + ", countSum=" + nGramCountSum + "]";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import jurbano.melodyshape.model.InMemoryMelodyCollection;
+import jurbano.melodyshape.model.Melody;
+import jurbano.melodyshape.model.MelodyCollection;
+import jurbano.melodyshape.model.MelodyCollectionObserver;
+
+/**
+ * A similarity function between two {@link NGram} objects that uses a second
+ * {@link NGramComparer} for mismatches and the frequency of n-grams in the
+ * collection for insertions, deletions and matches.
+ * <p>
+ * The frequencies can be updated as new melodies are added to the collection,
+ * with {@link #addMelodies(Iterable)}. If the collection is an
+ * {@link InMemoryMelodyCollection}, this is done automatically whenever
+ * melodies are added to it. Every update increments the version of the
+ * comparer, so that scores stored by other classes are computed again.
+ * <p>
+ * Frequencies are kept in an array indexed by the integer identifiers of the
+ * {@link NGramVocabulary} of the mismatch comparer, so looking one up is a
+ * single array access. The {@link NGramCountTable} is only used to read and
+ * write the frequencies from and to files.
+ * 
+ * @author Julián Urbano
+ * @see NGram
+ * @see NGramComparer
+ */
+public class FrequencyNGramComparer implements VersionedNGramComparer, BoundedNGramComparer, MelodyCollectionObserver {
+	static final int MELODIES_PER_TASK = 1024;
+
+	protected volatile Counts counts;
+	protected NGramVocabulary vocabulary;
+
+	protected NGramComparer mismatchComparer;
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "Freq(comparer)"}, where
+	 *         {@code comparer} is the name of the underlying
+	 *         {@link NGramComparer}.
+	 */
+	@Override
+	public String getName() {
+		return "Freq(" + this.mismatchComparer.getName() + ")";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getNGramId(NGram g) {
+		return this.mismatchComparer.getNGramId(g);
+	}
+
+	/**
+	 * Constructs a new {@code FrequencyNGramComparer} for the specified
+	 * {@link MelodyCollection} and using the specified
+	 * {@link NGramMelodyComparer}. The frequency of all n-grams in the
+	 * collection are computed here, counting partitions of the collection in
+	 * parallel and then merging the counts. If the collection is an
+	 * {@link InMemoryMelodyCollection}, this comparer observes it to update
+	 * the frequencies when melodies are added.
+	 * 
+	 * @param coll
+	 *            the collection of melodies.
+	 * @param nGramLength
+	 *            the length of the n-grams to compute.
+	 * @param mismatchComparer
+	 *            the n-gram comparer for mismatches.
+	 */
+	public FrequencyNGramComparer(MelodyCollection coll, int nGramLength, NGramComparer mismatchComparer) {
+		this.mismatchComparer = mismatchComparer;
+		this.vocabulary = NGramVocabulary.getVocabulary(mismatchComparer);
+		ArrayList<Melody> melodies = new ArrayList<Melody>(coll.size());
+		for (Melody m : coll)
+			melodies.add(m);
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			CountTask task = new CountTask(melodies, 0, melodies.size(), nGramLength, this.vocabulary);
+			this.counts = new Counts(pool.invoke(task), nGramLength, 0);
+		} finally {
+			pool.shutdown();
+		}
+		if (coll instanceof InMemoryMelodyCollection)
+			((InMemoryMelodyCollection) coll).addObserver(this);
+	}
+
+	/**
+	 * Constructs a new {@code FrequencyNGramComparer} for the specified
+	 * {@link NGramMelodyComparer} reading n-gram frequencies from a file.
+	 * <p>
+	 * The n-gram identifiers in the file are resolved once, when it is read,
+	 * into the integer identifiers of the vocabulary of the mismatch
+	 * comparer.
+	 * 
+	 * @param statsPath
+	 *            the path to a file containing the n-gram frequencies in a
+	 *            collection of melodies.
+	 * @param mismatchComparer
+	 *            the n-gram comparer for mismatches.
+	 * @throws IOException
+	 *             if an I/O or format error occurs.
+	 * @see FrequencyNGramComparer#saveStatistics(String)
+	 */
+	public FrequencyNGramComparer(String statsPath, NGramComparer mismatchComparer) throws IOException {
+		this.mismatchComparer = mismatchComparer;
+		this.vocabulary = NGramVocabulary.getVocabulary(mismatchComparer);
+		NGramCountTable table = NGramCountTable.read(statsPath);
+		long[] byId = new long[table.size()];
+		for (int i = 0; i < table.size(); i++) {
+			int id = this.vocabulary.getId(table.getNGramId(i));
+			if (id >= byId.length)
+				byId = Arrays.copyOf(byId, Math.max(id + 1, 2 * byId.length));
+			byId[id] += table.getCount(i);
+		}
+		this.counts = new Counts(byId, table.getNGramLength(), 0);
+	}
+
+	/**
+	 * Gets the number of occurrences of an n-gram in the collection.
+	 * 
+	 * @param counts
+	 *            the counts.
+	 * @param g
+	 *            the n-gram.
+	 * @return the number of occurrences, or 0 if it does not appear.
+	 */
+	protected long getCount(Counts counts, NGram g) {
+		int id = this.vocabulary.getId(g);
+		return id < counts.byId.length ? counts.byId[id] : 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The version is incremented every time melodies are added.
+	 */
+	@Override
+	public long getVersion() {
+		return this.counts.version;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The n-grams of the melodies are added to the frequencies of this
+	 * {@code FrequencyNGramComparer}.
+	 * 
+	 * @see FrequencyNGramComparer#addMelodies(Iterable)
+	 */
+	@Override
+	public void melodiesAdded(MelodyCollection coll, List<Melody> melodies) {
+		this.addMelodies(melodies);
+	}
+
+	/**
+	 * Adds the n-grams of a {@link Melody} to the frequencies of this
+	 * {@code FrequencyNGramComparer}.
+	 * 
+	 * @param m
+	 *            the melody to add.
+	 * @see FrequencyNGramComparer#addMelodies(Iterable)
+	 */
+	public void addMelody(Melody m) {
+		this.addMelodies(Collections.singletonList(m));
+	}
+
+	/**
+	 * Adds the n-grams of several {@link Melody} objects to the frequencies of
+	 * this {@code FrequencyNGramComparer}, and increments its version.
+	 * <p>
+	 * Only the new melodies are scanned, and their counts are added to a copy
+	 * of the array of counts, so the cost of each call is linear in the number
+	 * of new melodies plus the number of different n-grams. Comparisons
+	 * running concurrently see either the old or the new frequencies.
+	 * 
+	 * @param melodies
+	 *            the melodies to add.
+	 * @see VersionedNGramComparer
+	 */
+	public synchronized void addMelodies(Iterable<Melody> melodies) {
+		Counts counts = this.counts;
+		long[] byId = Arrays.copyOf(counts.byId, Math.max(counts.byId.length, this.vocabulary.size()));
+		for (Melody m : melodies) {
+			for (NGram n : CompiledMelody.get(m, counts.nGramLength).getNGrams()) {
+				int id = this.vocabulary.getId(n);
+				if (id >= byId.length)
+					byId = Arrays.copyOf(byId, Math.max(id + 1, 2 * byId.length));
+				byId[id]++;
+			}
+		}
+		this.counts = new Counts(byId, counts.nGramLength, counts.version + 1);
+	}
+
+	/**
+	 * Saves the frequency of all n-grams in this {@code FrequencyNGramComparer}
+	 * to the specified file, in the binary format of {@link NGramCountTable}.
+	 * 
+	 * @param path
+	 *            the path of the file to save the n-gram frequencies.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public void saveStatistics(String path) throws IOException {
+		Counts counts = this.counts;
+		NGramCountTable.Builder builder = new NGramCountTable.Builder(counts.nGramLength);
+		for (int id = 0; id < counts.byId.length; id++)
+			if (counts.byId[id] != 0)
+				builder.add(this.vocabulary.getNGramId(id), counts.byId[id]);
+		builder.build().write(path);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return {@code -(1-f)} if either {@link NGram} is {@code null},
+	 *         {@code (1-f)} if they are the same, and the (dis)similarity
+	 *         returned by the underlying {@link NGramComparer} if they are
+	 *         different.
+	 */
+	@Override
+	public double compare(NGram n1, NGram n2) {
+		Counts counts = this.counts;
+		if (n1 == null) {
+			long f2 = this.getCount(counts, n2);
+			if (f2 != 0)
+				return -1.0d + (double) f2 / counts.countSum;
+			else
+				return -1.0d / counts.countSum;
+		}
+		if (n2 == null) {
+			long f1 = this.getCount(counts, n1);
+			if (f1 != 0)
+				return -1.0d + (double) f1 / counts.countSum;
+			else
+				return -1.0d / counts.countSum;
+		}
+		if (this.vocabulary.getId(n1) == this.vocabulary.getId(n2)) {
+			long freq = this.getCount(counts, n1);
+			if (freq == 0)
+				return 1.0d - 1.0d / counts.countSum;
+			else
+				return 1.0d - (double) freq / counts.countSum;
+		}
+
+		return this.mismatchComparer.compare(n1, n2);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the largest of {@code (1-f)} and the upper bound of the
+	 *         underlying {@link NGramComparer}, or
+	 *         {@link Double#POSITIVE_INFINITY} if it is not a
+	 *         {@link BoundedNGramComparer}.
+	 */
+	@Override
+	public double getMaxScore(NGram g) {
+		Counts counts = this.counts;
+		long freq = this.getCount(counts, g);
+		double match;
+		if (freq == 0)
+			match = 1.0d - 1.0d / counts.countSum;
+		else
+			match = 1.0d - (double) freq / counts.countSum;
+		if (!(this.mismatchComparer instanceof BoundedNGramComparer))
+			return Double.POSITIVE_INFINITY;
+		return Math.max(match, ((BoundedNGramComparer) this.mismatchComparer).getMaxScore(g));
+	}
+
+	@Override
+	public String toString() {
+		Counts counts = this.counts;
+		return "Freq(" + this.mismatchComparer.getName() + ")[count=" + counts.size + ", countSum=" + counts.countSum
+				+ ", version=" + counts.version + "]";
+	}
+
+	/**
+	 * An immutable version of the n-gram counts, indexed by the integer
+	 * identifiers of the vocabulary.
+	 */
+	protected static class Counts
+	{
+		final long[] byId;
+		final int nGramLength;
+		final int size;
+		final long countSum;
+		final long version;
+
+		Counts(long[] byId, int nGramLength, long version) {
+			this.byId = byId;
+			this.nGramLength = nGramLength;
+			this.version = version;
+			int size = 0;
+			long countSum = 0;
+			for (long count : byId) {
+				if (count != 0)
+					size++;
+				countSum += count;
+			}
+			this.size = size;
+			this.countSum = countSum;
+		}
+	}
+
+	/**
+	 * Counts the n-grams of a range of melodies, splitting it in halves and
+	 * merging the counts of both if it is too large.
+	 */
+	@SuppressWarnings("serial")
+	protected static class CountTask extends RecursiveTask<long[]>
+	{
+		final ArrayList<Melody> melodies;
+		final int from;
+		final int to;
+		final int nGramLength;
+		final NGramVocabulary vocabulary;
+
+		CountTask(ArrayList<Melody> melodies, int from, int to, int nGramLength, NGramVocabulary vocabulary) {
+			this.melodies = melodies;
+			this.from = from;
+			this.to = to;
+			this.nGramLength = nGramLength;
+			this.vocabulary = vocabulary;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (this.to - this.from <= FrequencyNGramComparer.MELODIES_PER_TASK) {
+				long[] byId = new long[1024];
+				for (int i = this.from; i < this.to; i++)
+					for (NGram n : CompiledMelody.get(this.melodies.get(i), this.nGramLength).getNGrams()) {
+						int id = this.vocabulary.getId(n);
+						if (id >= byId.length)
+							byId = Arrays.copyOf(byId, Math.max(id + 1, 2 * byId.length));
+						byId[id]++;
+					}
+				return byId;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			CountTask left = new CountTask(this.melodies, this.from, middle, this.nGramLength, this.vocabulary);
+			CountTask right = new CountTask(this.melodies, middle, this.to, this.nGramLength, this.vocabulary);
+			left.fork();
+			long[] byId = right.compute();
+			long[] other = left.join();
+			if (other.length > byId.length)
+				byId = Arrays.copyOf(byId, other.length);
+			for (int id = 0; id < other.length; id++)
+				byId[id] += other[id];
+			return byId;
+		}
+	}
+}
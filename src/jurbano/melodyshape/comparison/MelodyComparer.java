@@ -1,38 +1,107 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison;
-
-import jurbano.melodyshape.model.Melody;
-
-/**
- * Represents a function that computes a similarity score between two
- * {@link Melody} objects.
- * 
- * @author Julián Urbano
- * @see Melody
- */
-public interface MelodyComparer
-{
-	/**
-	 * Gets the name of this {@code MelodyComparer}
-	 * 
-	 * @return the name of the melody comparer.
-	 */
-	public String getName();
-	
-	/**
-	 * Computes a similarity score between two melodies.
-	 * <p>
-	 * The similarity score is proportional to the melodic similarity between
-	 * the melodies, that is {@code compare(m1, m2) > compare(m1, m3)} means
-	 * that melody {@code m2} is more similar to {@code m1} than {@code m3} is.
-	 * 
-	 * @param m1
-	 *            the first melody to compare.
-	 * @param m2
-	 *            the second melody to compare.
-	 * @return the similarity score.
-	 */
-	public double compare(Melody m1, Melody m2);
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.List;
+
+import jurbano.melodyshape.comparison.alignment.Alignment;
+import jurbano.melodyshape.model.Melody;
+
+/**
+ * Represents a function that computes a similarity score between two
+ * {@link Melody} objects.
+ * 
+ * @author Julián Urbano
+ * @see Melody
+ */
+public interface MelodyComparer
+{
+	/**
+	 * Gets the name of this {@code MelodyComparer}
+	 * 
+	 * @return the name of the melody comparer.
+	 */
+	public String getName();
+	
+	/**
+	 * Computes a similarity score between two melodies.
+	 * <p>
+	 * The similarity score is proportional to the melodic similarity between
+	 * the melodies, that is {@code compare(m1, m2) > compare(m1, m3)} means
+	 * that melody {@code m2} is more similar to {@code m1} than {@code m3} is.
+	 * 
+	 * @param m1
+	 *            the first melody to compare.
+	 * @param m2
+	 *            the second melody to compare.
+	 * @return the similarity score.
+	 */
+	public double compare(Melody m1, Melody m2);
+	
+	/**
+	 * Computes a similarity score between two melodies, abandoning the
+	 * computation as soon as the score is known to fall below a
+	 * {@link TopKThreshold}.
+	 * 
+	 * @param m1
+	 *            the first melody to compare.
+	 * @param m2
+	 *            the second melody to compare.
+	 * @param threshold
+	 *            the threshold, or {@code null} to never abandon.
+	 * @return the similarity score, or {@link Double#NEGATIVE_INFINITY} if
+	 *         the computation was abandoned.
+	 */
+	public double compare(Melody m1, Melody m2, TopKThreshold threshold);
+	
+	/**
+	 * Computes the similarity scores between a melody and a block of
+	 * melodies. It is equivalent to calling
+	 * {@code compare(m1, m2, threshold)} for each melody in the block, but
+	 * the preparation of the first melody is done only once. If there is a
+	 * threshold, every score is offered to it as soon as it is computed.
+	 * 
+	 * @param m1
+	 *            the first melody to compare, usually the query.
+	 * @param m2s
+	 *            the block of melodies to compare with.
+	 * @param threshold
+	 *            the threshold, or {@code null} to never abandon.
+	 * @param scores
+	 *            the array where the similarity score with each melody is
+	 *            written, or {@link Double#NEGATIVE_INFINITY} if the
+	 *            computation was abandoned.
+	 * @see TopKThreshold#offer(double)
+	 */
+	public void compare(Melody m1, List<Melody> m2s, TopKThreshold threshold, double[] scores);
+	
+	/**
+	 * Computes upper bounds of the similarity scores between a melody and a
+	 * block of melodies, without comparing them. Bounds are much cheaper than
+	 * comparisons, so they can be used to skip melodies that cannot make it
+	 * into the top {@code k}.
+	 * 
+	 * @param m1
+	 *            the first melody to compare, usually the query.
+	 * @param m2s
+	 *            the block of melodies to compare with.
+	 * @param bounds
+	 *            the array where the bound of each melody is written, or
+	 *            {@link Double#POSITIVE_INFINITY} if no bound is known.
+	 * @see TopKThreshold#canPrune(double)
+	 */
+	public void getUpperBounds(Melody m1, List<Melody> m2s, double[] bounds);
+	
+	/**
+	 * Explains the similarity score between two melodies, that is, which parts
+	 * of each melody were matched with each other.
+	 * 
+	 * @param m1
+	 *            the first melody to compare.
+	 * @param m2
+	 *            the second melody to compare.
+	 * @return the alignment between the melodies.
+	 */
+	public Alignment explain(Melody m1, Melody m2);
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.List;
+
+import jurbano.melodyshape.model.Melody;
+
+/**
+ * An index over a collection of melodies that selects, for a query, the
+ * candidate melodies worth comparing with a {@link MelodyComparer}. Melodies
+ * not selected are not compared at all, so an index trades recall for speed.
+ * 
+ * @author Julián Urbano
+ * @see MelodyComparer
+ */
+public interface MelodyIndex
+{
+	/**
+	 * Gets the name of the index.
+	 * 
+	 * @return the name of the index.
+	 */
+	public String getName();
+
+	/**
+	 * Gets the candidate melodies to compare with a query.
+	 * 
+	 * @param query
+	 *            the query melody.
+	 * @return the list of candidates, in the order of the collection.
+	 */
+	public List<Melody> getCandidates(Melody query);
+}
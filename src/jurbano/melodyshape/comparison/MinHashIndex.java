@@ -0,0 +1,230 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import jurbano.melodyshape.model.Melody;
+import jurbano.melodyshape.model.MelodyCollection;
+
+/**
+ * A locality-sensitive hashing index over the sets of {@link NGram}
+ * identifiers of the melodies in a collection, to select as candidates the
+ * melodies whose sets are similar to the query's.
+ * <p>
+ * N-grams are identified as by an {@link NGramComparer}, such as
+ * {@link IntervalPitchNGramComparer} for the interval form or
+ * {@link jurbano.melodyshape.comparison.bspline.BSplineShapeNGramComparer} for
+ * the shape form, and encoded with an {@link NGramVocabulary}. Each melody is
+ * summarized with a MinHash signature of {@code bands*rows} values, split in
+ * {@code bands} bands of {@code rows} values each. A melody is a candidate if
+ * at least one band of its signature is equal to the same band of the query's
+ * signature.
+ * <p>
+ * The probability that a melody is a candidate depends on the Jaccard
+ * similarity {@code s} between its set of n-grams and the query's, and it is
+ * {@code 1-(1-s^rows)^bands}, as given by {@link #getRecall(double)}. More
+ * bands increase recall and the number of candidates; more rows per band
+ * decrease them. Melodies shorter than the n-gram length are never
+ * candidates.
+ * <p>
+ * The buckets of each band are kept in a sorted array, so a query costs one
+ * binary search per band plus the number of candidates. Signatures are
+ * computed with fixed hash functions, so the candidates of a query are always
+ * the same.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @author Julián Urbano
+ * @see NGramVocabulary
+ */
+public class MinHashIndex implements MelodyIndex
+{
+	static final long SEED = 0x4D53484CL; // "MSHL"
+
+	protected final NGramComparer keyComparer;
+	protected final NGramVocabulary vocabulary;
+	protected final int nGramLength;
+	protected final int bands;
+	protected final int rows;
+	protected final long[] multipliers;
+	protected final long[] increments;
+	protected final ArrayList<Melody> melodies;
+	/**
+	 * The buckets of each band, as {@code key<<32|ordinal}, sorted.
+	 */
+	protected final long[][] buckets;
+
+	/**
+	 * Constructs a new {@code MinHashIndex} over the specified collection.
+	 * 
+	 * @param coll
+	 *            the collection of melodies to index.
+	 * @param nGramLength
+	 *            the n-gram length, that is, number of {@code Note}s.
+	 * @param keyComparer
+	 *            the comparer that defines the n-gram identifiers.
+	 * @param bands
+	 *            the number of bands of the signatures.
+	 * @param rows
+	 *            the number of values in each band.
+	 * @throws IllegalArgumentException
+	 *             if {@code bands} or {@code rows} is not positive.
+	 */
+	public MinHashIndex(MelodyCollection coll, int nGramLength, NGramComparer keyComparer, int bands, int rows) {
+		if (bands < 1 || rows < 1)
+			throw new IllegalArgumentException("bands and rows must be positive.");
+		this.keyComparer = keyComparer;
+		this.vocabulary = NGramVocabulary.getVocabulary(keyComparer);
+		this.nGramLength = nGramLength;
+		this.bands = bands;
+		this.rows = rows;
+		Random random = new Random(MinHashIndex.SEED);
+		this.multipliers = new long[bands * rows];
+		this.increments = new long[bands * rows];
+		for (int h = 0; h < this.multipliers.length; h++) {
+			this.multipliers[h] = random.nextLong() | 1;
+			this.increments[h] = random.nextLong();
+		}
+		this.melodies = new ArrayList<Melody>(coll.size());
+		for (Melody m : coll)
+			this.melodies.add(m);
+
+		int[][] keys = new int[this.melodies.size()][];
+		int indexed = 0;
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			keys[ordinal] = this.getBandKeys(this.melodies.get(ordinal));
+			if (keys[ordinal] != null)
+				indexed++;
+		}
+		this.buckets = new long[bands][indexed];
+		for (int band = 0; band < bands; band++) {
+			long[] bucket = this.buckets[band];
+			for (int ordinal = 0, i = 0; ordinal < keys.length; ordinal++)
+				if (keys[ordinal] != null)
+					bucket[i++] = ((long) keys[ordinal][band] << 32) | ordinal;
+			Arrays.sort(bucket);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "MinHashIndex(comparer,bands,rows)"},
+	 *         where {@code comparer} is the name of the comparer that defines
+	 *         the n-gram identifiers.
+	 */
+	@Override
+	public String getName() {
+		return "MinHashIndex(" + this.keyComparer.getName() + "," + this.bands + "," + this.rows + ")";
+	}
+
+	/**
+	 * Gets the probability that a melody is a candidate, given the Jaccard
+	 * similarity between its set of n-grams and the query's.
+	 * 
+	 * @param similarity
+	 *            the Jaccard similarity, between 0 and 1.
+	 * @return the probability of being a candidate.
+	 */
+	public double getRecall(double similarity) {
+		return 1 - Math.pow(1 - Math.pow(similarity, this.rows), this.bands);
+	}
+
+	/**
+	 * Gets the Jaccard similarity at which a melody is a candidate with
+	 * probability about one half, that is, {@code (1/bands)^(1/rows)}.
+	 * 
+	 * @return the similarity threshold.
+	 */
+	public double getThreshold() {
+		return Math.pow(1.0 / this.bands, 1.0 / this.rows);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The candidates are the melodies that share at least one band of the
+	 * signature with the query.
+	 */
+	@Override
+	public List<Melody> getCandidates(Melody query) {
+		ArrayList<Melody> candidates = new ArrayList<Melody>();
+		int[] keys = this.getBandKeys(query);
+		if (keys == null)
+			return candidates;
+
+		int[] ordinals = new int[16];
+		int count = 0;
+		for (int band = 0; band < this.bands; band++) {
+			long[] bucket = this.buckets[band];
+			int i = Arrays.binarySearch(bucket, (long) keys[band] << 32);
+			if (i < 0)
+				i = -i - 1; // first entry with this key, if any
+			for (; i < bucket.length && (int) (bucket[i] >> 32) == keys[band]; i++) {
+				if (count == ordinals.length)
+					ordinals = Arrays.copyOf(ordinals, 2 * count);
+				ordinals[count++] = (int) bucket[i];
+			}
+		}
+		// melodies can collide in several bands, so sort and skip duplicates
+		Arrays.sort(ordinals, 0, count);
+		for (int i = 0; i < count; i++)
+			if (i == 0 || ordinals[i] != ordinals[i - 1])
+				candidates.add(this.melodies.get(ordinals[i]));
+		return candidates;
+	}
+
+	/**
+	 * Computes the key of each band of the MinHash signature of a melody.
+	 * 
+	 * @param melody
+	 *            the melody.
+	 * @return the key of each band, or {@code null} if the melody has no
+	 *         n-grams.
+	 */
+	protected int[] getBandKeys(Melody melody) {
+		ArrayList<NGram> nGrams = CompiledMelody.get(melody, this.nGramLength).getNGrams();
+		if (nGrams.isEmpty())
+			return null;
+		int[] ids = new int[nGrams.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = this.vocabulary.getId(nGrams.get(i));
+
+		int[] keys = new int[this.bands];
+		for (int band = 0; band < this.bands; band++) {
+			long key = band;
+			for (int row = 0; row < this.rows; row++) {
+				int h = band * this.rows + row;
+				long min = Long.MAX_VALUE;
+				for (int id : ids)
+					min = Math.min(min, MinHashIndex.mix(id * this.multipliers[h] + this.increments[h]));
+				key = MinHashIndex.mix(key * 31 + min);
+			}
+			keys[band] = (int) (key ^ (key >>> 32));
+		}
+		return keys;
+	}
+
+	/**
+	 * Scrambles the bits of a value, so that any small change in the input
+	 * changes about half of the bits of the output.
+	 * 
+	 * @param x
+	 *            the value.
+	 * @return the scrambled value.
+	 */
+	static long mix(long x) {
+		// finalizer of MurmurHash3
+		x ^= x >>> 33;
+		x *= 0xFF51AFD7ED558CCDL;
+		x ^= x >>> 33;
+		x *= 0xC4CEB9FE1A85EC53L;
+		x ^= x >>> 33;
+		return x;
+	}
+}
@@ -1,67 +1,193 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison;
-
-import jurbano.melodyshape.model.Melody;
-import jurbano.melodyshape.model.Note;
-
-import java.util.ArrayList;
-
-/**
- * An n-gram of notes, that is, a sequence of n consecutive {@link Note}
- * objects.
- * 
- * @author Julián Urbano
- * @see Note
- */
-@SuppressWarnings("serial")
-public class NGram extends ArrayList<Note>
-{
-	/**
-	 * Gets a null n-gram of this object. A null n-gram contains the same notes
-	 * but with all notes set to the pitch of this n-gram's first note.
-	 * 
-	 * @return the null n-gram.
-	 */
-	public NGram getNullSpan() {
-		NGram s = new NGram();
-		for (Note n : this)
-			s.add(new Note(this.get(0).getPitch(), n.getOnset(), n.getDuration(), n.getRestFraction()));
-		return s;
-	}
-	
-	/**
-	 * Gets the sequence of {@code n}-grams, each containing {@code n}
-	 * {@link Note} objects, from the {@link Melody} specified.
-	 * 
-	 * @param m
-	 *            the melody.
-	 * @param n
-	 *            the length of the n-grams.
-	 * @return the sequence of {@code n}-grams.
-	 */
-	public static ArrayList<NGram> getNGrams(Melody m, int n) {
-		ArrayList<NGram> list = new ArrayList<NGram>();
-
-		for (int i = 0; i <= m.size() - n; i++) {
-			NGram gram = new NGram();
-			for (int j = 0; j < n; j++)
-				gram.add(m.get(i + j));
-			list.add(gram);
-		}
-
-		return list;
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public String toString() {
-		String res = "";
-		for (Note n : this)
-			res += "{" + n.getPitch() + "," + n.getDuration() + "," + n.getRestFraction() + "}";
-		return res;
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import jurbano.melodyshape.model.Melody;
+import jurbano.melodyshape.model.Note;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An n-gram of notes, that is, a sequence of n consecutive {@link Note}
+ * objects.
+ * 
+ * @author Julián Urbano
+ * @see Note
+ */
+@SuppressWarnings("serial")
+public class NGram extends ArrayList<Note>
+{
+	private static final AtomicInteger nextFeatureSlot = new AtomicInteger();
+	
+	protected transient volatile Object[] features;
+	protected transient CompiledMelody melody;
+	protected transient int index;
+	
+	/**
+	 * Constructs a new and empty {@code NGram}.
+	 */
+	public NGram() {
+	}
+	
+	/**
+	 * Constructs the {@code NGram} at the specified position of a
+	 * {@link CompiledMelody}, whose packed features are then used by this
+	 * n-gram.
+	 * 
+	 * @param melody
+	 *            the compiled melody.
+	 * @param index
+	 *            the index of the n-gram within the melody.
+	 */
+	NGram(CompiledMelody melody, int index) {
+		super(melody.getNGramLength());
+		for (int j = 0; j < melody.getNGramLength(); j++)
+			this.add(melody.getMelody().get(index + j));
+		this.melody = melody;
+		this.index = index;
+	}
+	
+	/**
+	 * Reserves a new slot to store a feature computed from n-grams, such as
+	 * the coefficients of their splines. Slots are usually reserved once per
+	 * class, in a static initializer.
+	 * 
+	 * @return the index of the new slot.
+	 * @see NGram#getFeature(int)
+	 */
+	public static int newFeatureSlot() {
+		return NGram.nextFeatureSlot.getAndIncrement();
+	}
+	
+	/**
+	 * Gets a feature previously computed from this n-gram.
+	 * 
+	 * @param slot
+	 *            the slot of the feature.
+	 * @return the feature, or {@code null} if it has not been set.
+	 * @see NGram#setFeature(int, Object)
+	 */
+	public Object getFeature(int slot) {
+		Object[] features = this.features;
+		if (features == null || slot >= features.length)
+			return null;
+		return features[slot];
+	}
+	
+	/**
+	 * Stores a feature computed from this n-gram, so that it does not need to
+	 * be computed again every time this n-gram is compared.
+	 * <p>
+	 * Features must be immutable and depend only on the notes of the n-gram,
+	 * which must not change afterwards. This method is thread-safe, but if
+	 * several threads set features concurrently some of them may be lost and
+	 * need to be computed again.
+	 * 
+	 * @param slot
+	 *            the slot of the feature.
+	 * @param feature
+	 *            the feature.
+	 * @see NGram#newFeatureSlot()
+	 */
+	public void setFeature(int slot, Object feature) {
+		Object[] features = this.features;
+		Object[] newFeatures = new Object[Math.max(slot + 1, features == null ? 0 : features.length)];
+		if (features != null)
+			System.arraycopy(features, 0, newFeatures, 0, features.length);
+		newFeatures[slot] = feature;
+		this.features = newFeatures;
+	}
+	
+	/**
+	 * Gets the pitch of a note relative to the first note of this n-gram.
+	 * 
+	 * @param i
+	 *            the index of the note.
+	 * @return the relative pitch.
+	 */
+	public int getRelativePitch(int i) {
+		if (this.melody != null)
+			return this.melody.getRelativePitch(this.index, i);
+		return this.get(i).getPitch() - this.get(0).getPitch();
+	}
+	
+	/**
+	 * Gets the pitch interval between a note of this n-gram and the previous
+	 * one.
+	 * 
+	 * @param i
+	 *            the index of the note, from 1.
+	 * @return the pitch of note {@code i} minus the pitch of note {@code i-1}.
+	 */
+	public int getPitchInterval(int i) {
+		if (this.melody != null)
+			return this.melody.getPitchInterval(this.index + i - 1);
+		return this.get(i).getPitch() - this.get(i - 1).getPitch();
+	}
+	
+	/**
+	 * Gets the duration of a note relative to the duration of the first note
+	 * of this n-gram.
+	 * 
+	 * @param i
+	 *            the index of the note.
+	 * @return the ratio between both durations.
+	 */
+	public double getDurationRatio(int i) {
+		if (this.melody != null)
+			return this.melody.getDurationRatio(this.index, i);
+		return this.get(i).getDuration() / (double) this.get(0).getDuration();
+	}
+	
+	/**
+	 * Gets a null n-gram of this object. A null n-gram contains the same notes
+	 * but with all notes set to the pitch of this n-gram's first note.
+	 * 
+	 * @return the null n-gram.
+	 */
+	public NGram getNullSpan() {
+		NGram s = new NGram();
+		for (Note n : this)
+			s.add(new Note(this.get(0).getPitch(), n.getOnset(), n.getDuration(), n.getRestFraction()));
+		return s;
+	}
+	
+	/**
+	 * Gets the sequence of {@code n}-grams, each containing {@code n}
+	 * {@link Note} objects, from the {@link Melody} specified.
+	 * <p>
+	 * A new list is built in every call; use
+	 * {@link CompiledMelody#get(Melody, int)} to reuse the same n-grams.
+	 * 
+	 * @param m
+	 *            the melody.
+	 * @param n
+	 *            the length of the n-grams.
+	 * @return the sequence of {@code n}-grams.
+	 */
+	public static ArrayList<NGram> getNGrams(Melody m, int n) {
+		ArrayList<NGram> list = new ArrayList<NGram>();
+
+		for (int i = 0; i <= m.size() - n; i++) {
+			NGram gram = new NGram();
+			for (int j = 0; j < n; j++)
+				gram.add(m.get(i + j));
+			list.add(gram);
+		}
+
+		return list;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		String res = "";
+		for (Note n : this)
+			res += "{" + n.getPitch() + "," + n.getDuration() + "," + n.getRestFraction() + "}";
+		return res;
+	}
+}
@@ -0,0 +1,387 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * An immutable table with the number of occurrences of n-grams in a
+ * collection, indexed by n-gram identifier.
+ * <p>
+ * The table is stored in a single {@link ByteBuffer} with the same layout as
+ * the statistics files, so that a file can be memory-mapped and queried
+ * directly, without deserializing it. The layout is, in big-endian order:
+ * <ul>
+ * <li>{@code int} magic number and {@code int} format version.</li>
+ * <li>{@code long} sum of all counts.</li>
+ * <li>{@code int} n-gram length.</li>
+ * <li>{@code int} number of n-grams, {@code n}, and {@code int} number of hash
+ * slots, {@code s}, a power of 2 greater than {@code n}.</li>
+ * <li>{@code int} reserved, 0.</li>
+ * <li>{@code s} {@code int}s with the hash index: 0 for empty slots, or
+ * {@code i+1} for the i-th n-gram. Slots are probed linearly from the
+ * {@link String#hashCode()} of the n-gram identifier.</li>
+ * <li>{@code n} {@code long}s with the counts.</li>
+ * <li>{@code n+1} {@code int}s with the offsets of each identifier.</li>
+ * <li>The identifiers, encoded in UTF-8.</li>
+ * </ul>
+ * Tables are created with a {@link Builder}.
+ *
+ * @author Julián Urbano
+ * @see FrequencyNGramComparer
+ */
+public class NGramCountTable
+{
+	static final int MAGIC = 0x4D534E43; // "MSNC"
+	static final int FILE_VERSION = 2;
+	static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected final ByteBuffer buffer;
+	protected final long countSum;
+	protected final int nGramLength;
+	protected final int size;
+	protected final int slots;
+	protected final int countsStart;
+	protected final int offsetsStart;
+	protected final int stringsStart;
+
+	/**
+	 * Constructs a {@code NGramCountTable} over the specified buffer.
+	 *
+	 * @param buffer
+	 *            the buffer with the table.
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not contain a valid table.
+	 */
+	protected NGramCountTable(ByteBuffer buffer) {
+		if (buffer.capacity() < NGramCountTable.HEADER_SIZE || buffer.getInt(0) != NGramCountTable.MAGIC
+				|| buffer.getInt(4) != NGramCountTable.FILE_VERSION)
+			throw new IllegalArgumentException("Unknown n-gram count table format.");
+		this.buffer = buffer;
+		this.countSum = buffer.getLong(8);
+		this.nGramLength = buffer.getInt(16);
+		this.size = buffer.getInt(20);
+		this.slots = buffer.getInt(24);
+		this.countsStart = NGramCountTable.HEADER_SIZE + 4 * this.slots;
+		this.offsetsStart = this.countsStart + 8 * this.size;
+		this.stringsStart = this.offsetsStart + 4 * (this.size + 1);
+		// there must be at least one empty slot, or lookups of missing n-grams
+		// would never end
+		if (this.size < 0 || Integer.bitCount(this.slots) != 1 || this.slots <= this.size
+				|| this.slots > buffer.capacity() / 4 || this.stringsStart > buffer.capacity()
+				|| this.stringsStart + buffer.getInt(this.offsetsStart + 4 * this.size) != buffer.capacity())
+			throw new IllegalArgumentException("Corrupt n-gram count table.");
+	}
+
+	/**
+	 * Reads a {@code NGramCountTable} from a file by memory-mapping it.
+	 *
+	 * @param path
+	 *            the path to the file.
+	 * @return the table.
+	 * @throws IOException
+	 *             if an I/O or format error occurs.
+	 * @see NGramCountTable#write(String)
+	 */
+	public static NGramCountTable read(String path) throws IOException {
+		FileInputStream fileStream = null;
+		try {
+			fileStream = new FileInputStream(path);
+			FileChannel channel = fileStream.getChannel();
+			// the mapping remains valid after the channel is closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new NGramCountTable(buffer);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Incorrect format in statistics file " + path);
+		} finally {
+			if (fileStream != null)
+				fileStream.close();
+		}
+	}
+
+	/**
+	 * Writes this {@code NGramCountTable} to a file.
+	 *
+	 * @param path
+	 *            the path of the file.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public void write(String path) throws IOException {
+		FileOutputStream fileStream = null;
+		try {
+			fileStream = new FileOutputStream(path);
+			FileChannel channel = fileStream.getChannel();
+			ByteBuffer buffer = this.buffer.duplicate();
+			buffer.clear();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} finally {
+			if (fileStream != null)
+				fileStream.close();
+		}
+	}
+
+	/**
+	 * Gets the number of occurrences of an n-gram.
+	 *
+	 * @param nGramId
+	 *            the identifier of the n-gram.
+	 * @return the number of occurrences, or 0 if the n-gram is not in the
+	 *         table.
+	 */
+	public long getCount(String nGramId) {
+		int i = this.find(nGramId.getBytes(NGramCountTable.UTF8), nGramId.hashCode());
+		return i < 0 ? 0 : this.buffer.getLong(this.countsStart + 8 * i);
+	}
+
+	/**
+	 * Gets the sum of the occurrences of all n-grams.
+	 *
+	 * @return the sum of all counts.
+	 */
+	public long getCountSum() {
+		return this.countSum;
+	}
+
+	/**
+	 * Gets the length of the n-grams in the table.
+	 *
+	 * @return the n-gram length.
+	 */
+	public int getNGramLength() {
+		return this.nGramLength;
+	}
+
+	/**
+	 * Gets the number of different n-grams in the table.
+	 *
+	 * @return the number of n-grams.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the identifier of the i-th n-gram in the table.
+	 *
+	 * @param i
+	 *            the index of the n-gram.
+	 * @return the identifier.
+	 */
+	public String getNGramId(int i) {
+		int start = this.buffer.getInt(this.offsetsStart + 4 * i);
+		int end = this.buffer.getInt(this.offsetsStart + 4 * i + 4);
+		byte[] bytes = new byte[end - start];
+		for (int j = 0; j < bytes.length; j++)
+			bytes[j] = this.buffer.get(this.stringsStart + start + j);
+		return new String(bytes, NGramCountTable.UTF8);
+	}
+
+	/**
+	 * Gets the number of occurrences of the i-th n-gram in the table.
+	 *
+	 * @param i
+	 *            the index of the n-gram.
+	 * @return the number of occurrences.
+	 */
+	public long getCount(int i) {
+		return this.buffer.getLong(this.countsStart + 8 * i);
+	}
+
+	/**
+	 * Finds the index of an n-gram in the table, or -1 if it is not there.
+	 * Only absolute reads are used, so the buffer can be shared by threads.
+	 */
+	protected int find(byte[] bytes, int hash) {
+		int mask = this.slots - 1;
+		for (int slot = NGramCountTable.mix(hash) & mask;; slot = (slot + 1) & mask) {
+			int entry = this.buffer.getInt(NGramCountTable.HEADER_SIZE + 4 * slot);
+			if (entry == 0)
+				return -1;
+			int i = entry - 1;
+			int start = this.buffer.getInt(this.offsetsStart + 4 * i);
+			int end = this.buffer.getInt(this.offsetsStart + 4 * i + 4);
+			if (end - start == bytes.length) {
+				int j = 0;
+				while (j < bytes.length && this.buffer.get(this.stringsStart + start + j) == bytes[j])
+					j++;
+				if (j == bytes.length)
+					return i;
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a {@link String#hashCode()}, whose lowest bits are
+	 * often similar for similar identifiers.
+	 */
+	static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return hash;
+	}
+
+	/**
+	 * Counts the occurrences of n-grams in primitive arrays, and then builds
+	 * a {@link NGramCountTable}. This class is not thread-safe.
+	 */
+	public static class Builder
+	{
+		protected final int nGramLength;
+		protected String[] ids;
+		protected long[] counts;
+		protected int size;
+		protected long countSum;
+
+		/**
+		 * Constructs a new and empty {@code Builder}.
+		 *
+		 * @param nGramLength
+		 *            the length of the n-grams to count.
+		 */
+		public Builder(int nGramLength) {
+			this.nGramLength = nGramLength;
+			this.ids = new String[1024];
+			this.counts = new long[1024];
+		}
+
+		/**
+		 * Constructs a {@code Builder} with all the counts in a table.
+		 *
+		 * @param table
+		 *            the table.
+		 */
+		public Builder(NGramCountTable table) {
+			this(table.getNGramLength());
+			for (int i = 0; i < table.size(); i++)
+				this.add(table.getNGramId(i), table.getCount(i));
+		}
+
+		/**
+		 * Gets the length of the n-grams counted.
+		 *
+		 * @return the n-gram length.
+		 */
+		public int getNGramLength() {
+			return this.nGramLength;
+		}
+
+		/**
+		 * Adds a number of occurrences of an n-gram.
+		 *
+		 * @param nGramId
+		 *            the identifier of the n-gram.
+		 * @param count
+		 *            the number of occurrences to add.
+		 */
+		public void add(String nGramId, long count) {
+			int mask = this.ids.length - 1;
+			int slot = NGramCountTable.mix(nGramId.hashCode()) & mask;
+			while (this.ids[slot] != null && !this.ids[slot].equals(nGramId))
+				slot = (slot + 1) & mask;
+			if (this.ids[slot] == null) {
+				this.ids[slot] = nGramId;
+				this.size++;
+			}
+			this.counts[slot] += count;
+			this.countSum += count;
+			if (2 * this.size > this.ids.length)
+				this.resize(2 * this.ids.length);
+		}
+
+		/**
+		 * Adds all the counts of another {@code Builder}.
+		 *
+		 * @param other
+		 *            the other builder.
+		 */
+		public void addAll(Builder other) {
+			for (int slot = 0; slot < other.ids.length; slot++)
+				if (other.ids[slot] != null)
+					this.add(other.ids[slot], other.counts[slot]);
+		}
+
+		protected void resize(int capacity) {
+			String[] oldIds = this.ids;
+			long[] oldCounts = this.counts;
+			this.ids = new String[capacity];
+			this.counts = new long[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < oldIds.length; i++) {
+				if (oldIds[i] != null) {
+					int slot = NGramCountTable.mix(oldIds[i].hashCode()) & mask;
+					while (this.ids[slot] != null)
+						slot = (slot + 1) & mask;
+					this.ids[slot] = oldIds[i];
+					this.counts[slot] = oldCounts[i];
+				}
+			}
+		}
+
+		/**
+		 * Builds the {@link NGramCountTable} with the current counts.
+		 *
+		 * @return the table.
+		 */
+		public NGramCountTable build() {
+			// sort identifiers so that files do not depend on insertion order
+			String[] sortedIds = new String[this.size];
+			int n = 0;
+			for (String id : this.ids)
+				if (id != null)
+					sortedIds[n++] = id;
+			Arrays.sort(sortedIds);
+
+			byte[][] bytes = new byte[n][];
+			int stringsSize = 0;
+			for (int i = 0; i < n; i++) {
+				bytes[i] = sortedIds[i].getBytes(NGramCountTable.UTF8);
+				stringsSize += bytes[i].length;
+			}
+			int slots = Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+			int countsStart = NGramCountTable.HEADER_SIZE + 4 * slots;
+			int offsetsStart = countsStart + 8 * n;
+			int stringsStart = offsetsStart + 4 * (n + 1);
+
+			ByteBuffer buffer = ByteBuffer.allocate(stringsStart + stringsSize);
+			buffer.putInt(0, NGramCountTable.MAGIC);
+			buffer.putInt(4, NGramCountTable.FILE_VERSION);
+			buffer.putLong(8, this.countSum);
+			buffer.putInt(16, this.nGramLength);
+			buffer.putInt(20, n);
+			buffer.putInt(24, slots);
+			int offset = 0;
+			for (int i = 0; i < n; i++) {
+				int slot = NGramCountTable.mix(sortedIds[i].hashCode()) & (slots - 1);
+				while (buffer.getInt(NGramCountTable.HEADER_SIZE + 4 * slot) != 0)
+					slot = (slot + 1) & (slots - 1);
+				buffer.putInt(NGramCountTable.HEADER_SIZE + 4 * slot, i + 1);
+				buffer.putLong(countsStart + 8 * i, this.getCount(sortedIds[i]));
+				buffer.putInt(offsetsStart + 4 * i, offset);
+				for (int j = 0; j < bytes[i].length; j++)
+					buffer.put(stringsStart + offset + j, bytes[i][j]);
+				offset += bytes[i].length;
+			}
+			buffer.putInt(offsetsStart + 4 * n, offset);
+			return new NGramCountTable(buffer);
+		}
+
+		protected long getCount(String nGramId) {
+			int mask = this.ids.length - 1;
+			int slot = NGramCountTable.mix(nGramId.hashCode()) & mask;
+			while (!this.ids[slot].equals(nGramId))
+				slot = (slot + 1) & mask;
+			return this.counts[slot];
+		}
+	}
+}
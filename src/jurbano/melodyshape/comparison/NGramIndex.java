@@ -0,0 +1,226 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jurbano.melodyshape.model.Melody;
+import jurbano.melodyshape.model.MelodyCollection;
+
+/**
+ * An inverted index from {@link NGram} identifiers to the melodies of a
+ * collection that contain them, to select candidates by the number of n-grams
+ * they share with a query.
+ * <p>
+ * N-grams are identified as by an {@link NGramComparer}, such as
+ * {@link IntervalPitchNGramComparer} for the interval form or
+ * {@link jurbano.melodyshape.comparison.bspline.BSplineShapeNGramComparer} for
+ * the shape form, and encoded with an {@link NGramVocabulary}. The posting
+ * list of an n-gram holds the ordinal of a melody once per occurrence in that
+ * melody, in collection order.
+ * <p>
+ * The seeds shared by a query and a melody are counted as the size of the
+ * intersection of their multisets of n-grams, so an n-gram repeated in the
+ * query matches at most as many occurrences in the melody. Only the posting
+ * lists of the n-grams in the query are read, so the cost of selecting
+ * candidates grows with the number of matches rather than with the size of the
+ * collection. The melodies with the most seeds are selected, ties broken by
+ * collection order; if fewer melodies share some seed with the query, the rest
+ * are filled in collection order.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @author Julián Urbano
+ * @see NGramVocabulary
+ */
+public class NGramIndex implements MelodyIndex
+{
+	protected final NGramComparer keyComparer;
+	protected final NGramVocabulary vocabulary;
+	protected final int nGramLength;
+	protected final int maxCandidates;
+	protected final ArrayList<Melody> melodies;
+	protected final int[][] postings;
+	protected final int nGramCount;
+
+	/**
+	 * Constructs a new {@code NGramIndex} over the specified collection.
+	 * 
+	 * @param coll
+	 *            the collection of melodies to index.
+	 * @param nGramLength
+	 *            the n-gram length, that is, number of {@code Note}s.
+	 * @param keyComparer
+	 *            the comparer that defines the n-gram identifiers.
+	 * @param maxCandidates
+	 *            the maximum number of candidates to select per query.
+	 * @throws IllegalArgumentException
+	 *             if {@code maxCandidates} is not positive.
+	 */
+	public NGramIndex(MelodyCollection coll, int nGramLength, NGramComparer keyComparer, int maxCandidates) {
+		if (maxCandidates < 1)
+			throw new IllegalArgumentException("maxCandidates must be positive.");
+		this.keyComparer = keyComparer;
+		this.vocabulary = NGramVocabulary.getVocabulary(keyComparer);
+		this.nGramLength = nGramLength;
+		this.maxCandidates = maxCandidates;
+		this.melodies = new ArrayList<Melody>(coll.size());
+		for (Melody m : coll)
+			this.melodies.add(m);
+
+		// first count the occurrences of each n-gram to size the posting lists,
+		// then fill them in collection order. The vocabulary may be shared and
+		// hold other n-grams, so only identifiers seen here are indexed
+		int[] sizes = new int[1024];
+		int maxId = -1;
+		for (Melody m : this.melodies)
+			for (NGram g : CompiledMelody.get(m, nGramLength).getNGrams()) {
+				int id = this.vocabulary.getId(g);
+				if (id >= sizes.length)
+					sizes = Arrays.copyOf(sizes, Math.max(id + 1, 2 * sizes.length));
+				sizes[id]++;
+				maxId = Math.max(maxId, id);
+			}
+		this.postings = new int[maxId + 1][];
+		int nGramCount = 0;
+		for (int id = 0; id < this.postings.length; id++) {
+			this.postings[id] = new int[sizes[id]];
+			if (sizes[id] > 0)
+				nGramCount++;
+		}
+		this.nGramCount = nGramCount;
+		Arrays.fill(sizes, 0);
+		for (int ordinal = 0; ordinal < this.melodies.size(); ordinal++)
+			for (NGram g : CompiledMelody.get(this.melodies.get(ordinal), nGramLength).getNGrams()) {
+				int id = this.vocabulary.getId(g);
+				this.postings[id][sizes[id]++] = ordinal;
+			}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "NGramIndex(comparer,candidates)"},
+	 *         where {@code comparer} is the name of the comparer that defines
+	 *         the n-gram identifiers.
+	 */
+	@Override
+	public String getName() {
+		return "NGramIndex(" + this.keyComparer.getName() + "," + this.maxCandidates + ")";
+	}
+
+	/**
+	 * Gets the number of different n-grams in the index.
+	 * 
+	 * @return the number of n-grams.
+	 */
+	public int size() {
+		return this.nGramCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The candidates are the melodies that share the most seeds with the
+	 * query.
+	 */
+	@Override
+	public List<Melody> getCandidates(Melody query) {
+		int[] seeds = new int[this.melodies.size()];
+		int[] touched = new int[this.melodies.size()];
+		int touchedCount = this.countSeeds(query, seeds, touched);
+
+		ArrayList<Melody> candidates = new ArrayList<Melody>(Math.min(this.maxCandidates, this.melodies.size()));
+		if (touchedCount <= this.maxCandidates) {
+			// every melody with some seed is a candidate, plus the first ones
+			// without seeds
+			int fill = this.maxCandidates - touchedCount;
+			for (int ordinal = 0; ordinal < this.melodies.size(); ordinal++)
+				if (seeds[ordinal] > 0)
+					candidates.add(this.melodies.get(ordinal));
+				else if (fill > 0) {
+					candidates.add(this.melodies.get(ordinal));
+					fill--;
+				}
+			return candidates;
+		}
+
+		// ties are broken in collection order
+		Arrays.sort(touched, 0, touchedCount);
+		// find the smallest number of seeds that still makes it into the
+		// candidates, by counting melodies per number of seeds
+		int maxSeeds = 0;
+		for (int t = 0; t < touchedCount; t++)
+			maxSeeds = Math.max(maxSeeds, seeds[touched[t]]);
+		int[] histogram = new int[maxSeeds + 1];
+		for (int t = 0; t < touchedCount; t++)
+			histogram[seeds[touched[t]]]++;
+		int cutoff = maxSeeds;
+		int above = 0;
+		while (above + histogram[cutoff] < this.maxCandidates) {
+			above += histogram[cutoff];
+			cutoff--;
+		}
+		int atCutoff = this.maxCandidates - above;
+		for (int t = 0; t < touchedCount; t++) {
+			int ordinal = touched[t];
+			if (seeds[ordinal] > cutoff)
+				candidates.add(this.melodies.get(ordinal));
+			else if (seeds[ordinal] == cutoff && atCutoff > 0) {
+				candidates.add(this.melodies.get(ordinal));
+				atCutoff--;
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Counts the seeds shared by a query and each melody in the collection.
+	 * 
+	 * @param query
+	 *            the query melody.
+	 * @param seeds
+	 *            the array, initially zero, where to add the number of seeds of
+	 *            each melody, indexed by ordinal.
+	 * @param touched
+	 *            the array where to store the ordinals of the melodies with
+	 *            some seed, in no particular order.
+	 * @return the number of melodies with some seed.
+	 */
+	protected int countSeeds(Melody query, int[] seeds, int[] touched) {
+		ArrayList<NGram> nGrams = CompiledMelody.get(query, this.nGramLength).getNGrams();
+		// sorting the identifiers of the query groups its repeated n-grams
+		int[] ids = new int[nGrams.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = this.vocabulary.getId(nGrams.get(i));
+		Arrays.sort(ids);
+
+		int touchedCount = 0;
+		for (int i = 0; i < ids.length;) {
+			int id = ids[i];
+			int queryCount = 0;
+			while (i < ids.length && ids[i] == id) {
+				queryCount++;
+				i++;
+			}
+			if (id >= this.postings.length)
+				continue; // not in the collection
+			int[] list = this.postings[id];
+			for (int p = 0; p < list.length;) {
+				int ordinal = list[p];
+				int count = 0;
+				while (p < list.length && list[p] == ordinal) {
+					count++;
+					p++;
+				}
+				if (seeds[ordinal] == 0)
+					touched[touchedCount++] = ordinal;
+				seeds[ordinal] += Math.min(queryCount, count);
+			}
+		}
+		return touchedCount;
+	}
+}
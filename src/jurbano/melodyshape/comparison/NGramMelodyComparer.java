@@ -1,57 +1,136 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison;
-
-import java.util.ArrayList;
-
-import jurbano.melodyshape.comparison.alignment.MelodyAligner;
-import jurbano.melodyshape.model.Melody;
-
-/**
- * A function that computes a similarity score between two {@link Melody}
- * objects by applying an alignment algorithm upon the sequence of n-grams for
- * each melody.
- * 
- * @author Julián Urbano
- * @see Melody
- * @see MelodyAligner
- */
-public class NGramMelodyComparer implements MelodyComparer
-{
-	protected int nGramLength;
-	protected MelodyAligner aligner;
-	
-	/**
-	 * Constructs a new {@code NGramMelodyComparer}.
-	 * 
-	 * @param nGramLength
-	 *            the n-gram length, that is, number of {@code Note}s.
-	 * @param aligner
-	 *            the alignment algorithm to use.
-	 */
-	public NGramMelodyComparer(int nGramLength, MelodyAligner aligner) {
-		this.nGramLength = nGramLength;
-		this.aligner = aligner;
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public double compare(Melody m1, Melody m2) {
-		ArrayList<NGram> n1 = NGram.getNGrams(m1, this.nGramLength);
-		ArrayList<NGram> n2 = NGram.getNGrams(m2, this.nGramLength);
-		return this.aligner.align(n1, n2);
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "nGram(length,aligner)"}.
-	 */
-	@Override
-	public String getName() {
-		return "nGram(" + this.nGramLength + "," + this.aligner.getName() + ")";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jurbano.melodyshape.comparison.alignment.Alignment;
+import jurbano.melodyshape.comparison.alignment.MelodyAligner;
+import jurbano.melodyshape.comparison.alignment.QueryProfile;
+import jurbano.melodyshape.model.Melody;
+
+/**
+ * A function that computes a similarity score between two {@link Melody}
+ * objects by applying an alignment algorithm upon the sequence of n-grams for
+ * each melody.
+ * 
+ * @author Julián Urbano
+ * @see Melody
+ * @see MelodyAligner
+ */
+public class NGramMelodyComparer implements MelodyComparer
+{
+	protected int nGramLength;
+	protected MelodyAligner aligner;
+	protected volatile QueryProfile profile;
+	
+	/**
+	 * Constructs a new {@code NGramMelodyComparer}.
+	 * 
+	 * @param nGramLength
+	 *            the n-gram length, that is, number of {@code Note}s.
+	 * @param aligner
+	 *            the alignment algorithm to use.
+	 */
+	public NGramMelodyComparer(int nGramLength, MelodyAligner aligner) {
+		this.nGramLength = nGramLength;
+		this.aligner = aligner;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The n-grams of each melody are taken from its {@link CompiledMelody}, so
+	 * they are built only once. The substitution scores between the n-grams of
+	 * the first melody, usually the query, and the n-grams of the second one
+	 * are stored in a {@link QueryProfile}, which is reused as long as the
+	 * first melody does not change.
+	 */
+	@Override
+	public double compare(Melody m1, Melody m2) {
+		return this.compare(m1, m2, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double compare(Melody m1, Melody m2, TopKThreshold threshold) {
+		ArrayList<NGram> n1 = CompiledMelody.get(m1, this.nGramLength).getNGrams();
+		ArrayList<NGram> n2 = CompiledMelody.get(m2, this.nGramLength).getNGrams();
+		return this.aligner.align(this.getProfile(n1), n2, threshold);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The {@link QueryProfile} of the first melody is looked up once for the
+	 * whole block, which is aligned with a single call to the
+	 * {@link MelodyAligner}.
+	 */
+	@Override
+	public void compare(Melody m1, List<Melody> m2s, TopKThreshold threshold, double[] scores) {
+		ArrayList<NGram> n1 = CompiledMelody.get(m1, this.nGramLength).getNGrams();
+		ArrayList<ArrayList<NGram>> n2s = new ArrayList<ArrayList<NGram>>(m2s.size());
+		for (Melody m2 : m2s)
+			n2s.add(CompiledMelody.get(m2, this.nGramLength).getNGrams());
+		this.aligner.align(this.getProfile(n1), n2s, threshold, scores);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Bounds only depend on the length and the gap scores of each melody.
+	 */
+	@Override
+	public void getUpperBounds(Melody m1, List<Melody> m2s, double[] bounds) {
+		ArrayList<NGram> n1 = CompiledMelody.get(m1, this.nGramLength).getNGrams();
+		ArrayList<ArrayList<NGram>> n2s = new ArrayList<ArrayList<NGram>>(m2s.size());
+		for (Melody m2 : m2s)
+			n2s.add(CompiledMelody.get(m2, this.nGramLength).getNGrams());
+		this.aligner.getUpperBounds(this.getProfile(n1), n2s, bounds);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The indices of the {@link Alignment} refer to the n-grams of each
+	 * melody, so that the n-gram at index {@code i} starts at the {@code i}-th
+	 * note.
+	 */
+	@Override
+	public Alignment explain(Melody m1, Melody m2) {
+		ArrayList<NGram> n1 = CompiledMelody.get(m1, this.nGramLength).getNGrams();
+		ArrayList<NGram> n2 = CompiledMelody.get(m2, this.nGramLength).getNGrams();
+		return this.aligner.explain(this.getProfile(n1), n2);
+	}
+	
+	/**
+	 * Gets the {@link QueryProfile} of a sequence of n-grams, reusing the
+	 * last one if it has the same query and is not stale.
+	 * 
+	 * @param n1
+	 *            the n-grams of the first melody.
+	 * @return the profile.
+	 */
+	protected QueryProfile getProfile(ArrayList<NGram> n1) {
+		QueryProfile profile = this.profile;
+		if (profile == null || profile.getQuery() != n1 || profile.isStale()) {
+			profile = this.aligner.newQueryProfile(n1);
+			this.profile = profile;
+		}
+		return profile;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "nGram(length,aligner)"}.
+	 */
+	@Override
+	public String getName() {
+		return "nGram(" + this.nGramLength + "," + this.aligner.getName() + ")";
+	}
+}
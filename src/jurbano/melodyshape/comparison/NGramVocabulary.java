@@ -0,0 +1,188 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A dictionary that encodes the identifiers of {@link NGram}s, as returned by
+ * {@link NGramComparer#getNGramId(NGram)}, as small non-negative integers.
+ * <p>
+ * Every {@link NGramComparer} that defines a different notion of n-gram
+ * identity needs its own vocabulary. Two n-grams have the same integer
+ * identifier in a vocabulary if and only if the underlying comparer returns
+ * the same {@link String} identifier for both. The identifier of an n-gram is
+ * computed only the first time, and then stored as one of its features, so
+ * equality tests, frequency lookups and cache keys can work on integers.
+ * <p>
+ * Vocabularies are shared by all comparers of the same family, that is, of
+ * the same class and with the same name, which therefore must return the same
+ * identifiers. A vocabulary is only held while some comparer uses it, so it
+ * is discarded together with the comparers that own it, and a new one is
+ * created if the family is used again. Each family reserves one feature slot
+ * in every {@link NGram}, so the number of slots does not grow with the
+ * number of comparers built, and the identifiers stored there are tagged with
+ * the vocabulary that assigned them.
+ * <p>
+ * Identifiers are dense: they are assigned in order from 0, so they are
+ * always smaller than {@link #size()} and can index arrays directly.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Julián Urbano
+ * @see NGramComparer
+ * @see NGram#getFeature(int)
+ */
+public class NGramVocabulary
+{
+	static final HashMap<String, WeakReference<NGramVocabulary>> VOCABULARIES = new HashMap<String, WeakReference<NGramVocabulary>>();
+	static final HashMap<String, Integer> FEATURES = new HashMap<String, Integer>();
+	static final AtomicInteger NEXT_SERIAL = new AtomicInteger();
+
+	protected final NGramComparer comparer;
+	protected final int idFeature;
+	protected final int serial;
+	protected final ConcurrentHashMap<String, Integer> ids;
+	protected final ArrayList<String> nGramIds;
+	protected volatile int nullId;
+
+	/**
+	 * Constructs a new and empty {@code NGramVocabulary} for the n-gram
+	 * identifiers of the specified {@link NGramComparer}.
+	 *
+	 * @param comparer
+	 *            the comparer that defines the n-gram identifiers.
+	 * @param idFeature
+	 *            the feature slot of the family of the comparer.
+	 */
+	private NGramVocabulary(NGramComparer comparer, int idFeature) {
+		this.comparer = comparer;
+		this.idFeature = idFeature;
+		this.serial = NGramVocabulary.NEXT_SERIAL.getAndIncrement();
+		this.ids = new ConcurrentHashMap<String, Integer>();
+		this.nGramIds = new ArrayList<String>();
+		this.nullId = -1;
+	}
+
+	/**
+	 * Gets the vocabulary of the family of an {@link NGramComparer}, creating
+	 * it if no other comparer of the family holds one. Callers must keep a
+	 * reference to the vocabulary for as long as they use it.
+	 *
+	 * @param comparer
+	 *            the comparer that defines the n-gram identifiers.
+	 * @return the shared vocabulary.
+	 * @see NGramVocabulary#getFamily(NGramComparer)
+	 */
+	public static NGramVocabulary getVocabulary(NGramComparer comparer) {
+		String family = NGramVocabulary.getFamily(comparer);
+		synchronized (NGramVocabulary.VOCABULARIES) {
+			WeakReference<NGramVocabulary> ref = NGramVocabulary.VOCABULARIES.get(family);
+			NGramVocabulary vocabulary = ref == null ? null : ref.get();
+			if (vocabulary == null) {
+				Integer slot = NGramVocabulary.FEATURES.get(family);
+				if (slot == null) {
+					slot = NGram.newFeatureSlot();
+					NGramVocabulary.FEATURES.put(family, slot);
+				}
+				vocabulary = new NGramVocabulary(comparer, slot);
+				NGramVocabulary.VOCABULARIES.put(family, new WeakReference<NGramVocabulary>(vocabulary));
+			}
+			return vocabulary;
+		}
+	}
+
+	/**
+	 * Gets the family of an {@link NGramComparer}, made of its class and its
+	 * name, which includes its parameters.
+	 *
+	 * @param comparer
+	 *            the comparer.
+	 * @return the family of the comparer.
+	 */
+	public static String getFamily(NGramComparer comparer) {
+		return comparer.getClass().getName() + ":" + comparer.getName();
+	}
+
+	/**
+	 * Gets the integer identifier of an {@link NGram}, adding it to the
+	 * vocabulary if it is not there yet.
+	 *
+	 * @param g
+	 *            the n-gram, possibly {@code null}.
+	 * @return the non-negative integer identifier.
+	 */
+	public int getId(NGram g) {
+		if (g == null) {
+			if (this.nullId < 0)
+				this.nullId = this.getId(this.comparer.getNGramId(null));
+			return this.nullId;
+		}
+		// the serial of the vocabulary goes in the high bits, so that
+		// identifiers assigned by a discarded vocabulary are not reused
+		Long tagged = (Long) g.getFeature(this.idFeature);
+		if (tagged != null && (int) (tagged >>> 32) == this.serial)
+			return (int) tagged.longValue();
+		int id = this.getId(this.comparer.getNGramId(g));
+		g.setFeature(this.idFeature, ((long) this.serial << 32) | id);
+		return id;
+	}
+
+	/**
+	 * Gets the integer identifier that corresponds to the {@link String}
+	 * identifier of an n-gram, adding it to the vocabulary if it is not there
+	 * yet.
+	 *
+	 * @param nGramId
+	 *            the {@link String} identifier.
+	 * @return the non-negative integer identifier.
+	 */
+	public int getId(String nGramId) {
+		Integer id = this.ids.get(nGramId);
+		if (id == null) {
+			// assign under the lock so that identifiers stay dense
+			synchronized (this.ids) {
+				id = this.ids.get(nGramId);
+				if (id == null) {
+					id = this.ids.size();
+					this.nGramIds.add(nGramId);
+					this.ids.put(nGramId, id);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the {@link String} identifier of the n-gram with the specified
+	 * integer identifier.
+	 *
+	 * @param id
+	 *            the integer identifier.
+	 * @return the {@link String} identifier.
+	 * @throws IllegalArgumentException
+	 *             if the integer identifier was not assigned.
+	 */
+	public String getNGramId(int id) {
+		synchronized (this.ids) {
+			if (id < 0 || id >= this.nGramIds.size())
+				throw new IllegalArgumentException("Unknown n-gram identifier: " + id);
+			return this.nGramIds.get(id);
+		}
+	}
+
+	/**
+	 * Gets the number of different n-grams in the vocabulary, which is also
+	 * one more than the largest identifier assigned so far.
+	 *
+	 * @return the number of n-grams.
+	 */
+	public int size() {
+		return this.ids.size();
+	}
+}
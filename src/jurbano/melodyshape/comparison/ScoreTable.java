@@ -0,0 +1,201 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrent hash table that maps {@code long} keys to {@code double}
+ * scores, intended to cache similarity scores between pairs of {@link NGram}s.
+ * <p>
+ * Keys and scores are stored unboxed in open-addressing tables with linear
+ * probing. The table is split in a fixed number of stripes, each guarded by
+ * its own lock, so that threads reading or writing different stripes do not
+ * contend with each other. Keys must be non-negative, and {@link Double#NaN}
+ * cannot be stored because it is used to indicate missing keys.
+ *
+ * @author Julián Urbano
+ * @see CachedNGramComparer
+ */
+public class ScoreTable
+{
+	static final int STRIPES = 64;
+	static final int INITIAL_STRIPE_CAPACITY = 1024;
+	static final long EMPTY = -1L;
+
+	protected final Stripe[] stripes;
+	protected final AtomicInteger size;
+
+	/**
+	 * Constructs a new and empty {@code ScoreTable}.
+	 */
+	public ScoreTable() {
+		this(ScoreTable.INITIAL_STRIPE_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new and empty {@code ScoreTable} with the specified initial
+	 * capacity per stripe.
+	 * 
+	 * @param stripeCapacity
+	 *            the initial number of slots per stripe, a power of 2.
+	 */
+	protected ScoreTable(int stripeCapacity) {
+		this.stripes = new Stripe[ScoreTable.STRIPES];
+		for (int i = 0; i < this.stripes.length; i++)
+			this.stripes[i] = this.newStripe(stripeCapacity);
+		this.size = new AtomicInteger();
+	}
+
+	/**
+	 * Creates a new stripe.
+	 * 
+	 * @param capacity
+	 *            the initial number of slots in the stripe.
+	 * @return the new stripe.
+	 */
+	protected Stripe newStripe(int capacity) {
+		return new Stripe(capacity);
+	}
+
+	/**
+	 * Gets the key of an ordered pair of identifiers, so that
+	 * {@code (id1, id2)} and {@code (id2, id1)} have different keys.
+	 *
+	 * @param id1
+	 *            the first non-negative identifier.
+	 * @param id2
+	 *            the second non-negative identifier.
+	 * @return the key of the pair.
+	 */
+	public static long getPairKey(int id1, int id2) {
+		return ((long) id1 << 32) | id2;
+	}
+
+	/**
+	 * Gets the score associated to a key.
+	 *
+	 * @param key
+	 *            the non-negative key.
+	 * @return the score, or {@link Double#NaN} if the key is not in the table.
+	 */
+	public double get(long key) {
+		long hash = ScoreTable.hash(key);
+		Stripe stripe = this.stripes[(int) (hash >>> 58)];
+		synchronized (stripe) {
+			return stripe.get(key, (int) hash);
+		}
+	}
+
+	/**
+	 * Associates a score to a key, as long as the table has less than
+	 * {@code maxSize} scores. If the key is already in the table, its score is
+	 * replaced.
+	 *
+	 * @param key
+	 *            the non-negative key.
+	 * @param score
+	 *            the score.
+	 * @param maxSize
+	 *            the maximum number of scores in the table.
+	 * @return {@code true} if the score was stored, or {@code false} if the
+	 *         table was full.
+	 */
+	public boolean put(long key, double score, int maxSize) {
+		long hash = ScoreTable.hash(key);
+		Stripe stripe = this.stripes[(int) (hash >>> 58)];
+		synchronized (stripe) {
+			int slot = stripe.find(key, (int) hash);
+			if (stripe.keys[slot] == key) {
+				stripe.scores[slot] = score;
+				return true;
+			}
+			if (this.size.get() >= maxSize)
+				return false;
+			this.size.incrementAndGet();
+			stripe.insert(slot, key, score, (int) hash);
+			return true;
+		}
+	}
+
+	/**
+	 * Gets the number of scores in the table.
+	 *
+	 * @return the number of scores.
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * Scrambles the bits of a key (MurmurHash3's 64-bit finalizer), so that
+	 * the highest bits select the stripe and the lowest bits the slot.
+	 *
+	 * @param key
+	 *            the key.
+	 * @return the hash of the key.
+	 */
+	protected static long hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	/**
+	 * An open-addressing table with linear probing, resized when more than half
+	 * full.
+	 */
+	protected static class Stripe
+	{
+		long[] keys;
+		double[] scores;
+		int size;
+
+		Stripe(int capacity) {
+			this.keys = new long[capacity];
+			this.scores = new double[capacity];
+			Arrays.fill(this.keys, ScoreTable.EMPTY);
+		}
+
+		int find(long key, int hash) {
+			int mask = this.keys.length - 1;
+			int slot = hash & mask;
+			while (this.keys[slot] != key && this.keys[slot] != ScoreTable.EMPTY)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		double get(long key, int hash) {
+			int slot = this.find(key, hash);
+			return this.keys[slot] == key ? this.scores[slot] : Double.NaN;
+		}
+
+		void insert(int slot, long key, double score, int hash) {
+			this.keys[slot] = key;
+			this.scores[slot] = score;
+			this.size++;
+			if (2 * this.size > this.keys.length)
+				this.resize(2 * this.keys.length);
+		}
+
+		void resize(int capacity) {
+			long[] oldKeys = this.keys;
+			double[] oldScores = this.scores;
+			this.keys = new long[capacity];
+			this.scores = new double[capacity];
+			Arrays.fill(this.keys, ScoreTable.EMPTY);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != ScoreTable.EMPTY) {
+					int slot = this.find(oldKeys[i], (int) ScoreTable.hash(oldKeys[i]));
+					this.keys[slot] = oldKeys[i];
+					this.scores[slot] = oldScores[i];
+				}
+			}
+		}
+	}
+}
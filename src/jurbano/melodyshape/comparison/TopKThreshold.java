@@ -0,0 +1,101 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+import java.util.PriorityQueue;
+
+/**
+ * The k-th best similarity score found so far while comparing a query with a
+ * collection of melodies, shared by all threads running the comparisons.
+ * <p>
+ * Comparers can abandon a comparison as soon as an upper bound of its score
+ * falls below the threshold, because such a melody cannot make it into the
+ * top {@code k}. Since the threshold never exceeds the final k-th best score,
+ * the scores of all melodies in the top {@code k}, ties included, are still
+ * computed exactly.
+ * <p>
+ * This class is thread-safe. The threshold can be read without locking.
+ *
+ * @author Julián Urbano
+ * @see MelodyComparer#compare(jurbano.melodyshape.model.Melody,
+ *      jurbano.melodyshape.model.Melody, TopKThreshold)
+ */
+public class TopKThreshold
+{
+	/**
+	 * The relative margin added to upper bounds before comparing them with
+	 * the threshold, to absorb rounding errors in the bounds.
+	 */
+	public static final double MARGIN = 1e-9;
+
+	protected final int k;
+	protected final PriorityQueue<Double> scores;
+	protected volatile double threshold;
+
+	/**
+	 * Constructs a new {@code TopKThreshold} for the specified cutoff.
+	 *
+	 * @param k
+	 *            the number of top scores to keep track of.
+	 * @throws IllegalArgumentException
+	 *             if {@code k} is not positive.
+	 */
+	public TopKThreshold(int k) {
+		if (k < 1)
+			throw new IllegalArgumentException("k must be positive.");
+		this.k = k;
+		this.scores = new PriorityQueue<Double>();
+		this.threshold = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Gets the cutoff.
+	 *
+	 * @return the number of top scores kept track of.
+	 */
+	public int getK() {
+		return this.k;
+	}
+
+	/**
+	 * Gets the k-th best score found so far.
+	 *
+	 * @return the threshold, or {@link Double#NEGATIVE_INFINITY} if less than
+	 *         {@code k} scores have been found.
+	 */
+	public double get() {
+		return this.threshold;
+	}
+
+	/**
+	 * Adds the exact score of a comparison, raising the threshold if it is
+	 * among the top {@code k}.
+	 *
+	 * @param score
+	 *            the score.
+	 */
+	public void offer(double score) {
+		if (score <= this.threshold)
+			return;
+		synchronized (this.scores) {
+			this.scores.add(score);
+			if (this.scores.size() > this.k)
+				this.scores.poll();
+			if (this.scores.size() == this.k)
+				this.threshold = this.scores.peek();
+		}
+	}
+
+	/**
+	 * Checks whether a comparison with the specified upper bound of its score
+	 * can be abandoned.
+	 *
+	 * @param bound
+	 *            the upper bound of the score.
+	 * @return {@code true} if the bound is strictly below the threshold.
+	 */
+	public boolean canPrune(double bound) {
+		return bound + TopKThreshold.MARGIN * (Math.abs(bound) + 1) < this.threshold;
+	}
+}
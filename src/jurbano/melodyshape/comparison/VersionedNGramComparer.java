@@ -0,0 +1,27 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison;
+
+/**
+ * An {@link NGramComparer} whose scores may change over time, such as when the
+ * frequencies of n-grams in a collection are updated.
+ * <p>
+ * Every change increments the version of the comparer, so that scores stored
+ * elsewhere, such as by a {@link CachedNGramComparer}, can be recognized as
+ * stale and computed again. A change is published before the version is
+ * incremented, so scores computed after reading a version are at least as
+ * recent as that version.
+ *
+ * @author Julián Urbano
+ * @see FrequencyNGramComparer
+ */
+public interface VersionedNGramComparer extends NGramComparer
+{
+	/**
+	 * Gets the current version of the scores of this comparer.
+	 *
+	 * @return the version.
+	 */
+	public long getVersion();
+}
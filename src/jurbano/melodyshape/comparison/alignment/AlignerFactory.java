@@ -0,0 +1,145 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import jurbano.melodyshape.comparison.NGramComparer;
+
+/**
+ * Creates {@link MelodyAligner}s that use the Java Vector API when it is
+ * available, and fall back to the scalar aligners otherwise.
+ * <p>
+ * The vectorized aligners are only compiled with the {@code vector} profile of
+ * the Maven build, which requires JDK 17 or later, and they only run if the
+ * {@code jdk.incubator.vector} module is added to the JVM with
+ * {@code --add-modules jdk.incubator.vector}. They can be disabled with the
+ * system property {@code -Dmelodyshape.vector=false}.
+ * <p>
+ * Vectorized and scalar aligners return identical scores, so the tolerance
+ * when comparing their results is zero.
+ *
+ * @author Julián Urbano
+ * @see HybridAligner
+ * @see LocalAligner
+ */
+public class AlignerFactory
+{
+	static final String PROPERTY = "melodyshape.vector";
+	static final String PACKAGE = "jurbano.melodyshape.comparison.alignment.";
+	static final boolean VECTOR_AVAILABLE = AlignerFactory.checkVectorAvailable();
+
+	private AlignerFactory() {
+	}
+
+	/**
+	 * Checks whether the vectorized aligners were compiled and the
+	 * {@code jdk.incubator.vector} module is available.
+	 *
+	 * @return {@code true} if the vectorized aligners can be used.
+	 */
+	static boolean checkVectorAvailable() {
+		if (!Boolean.parseBoolean(System.getProperty(AlignerFactory.PROPERTY, "true")))
+			return false;
+		try {
+			// initializing the class resolves the vector species
+			Class.forName(AlignerFactory.PACKAGE + "VectorRows", true, AlignerFactory.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether the aligners created by this factory are vectorized.
+	 *
+	 * @return {@code true} if the Java Vector API is used.
+	 */
+	public static boolean isVectorAvailable() {
+		return AlignerFactory.VECTOR_AVAILABLE;
+	}
+
+	/**
+	 * Creates a new {@link HybridAligner}, vectorized if possible.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @return the aligner.
+	 */
+	public static HybridAligner newHybridAligner(NGramComparer comparer) {
+		return AlignerFactory.newHybridAligner(comparer, AlignmentLimits.NONE);
+	}
+
+	/**
+	 * Creates a new {@link HybridAligner} with limits on the cells of the
+	 * alignment matrix, vectorized if possible.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param limits
+	 *            the band and X-drop limits.
+	 * @return the aligner.
+	 */
+	public static HybridAligner newHybridAligner(NGramComparer comparer, AlignmentLimits limits) {
+		return AlignerFactory.newHybridAligner(comparer, limits, AlignmentPrecision.DOUBLE);
+	}
+
+	/**
+	 * Creates a new {@link HybridAligner} with limits on the cells of the
+	 * alignment matrix and arithmetic precision, vectorized if possible.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param limits
+	 *            the band and X-drop limits.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 * @return the aligner.
+	 */
+	public static HybridAligner newHybridAligner(NGramComparer comparer, AlignmentLimits limits,
+			AlignmentPrecision precision) {
+		if (AlignerFactory.VECTOR_AVAILABLE)
+			return (HybridAligner) AlignerFactory.newInstance("VectorHybridAligner",
+					new Class<?>[] { NGramComparer.class, AlignmentLimits.class, AlignmentPrecision.class }, comparer,
+					limits, precision);
+		return new HybridAligner(comparer, limits, precision);
+	}
+
+	/**
+	 * Creates a new {@link LocalAligner}, vectorized if possible.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @return the aligner.
+	 */
+	public static LocalAligner newLocalAligner(NGramComparer comparer) {
+		return AlignerFactory.newLocalAligner(comparer, AlignmentPrecision.DOUBLE);
+	}
+
+	/**
+	 * Creates a new {@link LocalAligner} with the specified arithmetic
+	 * precision, vectorized if possible.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 * @return the aligner.
+	 */
+	public static LocalAligner newLocalAligner(NGramComparer comparer, AlignmentPrecision precision) {
+		if (AlignerFactory.VECTOR_AVAILABLE)
+			return (LocalAligner) AlignerFactory.newInstance("VectorLocalAligner",
+					new Class<?>[] { NGramComparer.class, AlignmentPrecision.class }, comparer, precision);
+		return new LocalAligner(comparer, precision);
+	}
+
+	static MelodyAligner newInstance(String className, Class<?>[] types, Object... args) {
+		try {
+			return (MelodyAligner) Class.forName(AlignerFactory.PACKAGE + className).getConstructor(types)
+					.newInstance(args);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Could not create " + className, e);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import jurbano.melodyshape.comparison.NGram;
+
+/**
+ * The explanation of an alignment between two sequences of {@link NGram}s: the
+ * span of each sequence that was aligned, and the pairs of n-grams aligned
+ * within those spans.
+ * <p>
+ * Each step of the alignment is a pair of indices, one in the first sequence
+ * and one in the second sequence. A substitution pairs two n-grams, while a
+ * deletion or insertion has the index of the other sequence set to
+ * {@link #GAP}. Steps are sorted from the beginning to the end of the spans.
+ *
+ * @author Julián Urbano
+ * @see MelodyAligner#explain(QueryProfile, java.util.ArrayList)
+ */
+public class Alignment
+{
+	/**
+	 * The index used for the missing n-gram of a deletion or insertion.
+	 */
+	public static final int GAP = -1;
+
+	protected final double score;
+	protected final int queryStart;
+	protected final int queryEnd;
+	protected final int documentStart;
+	protected final int documentEnd;
+	protected final int[] queryIndices;
+	protected final int[] documentIndices;
+
+	/**
+	 * Constructs a new {@code Alignment}.
+	 *
+	 * @param score
+	 *            the alignment score.
+	 * @param queryStart
+	 *            the index of the first aligned n-gram of the first sequence.
+	 * @param queryEnd
+	 *            the index after the last aligned n-gram of the first
+	 *            sequence.
+	 * @param documentStart
+	 *            the index of the first aligned n-gram of the second sequence.
+	 * @param documentEnd
+	 *            the index after the last aligned n-gram of the second
+	 *            sequence.
+	 * @param queryIndices
+	 *            the index in the first sequence of each step, or
+	 *            {@link #GAP}.
+	 * @param documentIndices
+	 *            the index in the second sequence of each step, or
+	 *            {@link #GAP}.
+	 * @throws IllegalArgumentException
+	 *             if both arrays of indices do not have the same length.
+	 */
+	public Alignment(double score, int queryStart, int queryEnd, int documentStart, int documentEnd,
+			int[] queryIndices, int[] documentIndices) {
+		if (queryIndices.length != documentIndices.length)
+			throw new IllegalArgumentException("queryIndices and documentIndices must have the same length.");
+		this.score = score;
+		this.queryStart = queryStart;
+		this.queryEnd = queryEnd;
+		this.documentStart = documentStart;
+		this.documentEnd = documentEnd;
+		this.queryIndices = queryIndices;
+		this.documentIndices = documentIndices;
+	}
+
+	/**
+	 * Gets the alignment score, as computed by the {@link MelodyAligner}.
+	 *
+	 * @return the alignment score.
+	 */
+	public double getScore() {
+		return this.score;
+	}
+
+	/**
+	 * Gets the index of the first aligned n-gram of the first sequence.
+	 *
+	 * @return the index.
+	 */
+	public int getQueryStart() {
+		return this.queryStart;
+	}
+
+	/**
+	 * Gets the index after the last aligned n-gram of the first sequence.
+	 *
+	 * @return the index.
+	 */
+	public int getQueryEnd() {
+		return this.queryEnd;
+	}
+
+	/**
+	 * Gets the index of the first aligned n-gram of the second sequence.
+	 *
+	 * @return the index.
+	 */
+	public int getDocumentStart() {
+		return this.documentStart;
+	}
+
+	/**
+	 * Gets the index after the last aligned n-gram of the second sequence.
+	 *
+	 * @return the index.
+	 */
+	public int getDocumentEnd() {
+		return this.documentEnd;
+	}
+
+	/**
+	 * Gets the number of steps in the alignment.
+	 *
+	 * @return the number of steps.
+	 */
+	public int getLength() {
+		return this.queryIndices.length;
+	}
+
+	/**
+	 * Gets the index in the first sequence of a step of the alignment.
+	 *
+	 * @param step
+	 *            the step.
+	 * @return the index, or {@link #GAP} if the step is an insertion.
+	 */
+	public int getQueryIndex(int step) {
+		return this.queryIndices[step];
+	}
+
+	/**
+	 * Gets the index in the second sequence of a step of the alignment.
+	 *
+	 * @param step
+	 *            the step.
+	 * @return the index, or {@link #GAP} if the step is a deletion.
+	 */
+	public int getDocumentIndex(int step) {
+		return this.documentIndices[step];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @return the {@link String} with the score, the spans and the steps of
+	 *         the alignment, as {@code query:document} pairs with {@code -} for
+	 *         gaps.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Alignment [score=" + this.score + ", query=" + this.queryStart + "-" + this.queryEnd
+				+ ", document=" + this.documentStart + "-" + this.documentEnd + ", steps=");
+		for (int step = 0; step < this.queryIndices.length; step++) {
+			if (step > 0)
+				sb.append(" ");
+			sb.append(this.queryIndices[step] == Alignment.GAP ? "-" : String.valueOf(this.queryIndices[step]));
+			sb.append(":");
+			sb.append(this.documentIndices[step] == Alignment.GAP ? "-" : String.valueOf(this.documentIndices[step]));
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,121 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+/**
+ * Per-thread buffers for the dynamic programming of {@link MelodyAligner}s.
+ * <p>
+ * Aligners that only need the alignment score keep just two rows of the
+ * alignment matrix, plus its first column and the gap scores of both
+ * sequences, so they use linear space. The
+ * buffers are reused by all alignments run by the same thread, and grow as
+ * needed, so aligning does not allocate memory in the common case.
+ *
+ * @author Julián Urbano
+ * @see MelodyAligner
+ */
+class AlignmentBuffers
+{
+	static final ThreadLocal<AlignmentBuffers> BUFFERS = new ThreadLocal<AlignmentBuffers>() {
+		@Override
+		protected AlignmentBuffers initialValue() {
+			return new AlignmentBuffers();
+		}
+	};
+	static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * The previous row of the alignment matrix.
+	 */
+	double[] previous = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The current row of the alignment matrix.
+	 */
+	double[] current = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The first column of the alignment matrix.
+	 */
+	double[] column = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The deletion scores of the n-grams in the first sequence.
+	 */
+	double[] deletions = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The upper bounds of the score gained after each row of the matrix.
+	 */
+	double[] bounds = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The insertion scores of the n-grams in the second sequence.
+	 */
+	double[] insertions = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The identifiers of the n-grams in the second sequence.
+	 */
+	int[] ids = new int[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The substitution scores of a row of the alignment matrix.
+	 */
+	double[] substitutions = new double[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The previous row of the matrix, in {@link AlignmentPrecision#FLOAT}.
+	 */
+	float[] previousFloat = new float[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The current row of the matrix, in {@link AlignmentPrecision#FLOAT}.
+	 */
+	float[] currentFloat = new float[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The insertion scores of the second sequence, in
+	 * {@link AlignmentPrecision#FLOAT}.
+	 */
+	float[] insertionsFloat = new float[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The previous row of the matrix, in {@link AlignmentPrecision#FIXED}.
+	 */
+	int[] previousFixed = new int[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The current row of the matrix, in {@link AlignmentPrecision#FIXED}.
+	 */
+	int[] currentFixed = new int[AlignmentBuffers.INITIAL_CAPACITY];
+	/**
+	 * The insertion scores of the second sequence, in
+	 * {@link AlignmentPrecision#FIXED}.
+	 */
+	int[] insertionsFixed = new int[AlignmentBuffers.INITIAL_CAPACITY];
+
+	/**
+	 * Gets the buffers of the current thread, large enough for an alignment
+	 * matrix of the specified size.
+	 *
+	 * @param rows
+	 *            the number of rows of the matrix.
+	 * @param columns
+	 *            the number of columns of the matrix.
+	 * @return the buffers.
+	 */
+	static AlignmentBuffers get(int rows, int columns) {
+		AlignmentBuffers buffers = AlignmentBuffers.BUFFERS.get();
+		if (buffers.previous.length < columns) {
+			int capacity = Math.max(columns, 2 * buffers.previous.length);
+			buffers.previous = new double[capacity];
+			buffers.current = new double[capacity];
+			buffers.insertions = new double[capacity];
+			buffers.ids = new int[capacity];
+			buffers.substitutions = new double[capacity];
+			buffers.previousFloat = new float[capacity];
+			buffers.currentFloat = new float[capacity];
+			buffers.insertionsFloat = new float[capacity];
+			buffers.previousFixed = new int[capacity];
+			buffers.currentFixed = new int[capacity];
+			buffers.insertionsFixed = new int[capacity];
+		}
+		if (buffers.column.length < rows) {
+			int capacity = Math.max(rows, 2 * buffers.column.length);
+			buffers.column = new double[capacity];
+			buffers.deletions = new double[capacity];
+			buffers.bounds = new double[capacity];
+		}
+		return buffers;
+	}
+}
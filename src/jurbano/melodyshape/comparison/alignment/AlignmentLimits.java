@@ -0,0 +1,271 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jurbano.melodyshape.comparison.NGram;
+
+/**
+ * Limits on the cells of the alignment matrix computed by
+ * {@link HybridAligner} and {@link GlobalAligner}, to trade exactness for
+ * speed when aligning long melodies.
+ * <p>
+ * In banded mode, only cells within a fixed distance of the diagonal from the
+ * first to the last cell of the matrix are computed. In X-drop mode, cells
+ * whose score falls more than a fixed amount below the best score found so
+ * far are discarded, and the alignment is not extended from them. Both modes
+ * can be combined. Discarded cells do not compute substitution scores, which
+ * is where most of the time is spent.
+ * <p>
+ * The limits count how many alignments they were applied to, and how many of
+ * them were hit: the best score of a row was found at the edge of the band,
+ * so the optimal alignment may have left it, or the X-drop criterion
+ * discarded all cells of a row before reaching the end of the first sequence.
+ * When a row dies like that, the score is the best one computed before, even
+ * if that cell was itself discarded. When no cell could be computed at all,
+ * or the last cell of the matrix is discarded by {@link GlobalAligner}, the
+ * alignment is hit and computed again without limits.
+ *
+ * @author Julián Urbano
+ * @see HybridAligner#HybridAligner(jurbano.melodyshape.comparison.NGramComparer,
+ *      AlignmentLimits)
+ * @see GlobalAligner#GlobalAligner(jurbano.melodyshape.comparison.NGramComparer,
+ *      AlignmentLimits)
+ */
+public class AlignmentLimits
+{
+	/**
+	 * No limits: all cells of the matrix are computed.
+	 */
+	public static final AlignmentLimits NONE = new AlignmentLimits(Integer.MAX_VALUE, Double.POSITIVE_INFINITY);
+
+	protected final int bandWidth;
+	protected final double xDrop;
+	protected final AtomicLong alignments;
+	protected final AtomicLong hits;
+
+	/**
+	 * Constructs a new {@code AlignmentLimits} with the specified band width
+	 * and X-drop.
+	 *
+	 * @param bandWidth
+	 *            the maximum distance of a cell to the diagonal, or
+	 *            {@link Integer#MAX_VALUE} for no band.
+	 * @param xDrop
+	 *            the maximum difference between the score of a cell and the
+	 *            best score so far, or {@link Double#POSITIVE_INFINITY} for no
+	 *            X-drop.
+	 * @throws IllegalArgumentException
+	 *             if the band width or the X-drop are negative.
+	 */
+	public AlignmentLimits(int bandWidth, double xDrop) {
+		if (bandWidth < 0)
+			throw new IllegalArgumentException("bandWidth must be non-negative.");
+		if (!(xDrop >= 0))
+			throw new IllegalArgumentException("xDrop must be non-negative.");
+		this.bandWidth = bandWidth;
+		this.xDrop = xDrop;
+		this.alignments = new AtomicLong();
+		this.hits = new AtomicLong();
+	}
+
+	/**
+	 * Gets the maximum distance of a cell to the diagonal.
+	 *
+	 * @return the band width, or {@link Integer#MAX_VALUE} if there is no band.
+	 */
+	public int getBandWidth() {
+		return this.bandWidth;
+	}
+
+	/**
+	 * Gets the maximum difference between the score of a cell and the best
+	 * score so far.
+	 *
+	 * @return the X-drop, or {@link Double#POSITIVE_INFINITY} if there is no
+	 *         X-drop.
+	 */
+	public double getXDrop() {
+		return this.xDrop;
+	}
+
+	/**
+	 * Checks whether these limits compute all cells of the matrix.
+	 *
+	 * @return {@code true} if there is neither band nor X-drop.
+	 */
+	public boolean isUnlimited() {
+		return this.bandWidth == Integer.MAX_VALUE && this.xDrop == Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Gets the number of alignments computed with these limits.
+	 *
+	 * @return the number of alignments.
+	 */
+	public long getAlignmentCount() {
+		return this.alignments.get();
+	}
+
+	/**
+	 * Gets the number of alignments that hit these limits, and whose score
+	 * may therefore differ from the unlimited alignment.
+	 *
+	 * @return the number of alignments.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	@Override
+	public String toString() {
+		return "AlignmentLimits[bandWidth=" + this.bandWidth + ", xDrop=" + this.xDrop + ", alignments="
+				+ this.alignments.get() + ", hits=" + this.hits.get() + "]";
+	}
+
+	/**
+	 * Computes the alignment matrix between a query and a sequence of n-grams
+	 * within these limits. The first row and column are initialized with the
+	 * cumulative gap scores, as in {@link HybridAligner} and
+	 * {@link GlobalAligner}.
+	 *
+	 * @param gaps
+	 *            the gap scores of the aligner.
+	 * @param profile
+	 *            the query profile.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @param global
+	 *            whether to return the score of the last cell rather than the
+	 *            maximum score.
+	 * @return the maximum score computed in the matrix, excluding the first
+	 *         row and column, or the score of the last cell if {@code global};
+	 *         or {@link Double#NaN} if no cell could be computed, or if the
+	 *         last cell was discarded and {@code global}.
+	 */
+	double align(GapProfile gaps, QueryProfile profile, ArrayList<NGram> s2, boolean global) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		int rows = s1.size();
+		int columns = s2.size();
+		AlignmentBuffers buffers = AlignmentBuffers.get(rows + 1, columns + 1);
+		double[] column = buffers.column;
+		double[] previous = buffers.previous;
+		double[] current = buffers.current;
+
+		double[] deletions = buffers.deletions;
+		double[] insertions = buffers.insertions;
+		gaps.getDeletions(s1, deletions);
+		gaps.getInsertions(s2, insertions);
+		int[] ids = buffers.ids;
+		profile.getIds(s2, ids);
+
+		double best = 0;
+		double max = Double.NEGATIVE_INFINITY;
+		boolean hit = false;
+
+		// the first row, up to the band or the X-drop; cells previous[j] are
+		// alive for j in [previousLow, previousHigh], and previous[0] if
+		// previousColumn
+		column[0] = 0;
+		for (int i = 1; i <= rows; i++)
+			column[i] = column[i - 1] + deletions[i - 1];
+		previous[0] = 0;
+		boolean previousColumn = true;
+		int previousLow = 1;
+		int previousHigh = (int) Math.min(columns, (long) this.bandWidth);
+		for (int j = 1; j <= previousHigh; j++) {
+			previous[j] = previous[j - 1] + insertions[j - 1];
+			if (previous[j] < best - this.xDrop) {
+				previousHigh = j - 1;
+				break;
+			}
+		}
+
+		for (int i = 1; i <= rows; i++) {
+			// band around the diagonal from (0,0) to (rows,columns)
+			long center = (long) i * columns;
+			long bandLow = center / rows - this.bandWidth;
+			long bandHigh = (center + rows - 1) / rows + this.bandWidth;
+			int low = (int) Math.max(1, bandLow);
+			int high = (int) Math.min(columns, bandHigh);
+
+			boolean currentColumn = previousColumn && bandLow <= 0 && column[i] >= best - this.xDrop;
+			current[0] = currentColumn ? column[i] : Double.NEGATIVE_INFINITY;
+			if (!previousColumn && !currentColumn)
+				low = Math.max(low, previousLow);
+
+			AtomicLongArray scores = profile.getRow(i - 1);
+			double deletion = deletions[i - 1];
+			double leftScore = low == 1 ? current[0] : Double.NEGATIVE_INFINITY;
+			double rowMax = Double.NEGATIVE_INFINITY;
+			int rowArgMax = -1;
+			int currentLow = Integer.MAX_VALUE;
+			int currentHigh = 0;
+			for (int j = low; j <= high; j++) {
+				double value = leftScore + insertions[j - 1];
+				if (j >= previousLow && j <= previousHigh)
+					value = Math.max(value, previous[j] + deletion);
+				if (j - 1 == 0 ? previousColumn : j - 1 >= previousLow && j - 1 <= previousHigh) {
+					int id = ids[j - 1];
+					double substitution = QueryProfile.getStoredScore(scores, id);
+					if (Double.isNaN(substitution)) {
+						substitution = profile.getScore(i - 1, id, s2.get(j - 1));
+						scores = profile.getRow(i - 1);
+					}
+					value = Math.max(value, previous[j - 1] + substitution);
+				}
+				// a discarded cell still counts for the maximum, in case X-drop
+				// discards all the rest
+				if (max < value)
+					max = value;
+				if (value < best - this.xDrop)
+					value = Double.NEGATIVE_INFINITY;
+				current[j] = value;
+				leftScore = value;
+
+				if (value != Double.NEGATIVE_INFINITY) {
+					currentLow = Math.min(currentLow, j);
+					currentHigh = j;
+					if (rowMax < value) {
+						rowMax = value;
+						rowArgMax = j;
+					}
+				} else if (j > previousHigh + 1)
+					break; // nothing else to extend in this row
+			}
+
+			if (rowArgMax == bandLow && bandLow > 1 || rowArgMax == bandHigh && bandHigh < columns)
+				hit = true;
+			if (best < rowMax)
+				best = rowMax;
+
+			previousColumn = currentColumn;
+			previousLow = currentLow;
+			previousHigh = currentHigh;
+			double[] row = previous;
+			previous = current;
+			current = row;
+
+			if (!previousColumn && previousLow > previousHigh) {
+				// X-drop discarded the whole row
+				if (i < rows)
+					hit = true;
+				break;
+			}
+		}
+
+		double score = max == Double.NEGATIVE_INFINITY ? Double.NaN : max;
+		if (global)
+			score = previousLow <= columns && columns <= previousHigh ? previous[columns] : Double.NaN;
+		if (Double.isNaN(score))
+			hit = true;
+		this.alignments.incrementAndGet();
+		if (hit)
+			this.hits.incrementAndGet();
+		return score;
+	}
+}
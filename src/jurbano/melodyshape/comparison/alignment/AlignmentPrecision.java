@@ -0,0 +1,274 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jurbano.melodyshape.comparison.NGram;
+
+/**
+ * The arithmetic used by {@link HybridAligner}, {@link LocalAligner} and
+ * {@link GlobalAligner} to compute the alignment matrix, to trade exactness
+ * for smaller rows of the matrix.
+ * <p>
+ * {@link #DOUBLE} computes exact scores, as always. {@link #FLOAT} rounds gap
+ * and substitution scores to {@code float}, and adds them in {@code float}.
+ * {@link #FIXED} rounds them to a multiple of {@code 2^-16} and adds them as
+ * {@code int}, which is exact; if any score is too large to add it without
+ * overflow, the alignment is computed again in {@code double}.
+ * <p>
+ * The error of an alignment score is bounded by
+ * {@link #getMaxError(int, int, double)}, before hybrid and local aligners
+ * divide it by the length of the shortest sequence. Therefore, two results can
+ * only swap their positions in the ranking if their exact scores differ by at
+ * most twice that bound. With sequences of 100 n-grams, the bound is about
+ * {@code 0.0015} for fixed point, and about {@code 0.0048} times the largest
+ * absolute score for float, before normalization.
+ * <p>
+ * Alignments in reduced precision are never abandoned early and are not
+ * vectorized. Limits on the alignment matrix take precedence over the
+ * precision.
+ *
+ * @author Julián Urbano
+ * @see AlignerFactory#newHybridAligner(jurbano.melodyshape.comparison.NGramComparer,
+ *      AlignmentLimits, AlignmentPrecision)
+ */
+public class AlignmentPrecision
+{
+	/**
+	 * The number of fractional bits of {@link #FIXED} scores.
+	 */
+	public static final int FRACTION_BITS = 16;
+	static final double SCALE = 1 << AlignmentPrecision.FRACTION_BITS;
+
+	/**
+	 * Double precision: scores are exact.
+	 */
+	public static final AlignmentPrecision DOUBLE = new AlignmentPrecision("double");
+	/**
+	 * Single precision: the matrix is computed with {@code float}s.
+	 */
+	public static final AlignmentPrecision FLOAT = new AlignmentPrecision("float");
+	/**
+	 * Fixed point: the matrix is computed with {@code int}s, with
+	 * {@link #FRACTION_BITS} fractional bits.
+	 */
+	public static final AlignmentPrecision FIXED = new AlignmentPrecision("fixed");
+
+	protected final String name;
+
+	protected AlignmentPrecision(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the precision with the specified name.
+	 *
+	 * @param name
+	 *            the name: {@code double}, {@code float} or {@code fixed}.
+	 * @return the precision.
+	 * @throws IllegalArgumentException
+	 *             if the name is not recognized.
+	 */
+	public static AlignmentPrecision forName(String name) {
+		for (AlignmentPrecision precision : new AlignmentPrecision[] { AlignmentPrecision.DOUBLE,
+				AlignmentPrecision.FLOAT, AlignmentPrecision.FIXED })
+			if (precision.name.equals(name))
+				return precision;
+		throw new IllegalArgumentException("unrecognized precision name: '" + name + "'");
+	}
+
+	/**
+	 * Gets the name of this precision.
+	 *
+	 * @return the name.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets an upper bound of the difference between the score of an alignment
+	 * computed with this precision and the exact score.
+	 * <p>
+	 * An alignment path has at most {@code rows+columns} steps. In fixed point,
+	 * each gap or substitution score is rounded by at most {@code 2^-17}, and
+	 * additions are exact. In float, each score and each partial sum is
+	 * rounded by at most one unit in the last place, and partial sums are at
+	 * most {@code rows+columns} times the largest absolute score.
+	 *
+	 * @param rows
+	 *            the length of the first sequence.
+	 * @param columns
+	 *            the length of the second sequence.
+	 * @param maxAbsScore
+	 *            the largest absolute gap or substitution score.
+	 * @return the bound of the error, before normalization.
+	 */
+	public double getMaxError(int rows, int columns, double maxAbsScore) {
+		double steps = (double) rows + columns;
+		if (this == AlignmentPrecision.FIXED)
+			return steps / (2 * AlignmentPrecision.SCALE);
+		if (this == AlignmentPrecision.FLOAT)
+			return steps * (steps + 1) * maxAbsScore * Math.ulp(1f);
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+	/**
+	 * Computes the alignment matrix between a query and a sequence of n-grams
+	 * with this precision.
+	 *
+	 * @param gaps
+	 *            the gap scores of the aligner.
+	 * @param profile
+	 *            the query profile.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @param deletions
+	 *            the deletion scores of the query.
+	 * @param local
+	 *            whether to compute a local alignment, where the first row and
+	 *            column are 0 and no cell is negative, rather than initialize
+	 *            them with the cumulative gap scores.
+	 * @param global
+	 *            whether to return the score of the last cell rather than the
+	 *            maximum score.
+	 * @return the maximum score in the matrix, excluding the first row and
+	 *         column, or the score of the last cell if {@code global}; or
+	 *         {@link Double#NaN} if some score cannot be represented.
+	 */
+	double align(GapProfile gaps, QueryProfile profile, ArrayList<NGram> s2, double[] deletions, boolean local,
+			boolean global) {
+		if (this == AlignmentPrecision.FLOAT)
+			return this.alignFloat(gaps, profile, s2, deletions, local, global);
+		if (this == AlignmentPrecision.FIXED)
+			return this.alignFixed(gaps, profile, s2, deletions, local, global);
+		return Double.NaN;
+	}
+
+	protected double alignFloat(GapProfile gaps, QueryProfile profile, ArrayList<NGram> s2, double[] deletions,
+			boolean local, boolean global) {
+		int rows = profile.getQuery().size();
+		int columns = s2.size();
+		AlignmentBuffers buffers = AlignmentBuffers.get(rows + 1, columns + 1);
+		float[] previous = buffers.previousFloat;
+		float[] current = buffers.currentFloat;
+
+		double[] insertionScores = buffers.insertions;
+		gaps.getInsertions(s2, insertionScores);
+		float[] insertions = buffers.insertionsFloat;
+		for (int j = 0; j < columns; j++)
+			insertions[j] = (float) insertionScores[j];
+		int[] ids = buffers.ids;
+		profile.getIds(s2, ids);
+
+		previous[0] = 0;
+		for (int j = 1; j <= columns; j++)
+			previous[j] = local ? 0 : previous[j - 1] + insertions[j - 1];
+
+		float first = 0;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = 1; i <= rows; i++) {
+			AtomicLongArray scores = profile.getRow(i - 1);
+			float deletion = (float) deletions[i - 1];
+			if (!local)
+				first += deletion;
+			current[0] = first;
+			for (int j = 1; j <= columns; j++) {
+				float left = previous[j] + deletion;
+				float up = current[j - 1] + insertions[j - 1];
+				int id = ids[j - 1];
+				double substitution = QueryProfile.getStoredScore(scores, id);
+				if (Double.isNaN(substitution)) {
+					substitution = profile.getScore(i - 1, id, s2.get(j - 1));
+					scores = profile.getRow(i - 1);
+				}
+				float diag = previous[j - 1] + (float) substitution;
+				float value = Math.max(left, Math.max(up, diag));
+				if (local && value < 0)
+					value = 0;
+				current[j] = value;
+				if (max < value)
+					max = value;
+			}
+			float[] row = previous;
+			previous = current;
+			current = row;
+		}
+
+		return global ? previous[columns] : max;
+	}
+
+	protected double alignFixed(GapProfile gaps, QueryProfile profile, ArrayList<NGram> s2, double[] deletions,
+			boolean local, boolean global) {
+		int rows = profile.getQuery().size();
+		int columns = s2.size();
+		AlignmentBuffers buffers = AlignmentBuffers.get(rows + 1, columns + 1);
+		int[] previous = buffers.previousFixed;
+		int[] current = buffers.currentFixed;
+
+		// no path adds more than rows+columns scores, so none may exceed this
+		// limit to be added without overflow
+		double limit = Integer.MAX_VALUE / (rows + columns + 1);
+		double[] insertionScores = buffers.insertions;
+		gaps.getInsertions(s2, insertionScores);
+		int[] insertions = buffers.insertionsFixed;
+		for (int j = 0; j < columns; j++) {
+			double insertion = insertionScores[j] * AlignmentPrecision.SCALE;
+			if (!(Math.abs(insertion) <= limit))
+				return Double.NaN;
+			insertions[j] = (int) Math.round(insertion);
+		}
+		int[] ids = buffers.ids;
+		profile.getIds(s2, ids);
+
+		previous[0] = 0;
+		for (int j = 1; j <= columns; j++)
+			previous[j] = local ? 0 : previous[j - 1] + insertions[j - 1];
+
+		int first = 0;
+		int max = Integer.MIN_VALUE;
+		for (int i = 1; i <= rows; i++) {
+			AtomicLongArray scores = profile.getRow(i - 1);
+			double deletionScore = deletions[i - 1] * AlignmentPrecision.SCALE;
+			if (!(Math.abs(deletionScore) <= limit))
+				return Double.NaN;
+			int deletion = (int) Math.round(deletionScore);
+			if (!local)
+				first += deletion;
+			current[0] = first;
+			for (int j = 1; j <= columns; j++) {
+				int left = previous[j] + deletion;
+				int up = current[j - 1] + insertions[j - 1];
+				int id = ids[j - 1];
+				double substitution = QueryProfile.getStoredScore(scores, id);
+				if (Double.isNaN(substitution)) {
+					substitution = profile.getScore(i - 1, id, s2.get(j - 1));
+					scores = profile.getRow(i - 1);
+				}
+				substitution *= AlignmentPrecision.SCALE;
+				if (!(Math.abs(substitution) <= limit))
+					return Double.NaN;
+				int diag = previous[j - 1] + (int) Math.round(substitution);
+				int value = Math.max(left, Math.max(up, diag));
+				if (local && value < 0)
+					value = 0;
+				current[j] = value;
+				if (max < value)
+					max = value;
+			}
+			int[] row = previous;
+			previous = current;
+			current = row;
+		}
+
+		return (global ? previous[columns] : max) / AlignmentPrecision.SCALE;
+	}
+}
@@ -0,0 +1,154 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.NGramVocabulary;
+import jurbano.melodyshape.comparison.VersionedNGramComparer;
+
+/**
+ * Computes the gap scores of the {@link NGram}s in a sequence, that is, their
+ * similarity to the {@code null} n-gram, once per alignment instead of once
+ * per cell of the alignment matrix.
+ * <p>
+ * The gap scores of each n-gram are also stored as features of the n-gram,
+ * so that the profiles of melodies compared repeatedly, such as those in the
+ * collection, are computed only once across queries. All comparers of the
+ * same family share one feature slot, and the stored scores are tagged with
+ * the comparer that computed them and its version, so they are computed again
+ * if a different comparer of the family is used, or if the comparer is a
+ * {@link VersionedNGramComparer} and its version changed.
+ *
+ * @author Julián Urbano
+ * @see MelodyAligner
+ * @see NGramVocabulary#getFamily(NGramComparer)
+ */
+class GapProfile
+{
+	static final ConcurrentHashMap<String, Integer> FEATURES = new ConcurrentHashMap<String, Integer>();
+
+	protected final NGramComparer comparer;
+	protected final int gapFeature;
+
+	/**
+	 * Constructs a new {@code GapProfile} for the specified
+	 * {@link NGramComparer}.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer.
+	 */
+	GapProfile(NGramComparer comparer) {
+		this.comparer = comparer;
+		this.gapFeature = GapProfile.getFeatureSlot(comparer);
+	}
+
+	/**
+	 * Gets the feature slot where the gap scores of the family of an
+	 * {@link NGramComparer} are stored, reserving it the first time.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer.
+	 * @return the index of the slot.
+	 */
+	static int getFeatureSlot(NGramComparer comparer) {
+		String family = NGramVocabulary.getFamily(comparer);
+		Integer slot = GapProfile.FEATURES.get(family);
+		if (slot == null) {
+			synchronized (GapProfile.FEATURES) {
+				slot = GapProfile.FEATURES.get(family);
+				if (slot == null) {
+					slot = NGram.newFeatureSlot();
+					GapProfile.FEATURES.put(family, slot);
+				}
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Gets the gap scores of an {@link NGram}, computing them if they are not
+	 * stored in the n-gram or were computed by a different comparer or
+	 * version.
+	 *
+	 * @param g
+	 *            the n-gram.
+	 * @param version
+	 *            the current version of the comparer.
+	 * @return the gap scores.
+	 */
+	protected Gaps getGaps(NGram g, long version) {
+		Gaps gaps = (Gaps) g.getFeature(this.gapFeature);
+		if (gaps == null || gaps.comparer != this.comparer || gaps.version != version) {
+			gaps = new Gaps(this.comparer, version, this.comparer.compare(g, null), this.comparer.compare(null, g));
+			g.setFeature(this.gapFeature, gaps);
+		}
+		return gaps;
+	}
+
+	/**
+	 * Computes the scores {@code compare(s.get(i), null)} of all n-grams in a
+	 * sequence.
+	 *
+	 * @param s
+	 *            the sequence of n-grams.
+	 * @param profile
+	 *            the buffer where the scores are written.
+	 */
+	void getDeletions(ArrayList<NGram> s, double[] profile) {
+		long version = this.getVersion();
+		for (int i = 0; i < s.size(); i++)
+			profile[i] = this.getGaps(s.get(i), version).deletion;
+	}
+
+	/**
+	 * Computes the scores {@code compare(null, s.get(j))} of all n-grams in a
+	 * sequence.
+	 *
+	 * @param s
+	 *            the sequence of n-grams.
+	 * @param profile
+	 *            the buffer where the scores are written.
+	 */
+	void getInsertions(ArrayList<NGram> s, double[] profile) {
+		long version = this.getVersion();
+		for (int j = 0; j < s.size(); j++)
+			profile[j] = this.getGaps(s.get(j), version).insertion;
+	}
+
+	/**
+	 * Gets the current version of the comparer.
+	 *
+	 * @return the version, or 0 if the comparer is not a
+	 *         {@link VersionedNGramComparer}.
+	 */
+	long getVersion() {
+		if (this.comparer instanceof VersionedNGramComparer)
+			return ((VersionedNGramComparer) this.comparer).getVersion();
+		return 0;
+	}
+
+	/**
+	 * The deletion and insertion scores of an n-gram, computed by a specific
+	 * version of an {@link NGramComparer} and stored as a feature of the
+	 * n-gram.
+	 */
+	protected static class Gaps
+	{
+		final NGramComparer comparer;
+		final long version;
+		final double deletion;
+		final double insertion;
+
+		Gaps(NGramComparer comparer, long version, double deletion, double insertion) {
+			this.comparer = comparer;
+			this.version = version;
+			this.deletion = deletion;
+			this.insertion = insertion;
+		}
+	}
+}
@@ -1,77 +1,279 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison.alignment;
-
-import java.util.ArrayList;
-
-import jurbano.melodyshape.comparison.NGram;
-import jurbano.melodyshape.comparison.NGramComparer;
-
-/**
- * An implementation of a hybrid alignment algorithm for sequences of
- * {@link NGram}s.
- * <p>
- * Like a global alignment algorithm, it penalizes changes at the beginning of
- * sequences, but the final alignment score is the maximum intermediate score
- * found in the alignment table. Thus, it does not penalize changes at the end
- * of sequences.
- * 
- * @author Julián Urbano
- * @see NGram
- * @see NGramComparer
- */
-public class HybridAligner implements MelodyAligner
-{
-	protected NGramComparer comparer;
-	
-	/**
-	 * Constructs a new {@code HybridAligner} with the specified
-	 * {@link NGramComparer}.
-	 * 
-	 * @param comparer
-	 *            the n-gram comparer to use.
-	 */
-	public HybridAligner(NGramComparer comparer) {
-		this.comparer = comparer;
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "Hybrid(comparer)"}, where
-	 *         {@code comparer} is the name of the underlying
-	 *         {@link NGramComparer}.
-	 */
-	@Override
-	public String getName() {
-		return "Hybrid("+this.comparer.getName()+")";
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public double align(ArrayList<NGram> s1, ArrayList<NGram> s2) {
-		double[][] matrix = new double[s1.size() + 1][s2.size() + 1];
-		
-		for (int i = 1; i <= s1.size(); i++)
-			matrix[i][0] = matrix[i - 1][0] + this.comparer.compare(s1.get(i - 1), null);
-		for (int j = 1; j <= s2.size(); j++)
-			matrix[0][j] = matrix[0][j - 1] + this.comparer.compare(null, s2.get(j - 1));
-		
-		double max = Double.NEGATIVE_INFINITY;
-		for (int i = 1; i <= s1.size(); i++) {
-			for (int j = 1; j <= s2.size(); j++) {
-				double left = matrix[i - 1][j] + this.comparer.compare(s1.get(i - 1), null);
-				double up = matrix[i][j - 1] + this.comparer.compare(null, s2.get(j - 1));
-				double diag = matrix[i - 1][j - 1] + this.comparer.compare(s1.get(i - 1), s2.get(j - 1));
-				matrix[i][j] = Math.max(left, Math.max(up, diag));
-				if (max < matrix[i][j])
-					max = matrix[i][j];
-			}
-		}
-		
-		return max / Math.min(s1.size(), s2.size()); // TODO: move normalization to algorithm?
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.NGramVocabulary;
+import jurbano.melodyshape.comparison.TopKThreshold;
+
+/**
+ * An implementation of a hybrid alignment algorithm for sequences of
+ * {@link NGram}s.
+ * <p>
+ * Like a global alignment algorithm, it penalizes changes at the beginning of
+ * sequences, but the final alignment score is the maximum intermediate score
+ * found in the alignment table. Thus, it does not penalize changes at the end
+ * of sequences.
+ * <p>
+ * When both sequences are very long, the alignment matrix is split in tiles
+ * that are computed in parallel. Such alignments are never abandoned early.
+ * 
+ * @author Julián Urbano
+ * @see NGram
+ * @see NGramComparer
+ */
+public class HybridAligner implements MelodyAligner
+{
+	protected NGramComparer comparer;
+	protected GapProfile gaps;
+	protected NGramVocabulary vocabulary;
+	protected AlignmentLimits limits;
+	protected AlignmentPrecision precision;
+	
+	/**
+	 * Constructs a new {@code HybridAligner} with the specified
+	 * {@link NGramComparer}.
+	 * 
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 */
+	public HybridAligner(NGramComparer comparer) {
+		this(comparer, AlignmentLimits.NONE);
+	}
+
+	/**
+	 * Constructs a new {@code HybridAligner} with the specified
+	 * {@link NGramComparer} and limits on the cells of the alignment matrix.
+	 * 
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param limits
+	 *            the band and X-drop limits.
+	 */
+	public HybridAligner(NGramComparer comparer, AlignmentLimits limits) {
+		this(comparer, limits, AlignmentPrecision.DOUBLE);
+	}
+
+	/**
+	 * Constructs a new {@code HybridAligner} with the specified
+	 * {@link NGramComparer}, limits on the cells of the alignment matrix, and
+	 * arithmetic precision.
+	 * 
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param limits
+	 *            the band and X-drop limits.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 */
+	public HybridAligner(NGramComparer comparer, AlignmentLimits limits, AlignmentPrecision precision) {
+		this.comparer = comparer;
+		this.gaps = new GapProfile(comparer);
+		this.vocabulary = NGramVocabulary.getVocabulary(comparer);
+		this.limits = limits;
+		this.precision = precision;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "Hybrid(comparer)"}, where
+	 *         {@code comparer} is the name of the underlying
+	 *         {@link NGramComparer}.
+	 */
+	@Override
+	public String getName() {
+		return "Hybrid("+this.comparer.getName()+")";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double align(ArrayList<NGram> s1, ArrayList<NGram> s2) {
+		return this.align(new QueryProfile(this.comparer, this.vocabulary, s1, 0), s2);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public QueryProfile newQueryProfile(ArrayList<NGram> s1) {
+		return new QueryProfile(this.comparer, this.vocabulary, s1, QueryProfile.DEFAULT_MAX_BYTES);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double align(QueryProfile profile, ArrayList<NGram> s2) {
+		return this.align(profile, s2, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double align(QueryProfile profile, ArrayList<NGram> s2, TopKThreshold threshold) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		AlignmentBuffers buffers = AlignmentBuffers.get(s1.size() + 1, s2.size() + 1);
+		this.gaps.getDeletions(s1, buffers.deletions);
+		if (threshold != null)
+			ScoreBounds.getRowBounds(profile, buffers.deletions, buffers.bounds);
+		return this.align(profile, s2, threshold, buffers.deletions, buffers.bounds);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The gap scores and score bounds of the query are computed once for all
+	 * sequences.
+	 */
+	@Override
+	public void align(QueryProfile profile, List<ArrayList<NGram>> s2s, TopKThreshold threshold, double[] scores) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		double[] deletions = new double[s1.size()];
+		double[] bounds = new double[s1.size() + 1];
+		this.gaps.getDeletions(s1, deletions);
+		if (threshold != null)
+			ScoreBounds.getRowBounds(profile, deletions, bounds);
+		for (int k = 0; k < s2s.size(); k++) {
+			scores[k] = this.align(profile, s2s.get(k), threshold, deletions, bounds);
+			if (threshold != null)
+				threshold.offer(scores[k]);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * There are no bounds in reduced precision, because rounding errors could
+	 * make scores exceed them.
+	 */
+	@Override
+	public void getUpperBounds(QueryProfile profile, List<ArrayList<NGram>> s2s, double[] bounds) {
+		if (this.precision != AlignmentPrecision.DOUBLE)
+			Arrays.fill(bounds, 0, s2s.size(), Double.POSITIVE_INFINITY);
+		else
+			ScoreBounds.getUpperBounds(this.gaps, profile, s2s, true, bounds);
+	}
+	
+	/**
+	 * Computes an alignment score between the query of a
+	 * {@link QueryProfile} and another sequence of {@link NGram}s, given the
+	 * gap scores and score bounds of the query.
+	 * 
+	 * @param profile
+	 *            the profile of the first sequence of n-grams.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @param threshold
+	 *            the threshold, or {@code null} to never abandon.
+	 * @param deletions
+	 *            the deletion scores of the first sequence.
+	 * @param bounds
+	 *            the row bounds of the first sequence, only used if there is a
+	 *            threshold.
+	 * @return the alignment score, or {@link Double#NEGATIVE_INFINITY} if the
+	 *         alignment was abandoned.
+	 * @see ScoreBounds#getRowBounds(QueryProfile, double[], double[])
+	 */
+	protected double align(QueryProfile profile, ArrayList<NGram> s2, TopKThreshold threshold, double[] deletions,
+			double[] bounds) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		if (!this.limits.isUnlimited()) {
+			double score = this.limits.align(this.gaps, profile, s2, false);
+			if (!Double.isNaN(score))
+				return score / Math.min(s1.size(), s2.size());
+			// no cell could be computed, so align without limits
+		}
+		if (this.precision != AlignmentPrecision.DOUBLE) {
+			double score = this.precision.align(this.gaps, profile, s2, deletions, false, false);
+			if (!Double.isNaN(score))
+				return score / Math.min(s1.size(), s2.size());
+			// some score cannot be represented, so align in double precision
+		}
+		if (WavefrontAlignment.isLarge(s1.size(), s2.size()))
+			return new WavefrontAlignment(this.gaps, profile, s2, false).align(false) / Math.min(s1.size(), s2.size());
+		// only two rows and the first column of the matrix are kept, and gap
+		// scores are computed once per n-gram
+		AlignmentBuffers buffers = AlignmentBuffers.get(s1.size() + 1, s2.size() + 1);
+		double[] column = buffers.column;
+		double[] previous = buffers.previous;
+		double[] current = buffers.current;
+		
+		double[] insertions = buffers.insertions;
+		this.gaps.getInsertions(s2, insertions);
+		int[] ids = buffers.ids;
+		profile.getIds(s2, ids);
+		double insertionBound = 0;
+		if (threshold != null) {
+			insertionBound = ScoreBounds.getInsertionBound(insertions, s2.size());
+		}
+		
+		column[0] = 0;
+		for (int i = 1; i <= s1.size(); i++)
+			column[i] = column[i - 1] + deletions[i - 1];
+		previous[0] = 0;
+		for (int j = 1; j <= s2.size(); j++)
+			previous[j] = previous[j - 1] + insertions[j - 1];
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 1; i <= s1.size(); i++) {
+			AtomicLongArray scores = profile.getRow(i - 1);
+			double deletion = deletions[i - 1];
+			current[0] = column[i];
+			for (int j = 1; j <= s2.size(); j++) {
+				double left = previous[j] + deletion;
+				double up = current[j - 1] + insertions[j - 1];
+				int id = ids[j - 1];
+				double substitution = QueryProfile.getStoredScore(scores, id);
+				if (Double.isNaN(substitution)) {
+					substitution = profile.getScore(i - 1, id, s2.get(j - 1));
+					scores = profile.getRow(i - 1);
+				}
+				double diag = previous[j - 1] + substitution;
+				current[j] = Math.max(left, Math.max(up, diag));
+				if (max < current[j])
+					max = current[j];
+			}
+			double[] row = previous;
+			previous = current;
+			current = row;
+			if (threshold != null) {
+				double bound = Math.max(max, ScoreBounds.getRowMax(previous, s2.size()) + bounds[i] + insertionBound);
+				if (threshold.canPrune(bound / Math.min(s1.size(), s2.size())))
+					return Double.NEGATIVE_INFINITY;
+			}
+		}
+		
+		return max / Math.min(s1.size(), s2.size()); // TODO: move normalization to algorithm?
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Alignment explain(ArrayList<NGram> s1, ArrayList<NGram> s2) {
+		return this.explain(new QueryProfile(this.comparer, this.vocabulary, s1, 0), s2);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	* <p>
+	 * Limits on the alignment matrix are ignored, so the explained alignment
+	 * is always the optimal one.
+	 */
+	@Override
+	public Alignment explain(QueryProfile profile, ArrayList<NGram> s2) {
+		LinearSpaceTraceback traceback = new LinearSpaceTraceback(this.gaps, profile, s2);
+		return traceback.traceHybrid(Math.min(profile.getQuery().size(), s2.size()));
+	}
+}
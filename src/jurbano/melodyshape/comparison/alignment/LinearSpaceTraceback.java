@@ -0,0 +1,357 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jurbano.melodyshape.comparison.NGram;
+
+/**
+ * Recovers the steps of an optimal alignment in linear space, to build the
+ * {@link Alignment} explained by {@link MelodyAligner}s.
+ * <p>
+ * A traceback through the full alignment matrix needs memory proportional to
+ * the product of the lengths of both sequences. Instead, this class follows
+ * Hirschberg's divide and conquer algorithm: the score of the middle row of
+ * the matrix is computed forward from the first cell and backward from the
+ * last cell, and the column where their sum is maximum is a cell of an
+ * optimal alignment, which is thus split in two smaller alignments. Only a
+ * few rows are kept at any time, at the cost of about twice the computation.
+ * <p>
+ * Local and hybrid alignments are reduced to a global alignment of the
+ * aligned spans: a forward pass finds the last cell of the alignment, and for
+ * local alignments a backward pass from it finds the first cell. The local
+ * recurrence keeps the first row and column of the matrix at 0, so an
+ * alignment that starts there cannot move along them; its first step is
+ * taken when it is found, and the rest is traced as usual.
+ *
+ * @author Julián Urbano
+ * @see HybridAligner
+ * @see LocalAligner
+ * @see GlobalAligner
+ */
+class LinearSpaceTraceback
+{
+	protected final QueryProfile profile;
+	protected final ArrayList<NGram> s2;
+	protected final int rows;
+	protected final int columns;
+	protected final double[] deletions;
+	protected final double[] insertions;
+	protected final int[] ids;
+
+	protected int[] queryIndices;
+	protected int[] documentIndices;
+	protected int length;
+
+	protected double bestScore;
+	protected int bestRow;
+	protected int bestColumn;
+	/**
+	 * The first step from the best cell found by a backward pass, as the query
+	 * and document indices of the step.
+	 */
+	protected int bestQueryStep;
+	protected int bestDocumentStep;
+
+	/**
+	 * Prepares the traceback between the query of a {@link QueryProfile} and
+	 * another sequence of n-grams.
+	 *
+	 * @param gaps
+	 *            the gap scores of the aligner.
+	 * @param profile
+	 *            the query profile.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 */
+	LinearSpaceTraceback(GapProfile gaps, QueryProfile profile, ArrayList<NGram> s2) {
+		this.profile = profile;
+		this.s2 = s2;
+		this.rows = profile.getQuery().size();
+		this.columns = s2.size();
+
+		// tracebacks run in parallel, so they cannot use the thread buffers
+		this.deletions = new double[this.rows];
+		this.insertions = new double[this.columns];
+		this.ids = new int[this.columns];
+		gaps.getDeletions(profile.getQuery(), this.deletions);
+		gaps.getInsertions(s2, this.insertions);
+		profile.getIds(s2, this.ids);
+
+		this.queryIndices = new int[this.rows + this.columns];
+		this.documentIndices = new int[this.rows + this.columns];
+		this.length = 0;
+	}
+
+	/**
+	 * Traces back a global alignment, from the first to the last cell of the
+	 * matrix.
+	 *
+	 * @return the alignment, whose score is the score of the last cell.
+	 */
+	Alignment traceGlobal() {
+		double score = this.forward(0, this.rows, 0, this.columns, false)[this.columns];
+		this.trace(0, this.rows, 0, this.columns);
+		assert this.addsUpTo(score);
+		return this.getAlignment(score, 0, this.rows, 0, this.columns);
+	}
+
+	/**
+	 * Traces back a hybrid alignment, from the first cell of the matrix to the
+	 * cell with the maximum score.
+	 *
+	 * @param normalization
+	 *            the value the maximum score is divided by.
+	 * @return the alignment.
+	 */
+	Alignment traceHybrid(double normalization) {
+		this.forward(0, this.rows, 0, this.columns, false);
+		double maxScore = this.bestScore;
+		double score = maxScore / normalization;
+		int rowEnd = this.bestRow;
+		int columnEnd = this.bestColumn;
+		this.trace(0, rowEnd, 0, columnEnd);
+		assert this.addsUpTo(maxScore);
+		return this.getAlignment(score, 0, rowEnd, 0, columnEnd);
+	}
+
+	/**
+	 * Traces back a local alignment, between the cells where the maximum
+	 * score starts and ends.
+	 *
+	 * @param normalization
+	 *            the value the maximum score is divided by.
+	 * @return the alignment, which is empty if no score is positive.
+	 */
+	Alignment traceLocal(double normalization) {
+		this.forward(0, this.rows, 0, this.columns, true);
+		double maxScore = this.bestScore;
+		double score = maxScore / normalization;
+		if (!(maxScore > 0))
+			return this.getAlignment(score, 0, 0, 0, 0);
+		int rowEnd = this.bestRow;
+		int columnEnd = this.bestColumn;
+		this.backward(0, rowEnd, 0, columnEnd, true);
+		int rowStart = this.bestRow;
+		int columnStart = this.bestColumn;
+		// leave the first row or column in the first step, and from there on
+		// every step of a global alignment is possible
+		int i = rowStart;
+		int j = columnStart;
+		if (i == 0 || j == 0) {
+			this.addStep(this.bestQueryStep, this.bestDocumentStep);
+			if (this.bestQueryStep != Alignment.GAP)
+				i++;
+			if (this.bestDocumentStep != Alignment.GAP)
+				j++;
+		}
+		this.trace(i, rowEnd, j, columnEnd);
+		assert this.addsUpTo(maxScore);
+		return this.getAlignment(score, rowStart, rowEnd, columnStart, columnEnd);
+	}
+
+	/**
+	 * Creates the {@link Alignment} with the steps traced back so far.
+	 */
+	protected Alignment getAlignment(double score, int queryStart, int queryEnd, int documentStart,
+			int documentEnd) {
+		int[] queryIndices = new int[this.length];
+		int[] documentIndices = new int[this.length];
+		System.arraycopy(this.queryIndices, 0, queryIndices, 0, this.length);
+		System.arraycopy(this.documentIndices, 0, documentIndices, 0, this.length);
+		return new Alignment(score, queryStart, queryEnd, documentStart, documentEnd, queryIndices,
+				documentIndices);
+	}
+
+	/**
+	 * Traces back the global alignment between rows {@code i0} to {@code i1}
+	 * and columns {@code j0} to {@code j1} of the matrix, appending its steps.
+	 */
+	protected void trace(int i0, int i1, int j0, int j1) {
+		if (i1 - i0 == 0) {
+			for (int j = j0; j < j1; j++)
+				this.addStep(Alignment.GAP, j);
+		} else if (i1 - i0 == 1) {
+			this.traceRow(i0, j0, j1);
+		} else {
+			// split at the column where the middle row of the optimal
+			// alignment is crossed
+			int middle = (i0 + i1) / 2;
+			double[] forward = this.forward(i0, middle, j0, j1, false);
+			double[] backward = this.backward(middle, i1, j0, j1, false);
+			int split = 0;
+			for (int k = 1; k <= j1 - j0; k++)
+				if (forward[split] + backward[split] < forward[k] + backward[k])
+					split = k;
+			this.trace(i0, middle, j0, j0 + split);
+			this.trace(middle, i1, j0 + split, j1);
+		}
+	}
+
+	/**
+	 * Traces back the global alignment of a single row {@code i} between
+	 * columns {@code j0} and {@code j1}: the n-gram in the row is either
+	 * substituted by one of the columns or deleted, and the rest of columns
+	 * are inserted.
+	 */
+	protected void traceRow(int i, int j0, int j1) {
+		double inserted = 0;
+		for (int j = j0; j < j1; j++)
+			inserted += this.insertions[j];
+		double best = inserted + this.deletions[i];
+		int bestColumn = Alignment.GAP;
+		for (int j = j0; j < j1; j++) {
+			double score = inserted - this.insertions[j] + this.getSubstitution(i, j);
+			if (best < score) {
+				best = score;
+				bestColumn = j;
+			}
+		}
+
+		if (bestColumn == Alignment.GAP)
+			this.addStep(i, Alignment.GAP);
+		for (int j = j0; j < j1; j++)
+			this.addStep(j == bestColumn ? i : Alignment.GAP, j);
+	}
+
+	/**
+	 * Computes the alignment matrix from cell {@code (i0,j0)} down to row
+	 * {@code i1}, and keeps track of the cell with the maximum score, excluding
+	 * the first row and column.
+	 *
+	 * @return the last row, from column {@code j0} to {@code j1}.
+	 */
+	protected double[] forward(int i0, int i1, int j0, int j1, boolean local) {
+		int width = j1 - j0;
+		double[] previous = new double[width + 1];
+		double[] current = new double[width + 1];
+		if (!local)
+			for (int k = 1; k <= width; k++)
+				previous[k] = previous[k - 1] + this.insertions[j0 + k - 1];
+
+		this.bestScore = Double.NEGATIVE_INFINITY;
+		this.bestRow = i0;
+		this.bestColumn = j0;
+		for (int i = i0 + 1; i <= i1; i++) {
+			double deletion = this.deletions[i - 1];
+			current[0] = local ? 0 : previous[0] + deletion;
+			for (int k = 1; k <= width; k++) {
+				int j = j0 + k;
+				double left = previous[k] + deletion;
+				double up = current[k - 1] + this.insertions[j - 1];
+				double diag = previous[k - 1] + this.getSubstitution(i - 1, j - 1);
+				if (local)
+					current[k] = Math.max(0, Math.max(left, Math.max(up, diag)));
+				else
+					current[k] = Math.max(left, Math.max(up, diag));
+				if (this.bestScore < current[k]) {
+					this.bestScore = current[k];
+					this.bestRow = i;
+					this.bestColumn = j;
+				}
+			}
+			double[] row = previous;
+			previous = current;
+			current = row;
+		}
+		return previous;
+	}
+
+	/**
+	 * Computes the alignment matrix backward from cell {@code (i1,j1)} up to
+	 * row {@code i0}, that is, the best score from each cell to the last one,
+	 * and keeps track of the cell with the maximum score and its first step.
+	 * If {@code local}, no step moves along the first row or column of the
+	 * matrix.
+	 *
+	 * @return the first row, from column {@code j0} to {@code j1}.
+	 */
+	protected double[] backward(int i0, int i1, int j0, int j1, boolean local) {
+		int width = j1 - j0;
+		double[] next = new double[width + 1];
+		double[] current = new double[width + 1];
+		for (int k = width - 1; k >= 0; k--)
+			next[k] = next[k + 1] + this.insertions[j0 + k];
+
+		this.bestScore = 0;
+		this.bestRow = i1;
+		this.bestColumn = j1;
+		for (int k = width - 1; k >= 0; k--)
+			this.updateBest(next[k], i1, j0 + k, Alignment.GAP, j0 + k);
+		for (int i = i1 - 1; i >= i0; i--) {
+			double deletion = this.deletions[i];
+			for (int k = width; k >= 0; k--) {
+				int j = j0 + k;
+				double down = next[k] + deletion;
+				double right = Double.NEGATIVE_INFINITY;
+				double diag = Double.NEGATIVE_INFINITY;
+				if (k < width) {
+					right = current[k + 1] + this.insertions[j];
+					diag = next[k + 1] + this.getSubstitution(i, j);
+				}
+				if (local && i == 0)
+					right = Double.NEGATIVE_INFINITY;
+				if (local && j == 0)
+					down = Double.NEGATIVE_INFINITY;
+				current[k] = Math.max(down, Math.max(right, diag));
+				if (current[k] == diag)
+					this.updateBest(current[k], i, j, i, j);
+				else if (current[k] == down)
+					this.updateBest(current[k], i, j, i, Alignment.GAP);
+				else
+					this.updateBest(current[k], i, j, Alignment.GAP, j);
+			}
+			double[] row = next;
+			next = current;
+			current = row;
+		}
+		return next;
+	}
+
+	protected void updateBest(double score, int i, int j, int queryStep, int documentStep) {
+		if (this.bestScore < score) {
+			this.bestScore = score;
+			this.bestRow = i;
+			this.bestColumn = j;
+			this.bestQueryStep = queryStep;
+			this.bestDocumentStep = documentStep;
+		}
+	}
+
+	/**
+	 * Checks whether the steps traced back add up to the specified score, up
+	 * to rounding errors.
+	 */
+	protected boolean addsUpTo(double score) {
+		double sum = 0;
+		for (int k = 0; k < this.length; k++) {
+			int i = this.queryIndices[k];
+			int j = this.documentIndices[k];
+			if (i == Alignment.GAP)
+				sum += this.insertions[j];
+			else if (j == Alignment.GAP)
+				sum += this.deletions[i];
+			else
+				sum += this.getSubstitution(i, j);
+		}
+		return Math.abs(sum - score) <= 1e-9 * (1 + Math.abs(score));
+	}
+
+	protected double getSubstitution(int i, int j) {
+		AtomicLongArray scores = this.profile.getRow(i);
+		int id = this.ids[j];
+		double substitution = QueryProfile.getStoredScore(scores, id);
+		if (Double.isNaN(substitution))
+			substitution = this.profile.getScore(i, id, this.s2.get(j));
+		return substitution;
+	}
+
+	protected void addStep(int queryIndex, int documentIndex) {
+		this.queryIndices[this.length] = queryIndex;
+		this.documentIndices[this.length] = documentIndex;
+		this.length++;
+	}
+}
@@ -1,43 +1,159 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison.alignment;
-
-import jurbano.melodyshape.comparison.NGram;
-import jurbano.melodyshape.comparison.NGramComparer;
-import jurbano.melodyshape.model.Melody;
-
-import java.util.ArrayList;
-
-/**
- * A sequence alignment algorithm that can be applied upon the sequences of
- * {@link NGram}s defined from two {@link Melody} objects.
- * 
- * @author Julián Urbano
- * @see NGram
- * @see NGramComparer
- */
-public interface MelodyAligner
-{
-	/**
-	 * Gets the name of this {@code MelodyAligner}.
-	 * 
-	 * @return the name of this melody aligner.
-	 */
-	public String getName();
-	
-	/**
-	 * Computes an alignment score between two sequences of {@link NGram}s.
-	 * <p>
-	 * The alignment score is proportional to the similarity between the
-	 * sequences, that is {@code align(s1, s2) > align(s1, s3)} means that
-	 * sequence {@code s2} is more similar to {@code s1} than {@code s3} is.
-	 * 
-	 * @param s1
-	 *            the first sequence of n-grams.
-	 * @param s2
-	 *            the second sequence of n-grams.
-	 * @return the alignment score.
-	 */
-	public double align(ArrayList<NGram> s1, ArrayList<NGram> s2);
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import jurbano.melodyshape.comparison.BoundedNGramComparer;
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.TopKThreshold;
+import jurbano.melodyshape.model.Melody;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence alignment algorithm that can be applied upon the sequences of
+ * {@link NGram}s defined from two {@link Melody} objects.
+ * 
+ * @author Julián Urbano
+ * @see NGram
+ * @see NGramComparer
+ */
+public interface MelodyAligner
+{
+	/**
+	 * Gets the name of this {@code MelodyAligner}.
+	 * 
+	 * @return the name of this melody aligner.
+	 */
+	public String getName();
+	
+	/**
+	 * Computes an alignment score between two sequences of {@link NGram}s.
+	 * <p>
+	 * The alignment score is proportional to the similarity between the
+	 * sequences, that is {@code align(s1, s2) > align(s1, s3)} means that
+	 * sequence {@code s2} is more similar to {@code s1} than {@code s3} is.
+	 * 
+	 * @param s1
+	 *            the first sequence of n-grams.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @return the alignment score.
+	 */
+	public double align(ArrayList<NGram> s1, ArrayList<NGram> s2);
+	
+	/**
+	 * Creates an empty {@link QueryProfile} to align a sequence of
+	 * {@link NGram}s against many others, such as a query against every
+	 * melody in a collection. The profile stores the substitution scores
+	 * computed during alignments, so that they are computed only once.
+	 * 
+	 * @param s1
+	 *            the first sequence of n-grams, usually the query.
+	 * @return the profile.
+	 */
+	public QueryProfile newQueryProfile(ArrayList<NGram> s1);
+	
+	/**
+	 * Computes an alignment score between the query of a
+	 * {@link QueryProfile} and another sequence of {@link NGram}s. It is
+	 * equivalent to {@code align(profile.getQuery(), s2)}.
+	 * 
+	 * @param profile
+	 *            the profile of the first sequence of n-grams.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @return the alignment score.
+	 * @see MelodyAligner#newQueryProfile(ArrayList)
+	 */
+	public double align(QueryProfile profile, ArrayList<NGram> s2);
+	
+	/**
+	 * Computes an alignment score between the query of a
+	 * {@link QueryProfile} and another sequence of {@link NGram}s, abandoning
+	 * the alignment as soon as an upper bound of its score falls below a
+	 * {@link TopKThreshold}.
+	 * 
+	 * @param profile
+	 *            the profile of the first sequence of n-grams.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @param threshold
+	 *            the threshold, or {@code null} to never abandon.
+	 * @return the alignment score, or {@link Double#NEGATIVE_INFINITY} if the
+	 *         alignment was abandoned.
+	 * @see BoundedNGramComparer#getMaxScore(NGram)
+	 */
+	public double align(QueryProfile profile, ArrayList<NGram> s2, TopKThreshold threshold);
+	
+	/**
+	 * Computes the alignment scores between the query of a
+	 * {@link QueryProfile} and a block of sequences of {@link NGram}s. It is
+	 * equivalent to calling {@code align(profile, s2, threshold)} for each
+	 * sequence in the block, but the preparation of the query is done only
+	 * once. If there is a threshold, every score is offered to it as soon as
+	 * it is computed, so that it applies to the next sequences in the block.
+	 * 
+	 * @param profile
+	 *            the profile of the first sequence of n-grams.
+	 * @param s2s
+	 *            the block of sequences of n-grams.
+	 * @param threshold
+	 *            the threshold, or {@code null} to never abandon.
+	 * @param scores
+	 *            the array where the alignment score of each sequence is
+	 *            written, or {@link Double#NEGATIVE_INFINITY} if the alignment
+	 *            was abandoned.
+	 * @see TopKThreshold#offer(double)
+	 */
+	public void align(QueryProfile profile, List<ArrayList<NGram>> s2s, TopKThreshold threshold, double[] scores);
+	
+	/**
+	 * Computes upper bounds of the alignment scores between the query of a
+	 * {@link QueryProfile} and a block of sequences of {@link NGram}s, without
+	 * aligning them. The bound of a sequence only depends on its length and
+	 * its gap scores, so it is much cheaper to compute than the alignment.
+	 * 
+	 * @param profile
+	 *            the profile of the first sequence of n-grams.
+	 * @param s2s
+	 *            the block of sequences of n-grams.
+	 * @param bounds
+	 *            the array where the bound of each sequence is written, or
+	 *            {@link Double#POSITIVE_INFINITY} if no bound is known.
+	 * @see BoundedNGramComparer#getMaxScore(NGram)
+	 */
+	public void getUpperBounds(QueryProfile profile, List<ArrayList<NGram>> s2s, double[] bounds);
+	
+	/**
+	 * Explains the alignment between two sequences of {@link NGram}s, that is,
+	 * which n-grams of each sequence were aligned with each other.
+	 * 
+	 * @param s1
+	 *            the first sequence of n-grams.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @return the alignment.
+	 */
+	public Alignment explain(ArrayList<NGram> s1, ArrayList<NGram> s2);
+	
+	/**
+	 * Explains the alignment between the query of a {@link QueryProfile} and
+	 * another sequence of {@link NGram}s. It is equivalent to
+	 * {@code explain(profile.getQuery(), s2)}.
+	 * <p>
+	 * The steps of the alignment are recovered in space linear in the length
+	 * of the sequences, so it may be called for several pairs of sequences at
+	 * once. It takes about three times as long as computing the alignment
+	 * score.
+	 * 
+	 * @param profile
+	 *            the profile of the first sequence of n-grams.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @return the alignment.
+	 */
+	public Alignment explain(QueryProfile profile, ArrayList<NGram> s2);
+}
@@ -0,0 +1,269 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import jurbano.melodyshape.comparison.BoundedNGramComparer;
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.NGramVocabulary;
+import jurbano.melodyshape.comparison.VersionedNGramComparer;
+
+/**
+ * The substitution scores between the {@link NGram}s of a query and all the
+ * n-grams of a collection, stored in a dense matrix.
+ * <p>
+ * There is one row per distinct query n-gram, indexed by the integer
+ * identifiers of an {@link NGramVocabulary}. Scores are computed with an
+ * {@link NGramComparer} the first time they are needed, so when a query is
+ * aligned against every melody in a collection the comparer is called once
+ * per pair of distinct n-grams, and the rest of substitution scores are plain
+ * array lookups. Rows only grow up to a maximum number of bytes; beyond that,
+ * scores are computed but not stored. If the comparer is a
+ * {@link VersionedNGramComparer}, a profile is stale once its version
+ * changes, and a new profile should be created.
+ * <p>
+ * This class is thread-safe. Rows store the raw bits of the scores in an
+ * {@link AtomicLongArray}, so a reader sees either a whole stored score or
+ * {@link Double#NaN} for a missing one, and then computes it. Storing a score
+ * takes no lock; only growing a row does, and each row has its own lock. A
+ * score stored while its row is being grown may be lost, which only means
+ * that it is computed again.
+ *
+ * @author Julián Urbano
+ * @see MelodyAligner#newQueryProfile(ArrayList)
+ */
+public class QueryProfile
+{
+	/**
+	 * The default maximum size of a profile, in bytes (64 MiB).
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+	static final int MIN_ROW_LENGTH = 64;
+	static final AtomicLongArray EMPTY_ROW = new AtomicLongArray(0);
+	static final long MISSING = Double.doubleToRawLongBits(Double.NaN);
+
+	protected final NGramComparer comparer;
+	protected final NGramVocabulary vocabulary;
+	protected final ArrayList<NGram> query;
+	protected final int[] rowIndex;
+	protected final AtomicReferenceArray<AtomicLongArray> rows;
+	protected final Object[] rowLocks;
+	protected final long maxBytes;
+	protected final long version;
+	protected final AtomicLong bytes;
+	protected volatile double[] maxScores;
+
+	/**
+	 * Constructs a new and empty {@code QueryProfile}.
+	 *
+	 * @param comparer
+	 *            the comparer to compute substitution scores.
+	 * @param vocabulary
+	 *            the vocabulary to identify n-grams.
+	 * @param query
+	 *            the sequence of n-grams of the query.
+	 * @param maxBytes
+	 *            the maximum size of the stored scores, in bytes.
+	 */
+	public QueryProfile(NGramComparer comparer, NGramVocabulary vocabulary, ArrayList<NGram> query, long maxBytes) {
+		this.comparer = comparer;
+		this.vocabulary = vocabulary;
+		this.query = query;
+		this.maxBytes = maxBytes;
+		this.version = this.getVersion();
+		this.bytes = new AtomicLong();
+
+		// n-grams with the same identifier share the same row
+		HashMap<Integer, Integer> distinct = new HashMap<Integer, Integer>();
+		this.rowIndex = new int[query.size()];
+		for (int i = 0; i < query.size(); i++) {
+			int id = vocabulary.getId(query.get(i));
+			Integer row = distinct.get(id);
+			if (row == null) {
+				row = distinct.size();
+				distinct.put(id, row);
+			}
+			this.rowIndex[i] = row;
+		}
+		this.rows = new AtomicReferenceArray<AtomicLongArray>(distinct.size());
+		this.rowLocks = new Object[distinct.size()];
+		for (int r = 0; r < this.rowLocks.length; r++)
+			this.rowLocks[r] = new Object();
+	}
+
+	/**
+	 * Gets the sequence of n-grams of the query.
+	 *
+	 * @return the query.
+	 */
+	public ArrayList<NGram> getQuery() {
+		return this.query;
+	}
+
+	/**
+	 * Gets the current version of the comparer.
+	 *
+	 * @return the version, or 0 if the comparer is not a
+	 *         {@link VersionedNGramComparer}.
+	 */
+	long getVersion() {
+		if (this.comparer instanceof VersionedNGramComparer)
+			return ((VersionedNGramComparer) this.comparer).getVersion();
+		return 0;
+	}
+
+	/**
+	 * Tells whether the scores of the comparer changed since this profile was
+	 * created, so that the stored scores may be stale.
+	 *
+	 * @return {@code true} if the profile is stale, or {@code false} if not.
+	 */
+	public boolean isStale() {
+		return this.getVersion() != this.version;
+	}
+
+	/**
+	 * Gets an upper bound of the substitution score between a query n-gram and
+	 * any other n-gram. Bounds are computed the first time they are needed,
+	 * and are all {@link Double#POSITIVE_INFINITY} if the comparer is not a
+	 * {@link BoundedNGramComparer}.
+	 *
+	 * @param i
+	 *            the index of the n-gram in the query.
+	 * @return the upper bound.
+	 * @see BoundedNGramComparer#getMaxScore(NGram)
+	 */
+	double getMaxScore(int i) {
+		double[] maxScores = this.maxScores;
+		if (maxScores == null) {
+			maxScores = new double[this.query.size()];
+			for (int j = 0; j < maxScores.length; j++) {
+				if (this.comparer instanceof BoundedNGramComparer)
+					maxScores[j] = ((BoundedNGramComparer) this.comparer).getMaxScore(this.query.get(j));
+				else
+					maxScores[j] = Double.POSITIVE_INFINITY;
+			}
+			this.maxScores = maxScores;
+		}
+		return maxScores[i];
+	}
+
+	/**
+	 * Writes the integer identifiers of a sequence of n-grams, which index
+	 * the columns of the profile.
+	 *
+	 * @param s
+	 *            the sequence of n-grams.
+	 * @param ids
+	 *            the buffer where identifiers are written.
+	 */
+	void getIds(ArrayList<NGram> s, int[] ids) {
+		for (int j = 0; j < s.size(); j++)
+			ids[j] = this.vocabulary.getId(s.get(j));
+	}
+
+	/**
+	 * Gets the row of substitution scores of a query n-gram, as raw bits. The
+	 * row may be shorter than the vocabulary.
+	 *
+	 * @param i
+	 *            the index of the n-gram in the query.
+	 * @return the row of scores.
+	 * @see QueryProfile#getStoredScore(AtomicLongArray, int)
+	 */
+	AtomicLongArray getRow(int i) {
+		AtomicLongArray row = this.rows.get(this.rowIndex[i]);
+		return row == null ? QueryProfile.EMPTY_ROW : row;
+	}
+
+	/**
+	 * Gets a score stored in a row of the profile.
+	 *
+	 * @param row
+	 *            the row of scores.
+	 * @param id
+	 *            the identifier of the other n-gram.
+	 * @return the score, or {@link Double#NaN} if it is missing.
+	 * @see QueryProfile#getRow(int)
+	 */
+	static double getStoredScore(AtomicLongArray row, int id) {
+		return id < row.length() ? Double.longBitsToDouble(row.get(id)) : Double.NaN;
+	}
+
+	/**
+	 * Writes the substitution scores between a query n-gram and all n-grams in
+	 * a sequence, computing the missing ones.
+	 *
+	 * @param i
+	 *            the index of the n-gram in the query.
+	 * @param s
+	 *            the sequence of n-grams.
+	 * @param ids
+	 *            the identifiers of the n-grams in {@code s}.
+	 * @param scores
+	 *            the buffer where scores are written.
+	 */
+	void getScores(int i, ArrayList<NGram> s, int[] ids, double[] scores) {
+		AtomicLongArray row = this.getRow(i);
+		for (int j = 0; j < s.size(); j++) {
+			int id = ids[j];
+			double score = QueryProfile.getStoredScore(row, id);
+			if (Double.isNaN(score)) {
+				score = this.getScore(i, id, s.get(j));
+				row = this.getRow(i);
+			}
+			scores[j] = score;
+		}
+	}
+
+	/**
+	 * Computes the substitution score between a query n-gram and another
+	 * n-gram, and stores it in the profile.
+	 *
+	 * @param i
+	 *            the index of the n-gram in the query.
+	 * @param id
+	 *            the identifier of the other n-gram.
+	 * @param g
+	 *            the other n-gram.
+	 * @return the score.
+	 */
+	double getScore(int i, int id, NGram g) {
+		double score = this.comparer.compare(this.query.get(i), g);
+		if (this.maxBytes == 0)
+			return score;
+		int r = this.rowIndex[i];
+		AtomicLongArray row = this.rows.get(r);
+		if (row == null || id >= row.length()) {
+			synchronized (this.rowLocks[r]) {
+				row = this.rows.get(r);
+				int length = row == null ? 0 : row.length();
+				if (id >= length) {
+					int newLength = Math.max(id + 1, Math.max(2 * length, QueryProfile.MIN_ROW_LENGTH));
+					long grown = 8L * (newLength - length);
+					if (this.bytes.addAndGet(grown) > this.maxBytes) {
+						this.bytes.addAndGet(-grown);
+						return score;
+					}
+					long[] values = new long[newLength];
+					for (int k = 0; k < length; k++)
+						values[k] = row.get(k);
+					Arrays.fill(values, length, newLength, QueryProfile.MISSING);
+					row = new AtomicLongArray(values);
+					this.rows.set(r, row);
+				}
+			}
+		}
+		// a release store suffices, because readers load scores atomically
+		row.lazySet(id, Double.doubleToRawLongBits(score));
+		return score;
+	}
+}
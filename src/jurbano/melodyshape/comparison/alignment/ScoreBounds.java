@@ -0,0 +1,141 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.TopKThreshold;
+
+/**
+ * Upper bounds of alignment scores, used by {@link MelodyAligner}s to abandon
+ * alignments that cannot reach a {@link TopKThreshold}.
+ * <p>
+ * Moving from one row of the alignment matrix to the next adds either a
+ * substitution or a deletion score of the n-gram in the new row, and moving
+ * along a row adds an insertion score. Therefore, no cell below row
+ * {@code i} can score more than the best cell in row {@code i}, plus the
+ * positive part of the largest substitution or deletion score of every
+ * remaining row, plus the positive insertion scores of the second sequence.
+ * <p>
+ * Also, every row is entered exactly once, with either a substitution or a
+ * deletion, and at most {@code min(rows, columns)} rows are entered with a
+ * substitution. Therefore, no cell can score more than the
+ * positive deletion scores of all rows, plus what the
+ * {@code min(rows, columns)} rows with the largest positive difference
+ * between substitution and deletion scores would gain with a substitution,
+ * plus the positive insertion scores of the second sequence. This bound only
+ * depends on the length and the insertion scores of the second sequence.
+ *
+ * @author Julián Urbano
+ * @see QueryProfile#getMaxScore(int)
+ */
+class ScoreBounds
+{
+	private ScoreBounds() {
+	}
+
+	/**
+	 * Writes the upper bounds of the score gained after each row of the
+	 * alignment matrix, that is, {@code bounds[i]} bounds the score gained
+	 * from row {@code i} to the last one.
+	 *
+	 * @param profile
+	 *            the profile of the first sequence.
+	 * @param deletions
+	 *            the deletion scores of the first sequence.
+	 * @param bounds
+	 *            the buffer where bounds are written.
+	 */
+	static void getRowBounds(QueryProfile profile, double[] deletions, double[] bounds) {
+		int rows = profile.getQuery().size();
+		bounds[rows] = 0;
+		for (int i = rows - 1; i >= 0; i--)
+			bounds[i] = bounds[i + 1] + Math.max(0, Math.max(profile.getMaxScore(i), deletions[i]));
+	}
+
+	/**
+	 * Writes the upper bounds of the alignment scores between a query and a
+	 * block of sequences, without aligning them.
+	 *
+	 * @param gaps
+	 *            the gap scores of the aligner.
+	 * @param profile
+	 *            the profile of the first sequence.
+	 * @param s2s
+	 *            the block of second sequences.
+	 * @param normalize
+	 *            whether scores are divided by the length of the shortest
+	 *            sequence.
+	 * @param bounds
+	 *            the array where the bound of each sequence is written.
+	 */
+	static void getUpperBounds(GapProfile gaps, QueryProfile profile, List<ArrayList<NGram>> s2s, boolean normalize,
+			double[] bounds) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		int rows = s1.size();
+		double[] deletions = new double[rows];
+		gaps.getDeletions(s1, deletions);
+		// lengthBounds[k] bounds the score of alignments with k substitutions
+		double[] gains = new double[rows];
+		double base = 0;
+		for (int i = 0; i < rows; i++) {
+			double deletion = Math.max(0, deletions[i]);
+			base += deletion;
+			gains[i] = Math.max(0, profile.getMaxScore(i) - deletion);
+		}
+		Arrays.sort(gains);
+		double[] lengthBounds = new double[rows + 1];
+		lengthBounds[0] = base;
+		for (int k = 1; k <= rows; k++)
+			lengthBounds[k] = lengthBounds[k - 1] + gains[rows - k];
+
+		for (int k = 0; k < s2s.size(); k++) {
+			ArrayList<NGram> s2 = s2s.get(k);
+			AlignmentBuffers buffers = AlignmentBuffers.get(1, s2.size() + 1);
+			gaps.getInsertions(s2, buffers.insertions);
+			int length = Math.min(rows, s2.size());
+			double bound = lengthBounds[length] + ScoreBounds.getInsertionBound(buffers.insertions, s2.size());
+			bounds[k] = normalize ? bound / length : bound;
+		}
+	}
+
+	/**
+	 * Computes the sum of the positive insertion scores of the second
+	 * sequence.
+	 *
+	 * @param insertions
+	 *            the insertion scores.
+	 * @param length
+	 *            the length of the second sequence.
+	 * @return the sum.
+	 */
+	static double getInsertionBound(double[] insertions, int length) {
+		double bound = 0;
+		for (int j = 0; j < length; j++)
+			if (insertions[j] > 0)
+				bound += insertions[j];
+		return bound;
+	}
+
+	/**
+	 * Gets the best score in a row of the alignment matrix, including its
+	 * first column.
+	 *
+	 * @param row
+	 *            the row.
+	 * @param length
+	 *            the length of the second sequence.
+	 * @return the best score.
+	 */
+	static double getRowMax(double[] row, int length) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int j = 0; j <= length; j++)
+			if (max < row[j])
+				max = row[j];
+		return max;
+	}
+}
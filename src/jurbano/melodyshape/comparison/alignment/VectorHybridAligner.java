@@ -0,0 +1,121 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.TopKThreshold;
+
+/**
+ * A {@link HybridAligner} that computes the alignment matrix with the Java
+ * Vector API. Scores are identical to those of {@link HybridAligner}.
+ * <p>
+ * This class requires the {@code jdk.incubator.vector} module; use
+ * {@link AlignerFactory#newHybridAligner(NGramComparer)} to fall back to
+ * {@link HybridAligner} when it is not available.
+ *
+ * @author Julián Urbano
+ * @see VectorRows
+ */
+public class VectorHybridAligner extends HybridAligner
+{
+	/**
+	 * Constructs a new {@code VectorHybridAligner} with the specified
+	 * {@link NGramComparer}.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 */
+	public VectorHybridAligner(NGramComparer comparer) {
+		super(comparer);
+	}
+
+	/**
+	 * Constructs a new {@code VectorHybridAligner} with the specified
+	 * {@link NGramComparer} and limits on the cells of the alignment matrix.
+	 * Limited alignments are not vectorized.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param limits
+	 *            the band and X-drop limits.
+	 */
+	public VectorHybridAligner(NGramComparer comparer, AlignmentLimits limits) {
+		super(comparer, limits);
+	}
+
+	/**
+	 * Constructs a new {@code VectorHybridAligner} with the specified
+	 * {@link NGramComparer}, limits on the cells of the alignment matrix, and
+	 * arithmetic precision. Limited or reduced-precision alignments are not
+	 * vectorized.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param limits
+	 *            the band and X-drop limits.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 */
+	public VectorHybridAligner(NGramComparer comparer, AlignmentLimits limits, AlignmentPrecision precision) {
+		super(comparer, limits, precision);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected double align(QueryProfile profile, ArrayList<NGram> s2, TopKThreshold threshold, double[] deletions,
+			double[] bounds) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		if (!this.limits.isUnlimited() || this.precision != AlignmentPrecision.DOUBLE
+				|| WavefrontAlignment.isLarge(s1.size(), s2.size()))
+			return super.align(profile, s2, threshold, deletions, bounds);
+		AlignmentBuffers buffers = AlignmentBuffers.get(s1.size() + 1, s2.size() + 1);
+		double[] column = buffers.column;
+		double[] previous = buffers.previous;
+		double[] current = buffers.current;
+
+		double[] insertions = buffers.insertions;
+		this.gaps.getInsertions(s2, insertions);
+		int[] ids = buffers.ids;
+		profile.getIds(s2, ids);
+		double insertionBound = 0;
+		if (threshold != null) {
+			insertionBound = ScoreBounds.getInsertionBound(insertions, s2.size());
+		}
+		double[] substitutions = buffers.substitutions;
+
+		column[0] = 0;
+		for (int i = 1; i <= s1.size(); i++)
+			column[i] = column[i - 1] + deletions[i - 1];
+		previous[0] = 0;
+		for (int j = 1; j <= s2.size(); j++)
+			previous[j] = previous[j - 1] + insertions[j - 1];
+
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 1; i <= s1.size(); i++) {
+			profile.getScores(i - 1, s2, ids, substitutions);
+			VectorRows.computeCandidates(previous, substitutions, deletions[i - 1], current, s2.size());
+			current[0] = column[i];
+			for (int j = 1; j <= s2.size(); j++) {
+				current[j] = Math.max(current[j], current[j - 1] + insertions[j - 1]);
+				if (max < current[j])
+					max = current[j];
+			}
+			double[] row = previous;
+			previous = current;
+			current = row;
+			if (threshold != null) {
+				double bound = Math.max(max, ScoreBounds.getRowMax(previous, s2.size()) + bounds[i] + insertionBound);
+				if (threshold.canPrune(bound / Math.min(s1.size(), s2.size())))
+					return Double.NEGATIVE_INFINITY;
+			}
+		}
+
+		return max / Math.min(s1.size(), s2.size());
+	}
+}
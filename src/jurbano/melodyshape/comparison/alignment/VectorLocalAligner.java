@@ -0,0 +1,98 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.TopKThreshold;
+
+/**
+ * A {@link LocalAligner} that computes the alignment matrix with the Java
+ * Vector API. Scores are identical to those of {@link LocalAligner}.
+ * <p>
+ * This class requires the {@code jdk.incubator.vector} module; use
+ * {@link AlignerFactory#newLocalAligner(NGramComparer)} to fall back to
+ * {@link LocalAligner} when it is not available.
+ *
+ * @author Julián Urbano
+ * @see VectorRows
+ */
+public class VectorLocalAligner extends LocalAligner
+{
+	/**
+	 * Constructs a new {@code VectorLocalAligner} with the specified
+	 * {@link NGramComparer}.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 */
+	public VectorLocalAligner(NGramComparer comparer) {
+		super(comparer);
+	}
+
+	/**
+	 * Constructs a new {@code VectorLocalAligner} with the specified
+	 * {@link NGramComparer} and arithmetic precision. Reduced-precision
+	 * alignments are not vectorized.
+	 *
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 * @param precision
+	 *            the precision of the alignment matrix.
+	 */
+	public VectorLocalAligner(NGramComparer comparer, AlignmentPrecision precision) {
+		super(comparer, precision);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected double align(QueryProfile profile, ArrayList<NGram> s2, TopKThreshold threshold, double[] deletions,
+			double[] bounds) {
+		ArrayList<NGram> s1 = profile.getQuery();
+		if (this.precision != AlignmentPrecision.DOUBLE || WavefrontAlignment.isLarge(s1.size(), s2.size()))
+			return super.align(profile, s2, threshold, deletions, bounds);
+		AlignmentBuffers buffers = AlignmentBuffers.get(s1.size() + 1, s2.size() + 1);
+		double[] previous = buffers.previous;
+		double[] current = buffers.current;
+
+		double[] insertions = buffers.insertions;
+		this.gaps.getInsertions(s2, insertions);
+		int[] ids = buffers.ids;
+		profile.getIds(s2, ids);
+		double insertionBound = 0;
+		if (threshold != null) {
+			insertionBound = ScoreBounds.getInsertionBound(insertions, s2.size());
+		}
+		double[] substitutions = buffers.substitutions;
+
+		for (int j = 0; j <= s2.size(); j++)
+			previous[j] = 0;
+		current[0] = 0;
+
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 1; i <= s1.size(); i++) {
+			profile.getScores(i - 1, s2, ids, substitutions);
+			VectorRows.computeCandidates(previous, substitutions, deletions[i - 1], current, s2.size());
+			for (int j = 1; j <= s2.size(); j++) {
+				current[j] = Math.max(0, Math.max(current[j], current[j - 1] + insertions[j - 1]));
+				if (max < current[j])
+					max = current[j];
+			}
+			double[] row = previous;
+			previous = current;
+			current = row;
+			if (threshold != null) {
+				double bound = Math.max(max, ScoreBounds.getRowMax(previous, s2.size()) + bounds[i] + insertionBound);
+				if (threshold.canPrune(bound / Math.min(s1.size(), s2.size())))
+					return Double.NEGATIVE_INFINITY;
+			}
+		}
+
+		return max / Math.min(s1.size(), s2.size());
+	}
+}
@@ -0,0 +1,65 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vectorized part of the row recurrence shared by {@link MelodyAligner}s
+ * that use the Java Vector API.
+ * <p>
+ * A cell of the alignment matrix is the maximum of three candidates: the
+ * cell above plus a deletion, the cell diagonally above plus a substitution,
+ * and the cell to the left plus an insertion. The first two only depend on
+ * the previous row, so they are computed for several cells at once; the
+ * third is a dependency along the row, which is resolved afterwards with a
+ * scalar scan. Maxima are exact and every addition has the same operands as
+ * in the scalar aligners, so scores are identical to theirs.
+ * <p>
+ * This class requires the {@code jdk.incubator.vector} module, and it is only
+ * compiled with the {@code vector} profile of the Maven build.
+ *
+ * @author Julián Urbano
+ * @see AlignerFactory
+ */
+final class VectorRows
+{
+	static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private VectorRows() {
+	}
+
+	/**
+	 * Computes the deletion and substitution candidates of a row of the
+	 * alignment matrix, that is,
+	 * {@code current[j] = max(previous[j] + deletion, previous[j-1] + substitutions[j-1])}
+	 * for {@code j} from 1 to {@code length}.
+	 *
+	 * @param previous
+	 *            the previous row of the matrix.
+	 * @param substitutions
+	 *            the substitution scores of the row.
+	 * @param deletion
+	 *            the deletion score of the row.
+	 * @param current
+	 *            the row where candidates are written.
+	 * @param length
+	 *            the number of columns, excluding the first one.
+	 */
+	static void computeCandidates(double[] previous, double[] substitutions, double deletion, double[] current,
+			int length) {
+		int k = 0;
+		int bound = VectorRows.SPECIES.loopBound(length);
+		for (; k < bound; k += VectorRows.SPECIES.length()) {
+			DoubleVector left = DoubleVector.fromArray(VectorRows.SPECIES, previous, k + 1).add(deletion);
+			DoubleVector diag = DoubleVector.fromArray(VectorRows.SPECIES, previous, k)
+					.add(DoubleVector.fromArray(VectorRows.SPECIES, substitutions, k));
+			left.lanewise(VectorOperators.MAX, diag).intoArray(current, k + 1);
+		}
+		for (; k < length; k++)
+			current[k + 1] = Math.max(previous[k + 1] + deletion, previous[k] + substitutions[k]);
+	}
+}
@@ -0,0 +1,256 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.alignment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jurbano.melodyshape.comparison.NGram;
+
+/**
+ * Computes one large alignment matrix in parallel, for {@link MelodyAligner}s
+ * aligning very long sequences.
+ * <p>
+ * The matrix is split in square tiles. A tile only depends on the tile above,
+ * the tile to the left and the one diagonally above, so all tiles in the same
+ * anti-diagonal are computed in parallel, one anti-diagonal after the other.
+ * Each tile keeps two rows of its own, and publishes its last row, last
+ * column and last cell for the tiles that depend on it. There is only one row
+ * and one column of borders, because every tile overwrites the borders of the
+ * tile above and the one to the left once they are no longer needed, so
+ * memory is linear in the size of the sequences, plus two values per tile.
+ * Every cell is computed with the
+ * same operations as in the sequential aligners, so scores are identical.
+ * <p>
+ * Aligners use this class automatically when both sequences have at least
+ * {@link #MIN_SIZE} n-grams.
+ *
+ * @author Julián Urbano
+ * @see HybridAligner
+ * @see LocalAligner
+ * @see GlobalAligner
+ */
+class WavefrontAlignment
+{
+	/**
+	 * The number of rows and columns of a tile.
+	 */
+	static final int TILE_SIZE = 256;
+	/**
+	 * The minimum length of both sequences to align them in parallel.
+	 */
+	static final int MIN_SIZE = 2048;
+	/**
+	 * The pool of threads that compute tiles, shared by all alignments.
+	 */
+	static final ForkJoinPool POOL = new ForkJoinPool();
+
+	protected final QueryProfile profile;
+	protected final ArrayList<NGram> s2;
+	protected final boolean local;
+	protected final int rows;
+	protected final int columns;
+	protected final int tileRows;
+	protected final int tileColumns;
+
+	protected final double[] deletions;
+	protected final double[] insertions;
+	protected final int[] ids;
+	/**
+	 * The last row computed above each column of tiles, initially the first
+	 * row of the matrix.
+	 */
+	protected final double[] rowBorder;
+	/**
+	 * The last column computed left of each row of tiles, initially the first
+	 * column of the matrix.
+	 */
+	protected final double[] columnBorder;
+	/**
+	 * The cells at the corners of tiles, with {@code tileColumns+1} corners
+	 * per row of tiles. The corner of a tile is the cell above and to the left
+	 * of its first cell, so it is the last cell of the tile diagonally above.
+	 */
+	protected final double[] corners;
+	protected final double[] tileMax;
+
+	/**
+	 * Checks whether two sequences are long enough to align them in parallel.
+	 *
+	 * @param rows
+	 *            the length of the first sequence.
+	 * @param columns
+	 *            the length of the second sequence.
+	 * @return {@code true} if both sequences have at least {@link #MIN_SIZE}
+	 *         n-grams.
+	 */
+	static boolean isLarge(int rows, int columns) {
+		return rows >= WavefrontAlignment.MIN_SIZE && columns >= WavefrontAlignment.MIN_SIZE;
+	}
+
+	/**
+	 * Prepares the alignment between the query of a {@link QueryProfile} and
+	 * another sequence of n-grams.
+	 *
+	 * @param gaps
+	 *            the gap scores of the aligner.
+	 * @param profile
+	 *            the query profile.
+	 * @param s2
+	 *            the second sequence of n-grams.
+	 * @param local
+	 *            whether to compute a local alignment, where the first row and
+	 *            column are 0 and no cell is negative, rather than initialize
+	 *            them with the cumulative gap scores.
+	 */
+	WavefrontAlignment(GapProfile gaps, QueryProfile profile, ArrayList<NGram> s2, boolean local) {
+		this.profile = profile;
+		this.s2 = s2;
+		this.local = local;
+		this.rows = profile.getQuery().size();
+		this.columns = s2.size();
+		this.tileRows = (this.rows + WavefrontAlignment.TILE_SIZE - 1) / WavefrontAlignment.TILE_SIZE;
+		this.tileColumns = (this.columns + WavefrontAlignment.TILE_SIZE - 1) / WavefrontAlignment.TILE_SIZE;
+
+		// worker threads cannot use the buffers of this thread
+		this.deletions = new double[this.rows];
+		this.insertions = new double[this.columns];
+		this.ids = new int[this.columns];
+		gaps.getDeletions(profile.getQuery(), this.deletions);
+		gaps.getInsertions(s2, this.insertions);
+		profile.getIds(s2, this.ids);
+
+		this.rowBorder = new double[this.columns + 1];
+		this.columnBorder = new double[this.rows + 1];
+		this.corners = new double[(this.tileRows + 1) * (this.tileColumns + 1)];
+		this.tileMax = new double[this.tileRows * this.tileColumns];
+		if (!local) {
+			for (int j = 1; j <= this.columns; j++)
+				this.rowBorder[j] = this.rowBorder[j - 1] + this.insertions[j - 1];
+			for (int i = 1; i <= this.rows; i++)
+				this.columnBorder[i] = this.columnBorder[i - 1] + this.deletions[i - 1];
+		}
+		// the corners in the first row and column of the matrix
+		for (int c = 0; c <= this.tileColumns; c++)
+			this.corners[c] = this.rowBorder[Math.min(c * WavefrontAlignment.TILE_SIZE, this.columns)];
+		for (int r = 0; r <= this.tileRows; r++)
+			this.corners[r * (this.tileColumns + 1)] = this.columnBorder[Math.min(r * WavefrontAlignment.TILE_SIZE,
+					this.rows)];
+	}
+
+	/**
+	 * Computes the alignment matrix, one anti-diagonal of tiles at a time.
+	 *
+	 * @param global
+	 *            whether to return the score of the last cell rather than the
+	 *            maximum score.
+	 * @return the maximum score in the matrix, excluding the first row and
+	 *         column, or the score of the last cell if {@code global}.
+	 * @throws RuntimeException
+	 *             if a tile fails or the thread is interrupted.
+	 */
+	double align(boolean global) {
+		for (int diagonal = 0; diagonal < this.tileRows + this.tileColumns - 1; diagonal++) {
+			List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+			int first = Math.max(0, diagonal - this.tileColumns + 1);
+			int last = Math.min(diagonal, this.tileRows - 1);
+			for (int tileRow = first; tileRow <= last; tileRow++)
+				tiles.add(new Tile(tileRow, diagonal - tileRow));
+			try {
+				for (Future<Void> future : WavefrontAlignment.POOL.invokeAll(tiles))
+					future.get();
+			} catch (InterruptedException | ExecutionException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		if (global)
+			return this.rowBorder[this.columns];
+		double max = Double.NEGATIVE_INFINITY;
+		for (double m : this.tileMax)
+			if (max < m)
+				max = m;
+		return max;
+	}
+
+	/**
+	 * Computes one tile of the matrix.
+	 *
+	 * @param tileRow
+	 *            the row of the tile.
+	 * @param tileColumn
+	 *            the column of the tile.
+	 */
+	void computeTile(int tileRow, int tileColumn) {
+		int firstRow = tileRow * WavefrontAlignment.TILE_SIZE + 1;
+		int lastRow = Math.min(firstRow + WavefrontAlignment.TILE_SIZE - 1, this.rows);
+		int firstColumn = tileColumn * WavefrontAlignment.TILE_SIZE + 1;
+		int lastColumn = Math.min(firstColumn + WavefrontAlignment.TILE_SIZE - 1, this.columns);
+		int width = lastColumn - firstColumn + 1;
+
+		// the borders of this tile are only used by this tile, and then
+		// overwritten with those of the tiles below and to the right
+		double[] previous = new double[width + 1];
+		double[] current = new double[width + 1];
+		previous[0] = this.corners[tileRow * (this.tileColumns + 1) + tileColumn];
+		System.arraycopy(this.rowBorder, firstColumn, previous, 1, width);
+
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = firstRow; i <= lastRow; i++) {
+			AtomicLongArray scores = this.profile.getRow(i - 1);
+			double deletion = this.deletions[i - 1];
+			current[0] = this.columnBorder[i];
+			for (int k = 1; k <= width; k++) {
+				int j = firstColumn + k - 1;
+				double left = previous[k] + deletion;
+				double up = current[k - 1] + this.insertions[j - 1];
+				int id = this.ids[j - 1];
+				double substitution = QueryProfile.getStoredScore(scores, id);
+				if (Double.isNaN(substitution)) {
+					substitution = this.profile.getScore(i - 1, id, this.s2.get(j - 1));
+					scores = this.profile.getRow(i - 1);
+				}
+				double diag = previous[k - 1] + substitution;
+				if (this.local)
+					current[k] = Math.max(0, Math.max(left, Math.max(up, diag)));
+				else
+					current[k] = Math.max(left, Math.max(up, diag));
+				if (max < current[k])
+					max = current[k];
+			}
+			this.columnBorder[i] = current[width];
+			double[] row = previous;
+			previous = current;
+			current = row;
+		}
+		System.arraycopy(previous, 1, this.rowBorder, firstColumn, width);
+		this.corners[(tileRow + 1) * (this.tileColumns + 1) + tileColumn + 1] = previous[width];
+		this.tileMax[tileRow * this.tileColumns + tileColumn] = max;
+	}
+
+	/**
+	 * A task that computes one tile of the matrix.
+	 */
+	protected class Tile implements Callable<Void>
+	{
+		final int tileRow;
+		final int tileColumn;
+
+		Tile(int tileRow, int tileColumn) {
+			this.tileRow = tileRow;
+			this.tileColumn = tileColumn;
+		}
+
+		@Override
+		public Void call() {
+			WavefrontAlignment.this.computeTile(this.tileRow, this.tileColumn);
+			return null;
+		}
+	}
+}
@@ -1,86 +1,135 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison.bspline;
-
-import java.util.ArrayList;
-
-import jurbano.melodyshape.comparison.NGram;
-import jurbano.melodyshape.comparison.NGramComparer;
-
-import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
-
-/**
- * A similarity function between two {@link NGram} objects that interpolates
- * pitch sequences using a Uniform B-Spline and then computes the area between
- * the first derivatives of the two splines.
- * 
- * @author Julián Urbano
- * @see BSplineTimeNGramComparer
- * @see UniformBSpline
- * @see NGramComparer
- */
-public class BSplinePitchNGramComparer implements NGramComparer
-{
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "BSplinePitch"}.
-	 */
-	@Override
-	public String getName() {
-		return "BSplinePitch";
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return 0 if both {@link NGram}s are equivalent or the area between the
-	 *         first derivatives of their corresponding Uniform B-Splines.
-	 */
-	@Override
-	public double compare(NGram g1, NGram g2) {
-		if (g1 == null)
-			g1 = g2.getNullSpan();
-		if (g2 == null)
-			g2 = g1.getNullSpan();
-		if (g1.size() < 2 || g1.size() > UniformBSpline.BASIS_FUNCTIONS.length)
-			throw new IllegalArgumentException(this.getName() + " only supports n-grams with 2 to " + UniformBSpline.BASIS_FUNCTIONS.length
-					+ " notes.");
-		if (this.getNGramId(g1).equals(this.getNGramId(g2)))
-			return 0;
-		
-		PolynomialFunction p1p = new PolynomialFunction(new double[] { 0 });
-		PolynomialFunction p2p = new PolynomialFunction(new double[] { 0 });
-		for (int i = 1; i < g1.size(); i++) {
-			PolynomialFunction basis = UniformBSpline.BASIS_FUNCTIONS[g1.size() - 1][i - 1];
-			p1p = p1p.add(basis.multiply(new PolynomialFunction(new double[] { g1.get(g1.size() - i).getPitch() - g1.get(0).getPitch() })));
-			p2p = p2p.add(basis.multiply(new PolynomialFunction(new double[] { g2.get(g2.size() - i).getPitch() - g2.get(0).getPitch() })));
-		}
-		PolynomialFunction pp = p1p.polynomialDerivative().subtract(p2p.polynomialDerivative());
-		
-		Laguerre laguerre = new Laguerre();
-		ArrayList<Double> realRoots = laguerre.findRoots(pp);
-		return -laguerre.computeAreaBetweenDerivatives(p1p, p2p, realRoots);
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return a {@link String} with the format
-	 *         <code>{p2-p1, p3-p1, ..., p(n-1)-p1}</code>, where {@code pi}
-	 *         corresponds to the pitch of the i-th note inside the n-gram. The
-	 *         {@link String} {@code "null"} is returned if the n-gram is
-	 *         {@code null}.
-	 */
-	@Override
-	public String getNGramId(NGram g) {
-		if (g == null)
-			return "null";
-		
-		String res = "{";
-		for (int i = 1; i < g.size(); i++)
-			res += (g.get(i).getPitch() - g.get(0).getPitch()) + " ";
-		return res.trim() + "}";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.bspline;
+
+
+import jurbano.melodyshape.comparison.BoundedNGramComparer;
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+
+/**
+ * A similarity function between two {@link NGram} objects that interpolates
+ * pitch sequences using a Uniform B-Spline and then computes the area between
+ * the first derivatives of the two splines.
+ * 
+ * @author Julián Urbano
+ * @see BSplineTimeNGramComparer
+ * @see UniformBSpline
+ * @see NGramComparer
+ */
+public class BSplinePitchNGramComparer implements BoundedNGramComparer
+{
+	static final int SPLINE_FEATURE = NGram.newFeatureSlot();
+	static final ThreadLocal<double[][]> BUFFERS = new ThreadLocal<double[][]>() {
+		@Override
+		protected double[][] initialValue() {
+			return new double[][] { new double[RootFinder.MAX_DEGREE + 1], new double[RootFinder.MAX_DEGREE + 2],
+					new double[RootFinder.SCRATCH_LENGTH] };
+		}
+	};
+	static final SplinePolynomial NULL_SPLINE = new SplinePolynomial(0, new double[0]);
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "BSplinePitch"}.
+	 */
+	@Override
+	public String getName() {
+		return "BSplinePitch";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The spline of each {@link NGram} is computed only the first time the
+	 * n-gram is compared, and then stored as one of its features.
+	 * 
+	 * @return 0 if both {@link NGram}s are equivalent or the area between the
+	 *         first derivatives of their corresponding Uniform B-Splines.
+	 */
+	@Override
+	public double compare(NGram g1, NGram g2) {
+		int size = (g1 != null ? g1 : g2).size();
+		if (size < 2 || size > UniformBSpline.BASIS_FUNCTIONS.length)
+			throw new IllegalArgumentException(this.getName() + " only supports n-grams with 2 to " + UniformBSpline.BASIS_FUNCTIONS.length
+					+ " notes.");
+		if (BSplinePitchNGramComparer.areEquivalent(g1, g2))
+			return 0;
+		
+		// the null span of an n-gram has all relative pitches set to 0
+		SplinePolynomial p1p = g1 == null ? BSplinePitchNGramComparer.NULL_SPLINE : this.getSpline(g1);
+		SplinePolynomial p2p = g2 == null ? BSplinePitchNGramComparer.NULL_SPLINE : this.getSpline(g2);
+		double[][] buffers = BSplinePitchNGramComparer.BUFFERS.get();
+		int length = SplinePolynomial.subtractDerivatives(p1p, p2p, buffers[0]);
+		int count = RootFinder.findRoots(buffers[0], length, buffers[1], buffers[2]);
+		return -RootFinder.computeAreaBetweenDerivatives(p1p, p2p, buffers[1], count);
+	}
+	
+	/**
+	 * Gets the Uniform B-Spline that interpolates the relative pitches of an
+	 * {@link NGram}, computing it if not already stored in the n-gram.
+	 * 
+	 * @param g
+	 *            the n-gram.
+	 * @return the spline polynomial.
+	 */
+	protected SplinePolynomial getSpline(NGram g) {
+		SplinePolynomial p = (SplinePolynomial) g.getFeature(BSplinePitchNGramComparer.SPLINE_FEATURE);
+		if (p == null) {
+			double[] weights = new double[g.size() - 1];
+			for (int i = 1; i < g.size(); i++)
+				weights[i - 1] = g.getRelativePitch(g.size() - i);
+			p = new SplinePolynomial(g.size() - 1, weights);
+			g.setFeature(BSplinePitchNGramComparer.SPLINE_FEATURE, p);
+		}
+		return p;
+	}
+	
+	/**
+	 * Checks whether two {@link NGram}s have the same relative pitches, that
+	 * is, the same identifier. A {@code null} n-gram has all relative pitches
+	 * set to 0.
+	 */
+	static boolean areEquivalent(NGram g1, NGram g2) {
+		NGram g = g1 != null ? g1 : g2;
+		for (int i = 1; i < g.size(); i++) {
+			int rel1 = g1 == null ? 0 : g1.getRelativePitch(i);
+			int rel2 = g2 == null ? 0 : g2.getRelativePitch(i);
+			if (rel1 != rel2)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return a {@link String} with the format
+	 *         <code>{p2-p1, p3-p1, ..., p(n-1)-p1}</code>, where {@code pi}
+	 *         corresponds to the pitch of the i-th note inside the n-gram. The
+	 *         {@link String} {@code "null"} is returned if the n-gram is
+	 *         {@code null}.
+	 */
+	@Override
+	public String getNGramId(NGram g) {
+		if (g == null)
+			return "null";
+		
+		String res = "{";
+		for (int i = 1; i < g.size(); i++)
+			res += (g.get(i).getPitch() - g.get(0).getPitch()) + " ";
+		return res.trim() + "}";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return 0.
+	 */
+	@Override
+	public double getMaxScore(NGram g) {
+		return 0;
+	}
+}
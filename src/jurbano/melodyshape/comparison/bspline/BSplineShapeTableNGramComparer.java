@@ -0,0 +1,203 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.bspline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.model.Note;
+
+/**
+ * A {@link BSplineShapeNGramComparer} that answers comparisons with a
+ * precomputed table of scores.
+ * <p>
+ * The shape of the spline of a 3-gram is determined by the signs of its
+ * derivative at 0 and 1, which are the signs of the two pitch intervals of the
+ * n-gram. There are only 9 different shapes, so all possible similarity scores
+ * are computed once, with the underlying {@link BSplineShapeNGramComparer},
+ * and stored in a 9x9 table. A comparison then reduces to computing the shape
+ * of both n-grams and looking up the table, with the exception of equivalent
+ * n-grams, whose score is always 0.
+ * <p>
+ * The table can also be saved to and loaded from a file.
+ *
+ * @author Julián Urbano
+ * @see BSplineShapeNGramComparer
+ * @see NGramComparer
+ */
+public class BSplineShapeTableNGramComparer extends BSplineShapeNGramComparer
+{
+	static final int FILE_VERSION = 1;
+	static final int SHAPES = 9;
+
+	protected double[] table;
+
+	/**
+	 * Constructs a {@code BSplineShapeTableNGramComparer} with the default
+	 * maximum, medium and minimum penalizations (8, 1 and 0.5).
+	 */
+	public BSplineShapeTableNGramComparer() {
+		this(BSplineShapeNGramComparer.DEFAULT_MAX_PENALIZATION, BSplineShapeNGramComparer.DEFAULT_AVG_PENALIZATION,
+				BSplineShapeNGramComparer.DEFAULT_MIN_PENALIZATION);
+	}
+
+	/**
+	 * Constructs a {@code BSplineShapeTableNGramComparer} with the specified
+	 * maximum, medium and minimum penalizations. The table of scores is
+	 * computed here.
+	 *
+	 * @param dMax
+	 *            the maximum penalization.
+	 * @param dMed
+	 *            the medium penalization.
+	 * @param dMin
+	 *            the minimum penalization.
+	 */
+	public BSplineShapeTableNGramComparer(double dMax, double dMed, double dMin) {
+		super(dMax, dMed, dMin);
+		this.table = new double[BSplineShapeTableNGramComparer.SHAPES * BSplineShapeTableNGramComparer.SHAPES];
+		for (int shape1 = 0; shape1 < BSplineShapeTableNGramComparer.SHAPES; shape1++) {
+			for (int shape2 = 0; shape2 < BSplineShapeTableNGramComparer.SHAPES; shape2++) {
+				// use intervals of different size in each side so that the
+				// n-grams are not equivalent even if they have the same shape
+				NGram g1 = BSplineShapeTableNGramComparer.getShapeNGram(shape1, 1);
+				NGram g2 = BSplineShapeTableNGramComparer.getShapeNGram(shape2, 2);
+				this.table[shape1 * BSplineShapeTableNGramComparer.SHAPES + shape2] = super.compare(g1, g2);
+			}
+		}
+	}
+
+	/**
+	 * Constructs a {@code BSplineShapeTableNGramComparer} reading the table of
+	 * scores from a file.
+	 *
+	 * @param tablePath
+	 *            the path to a file containing the table of scores.
+	 * @throws IOException
+	 *             if an I/O or format error occurs.
+	 * @see BSplineShapeTableNGramComparer#saveTable(String)
+	 */
+	public BSplineShapeTableNGramComparer(String tablePath) throws IOException {
+		DataInputStream dataStream = null;
+		try {
+			dataStream = new DataInputStream(new FileInputStream(tablePath));
+			if (dataStream.readInt() != BSplineShapeTableNGramComparer.FILE_VERSION
+					|| dataStream.readInt() != BSplineShapeTableNGramComparer.SHAPES)
+				throw new IOException("Incorrect format in table file " + tablePath);
+			this.dMax = dataStream.readDouble();
+			this.dMed = dataStream.readDouble();
+			this.dMin = dataStream.readDouble();
+			this.table = new double[BSplineShapeTableNGramComparer.SHAPES * BSplineShapeTableNGramComparer.SHAPES];
+			for (int i = 0; i < this.table.length; i++)
+				this.table[i] = dataStream.readDouble();
+		} finally {
+			if (dataStream != null)
+				dataStream.close();
+		}
+	}
+
+	/**
+	 * Saves the table of scores of this {@code BSplineShapeTableNGramComparer}
+	 * to the specified file.
+	 *
+	 * @param path
+	 *            the path of the file to save the table.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public void saveTable(String path) throws IOException {
+		DataOutputStream dataStream = null;
+		try {
+			dataStream = new DataOutputStream(new FileOutputStream(path));
+			dataStream.writeInt(BSplineShapeTableNGramComparer.FILE_VERSION);
+			dataStream.writeInt(BSplineShapeTableNGramComparer.SHAPES);
+			dataStream.writeDouble(this.dMax);
+			dataStream.writeDouble(this.dMed);
+			dataStream.writeDouble(this.dMin);
+			for (double score : this.table)
+				dataStream.writeDouble(score);
+		} finally {
+			if (dataStream != null)
+				dataStream.close();
+		}
+	}
+
+	/**
+	 * Gets a 3-gram with the specified shape.
+	 *
+	 * @param shape
+	 *            the index of the shape.
+	 * @param step
+	 *            the absolute size of the non-zero intervals.
+	 * @return the n-gram.
+	 */
+	static NGram getShapeNGram(int shape, int step) {
+		int pitch1 = 60 + step * (shape / 3 - 1);
+		int pitch2 = pitch1 + step * (shape % 3 - 1);
+		NGram g = new NGram();
+		g.add(new Note((byte) 60, 0, 1, 0));
+		g.add(new Note((byte) pitch1, 1, 1, 0));
+		g.add(new Note((byte) pitch2, 2, 1, 0));
+		return g;
+	}
+
+	/**
+	 * Gets the index of the shape of a 3-gram, given the pitch of its second
+	 * and third notes relative to the first one. The shape is defined by the
+	 * signs of the spline's derivative at 0 and 1, which are the signs of the
+	 * two intervals.
+	 *
+	 * @param relPitch1
+	 *            the pitch of the second note relative to the first one.
+	 * @param relPitch2
+	 *            the pitch of the third note relative to the first one.
+	 * @return the index of the shape, from 0 to 8.
+	 */
+	static int getShape(int relPitch1, int relPitch2) {
+		return 3 * (Integer.signum(relPitch1) + 1) + Integer.signum(relPitch2 - relPitch1) + 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @return the {@link String} {@code "BSplineShapeTable(dMax,dMed,dMin)"}.
+	 */
+	@Override
+	public String getName() {
+		return "BSplineShapeTable(" + this.dMax + "," + this.dMed + "," + this.dMin + ")";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A {@code null} n-gram is compared as the null span of the other n-gram,
+	 * that is, with all relative pitches equal to 0.
+	 */
+	@Override
+	public double compare(NGram g1, NGram g2) {
+		int rel11 = 0, rel12 = 0, rel21 = 0, rel22 = 0;
+		if (g1 != null) {
+			if (g1.size() != 3)
+				throw new IllegalArgumentException(this.getName() + " only supports n-grams with 3 notes.");
+			rel11 = g1.getRelativePitch(1);
+			rel12 = g1.getRelativePitch(2);
+		}
+		if (g2 != null) {
+			if (g2.size() != 3)
+				throw new IllegalArgumentException(this.getName() + " only supports n-grams with 3 notes.");
+			rel21 = g2.getRelativePitch(1);
+			rel22 = g2.getRelativePitch(2);
+		}
+		if (rel11 == rel21 && rel12 == rel22)
+			return 0;
+
+		return this.table[BSplineShapeTableNGramComparer.getShape(rel11, rel12) * BSplineShapeTableNGramComparer.SHAPES
+				+ BSplineShapeTableNGramComparer.getShape(rel21, rel22)];
+	}
+}
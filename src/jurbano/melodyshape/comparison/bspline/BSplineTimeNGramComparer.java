@@ -1,91 +1,132 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.comparison.bspline;
-
-import java.text.DecimalFormat;
-import java.util.ArrayList;
-
-import jurbano.melodyshape.comparison.NGram;
-import jurbano.melodyshape.comparison.NGramComparer;
-
-import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
-
-/**
- * A similarity function between two {@link NGram} objects that interpolates
- * time interval sequences using a Uniform B-Spline and then computes the area
- * between the first derivatives of the two splines.
- * 
- * @author Julián Urbano
- * @see BSplineTimeNGramComparer
- * @see UniformBSpline
- * @see NGramComparer
- */
-public class BSplineTimeNGramComparer implements NGramComparer
-{
-	protected final DecimalFormat format = new DecimalFormat("#.###");
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "BSplineTime"}.
-	 */
-	@Override
-	public String getName() {
-		return "BSplineTime";
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return 0 if both {@link NGram}s are equivalent or the area between the
-	 *         first derivatives of their corresponding Uniform B-Splines.
-	 */
-	@Override
-	public double compare(NGram g1, NGram g2) {
-		if (g1 == null)
-			g1 = g2.getNullSpan();
-		if (g2 == null)
-			g2 = g1.getNullSpan();
-		if (g1.size() < 2 || g1.size() > UniformBSpline.BASIS_FUNCTIONS.length)
-			throw new IllegalArgumentException(this.getName() + " only supports n-grams with 2 to " + UniformBSpline.BASIS_FUNCTIONS.length
-					+ " notes.");
-		if (this.getNGramId(g1).equals(this.getNGramId(g2)))
-			return 0;
-		
-		PolynomialFunction p1t = new PolynomialFunction(new double[] { 0 });
-		PolynomialFunction p2t = new PolynomialFunction(new double[] { 0 });
-		for (int i = 0; i < g1.size(); i++) {
-			PolynomialFunction basis = UniformBSpline.BASIS_FUNCTIONS[g1.size() - 1][i];
-			p1t = p1t.add(basis.multiply(new PolynomialFunction(new double[] { g1.get(g1.size() - i - 1).getDuration()
-					/ (double) g1.get(0).getDuration() })));
-			p2t = p2t.add(basis.multiply(new PolynomialFunction(new double[] { g2.get(g2.size() - i - 1).getDuration()
-					/ (double) g2.get(0).getDuration() })));
-		}
-		PolynomialFunction pt = p1t.polynomialDerivative().subtract(p2t.polynomialDerivative());
-		
-		Laguerre laguerre = new Laguerre();
-		ArrayList<Double> realRoots = laguerre.findRoots(pt);
-		return -laguerre.computeAreaBetweenDerivatives(p1t, p2t, realRoots);
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return a {@link String} with the format
-	 *         <code>{d2/d1, d3/d1, ..., d(n-1)/d1}</code>, where {@code di}
-	 *         corresponds to the duration of the i-th note inside the n-gram.
-	 *         The {@link String} {@code "null"} is returned if the n-gram is
-	 *         {@code null}.
-	 */
-	@Override
-	public String getNGramId(NGram g) {
-		if (g == null)
-			return "null";
-		
-		String res = "{";
-		for (int i = 1; i < g.size(); i++)
-			res += this.format.format(g.get(i).getDuration() / (double) g.get(0).getDuration()) + " ";
-		return res.trim() + "}";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.bspline;
+
+import java.text.DecimalFormat;
+
+import jurbano.melodyshape.comparison.BoundedNGramComparer;
+import jurbano.melodyshape.comparison.NGram;
+import jurbano.melodyshape.comparison.NGramComparer;
+import jurbano.melodyshape.comparison.NGramVocabulary;
+
+/**
+ * A similarity function between two {@link NGram} objects that interpolates
+ * time interval sequences using a Uniform B-Spline and then computes the area
+ * between the first derivatives of the two splines.
+ * 
+ * @author Julián Urbano
+ * @see BSplineTimeNGramComparer
+ * @see UniformBSpline
+ * @see NGramComparer
+ */
+public class BSplineTimeNGramComparer implements BoundedNGramComparer
+{
+	static final int SPLINE_FEATURE = NGram.newFeatureSlot();
+	static final ThreadLocal<double[][]> BUFFERS = new ThreadLocal<double[][]>() {
+		@Override
+		protected double[][] initialValue() {
+			return new double[][] { new double[RootFinder.MAX_DEGREE + 1], new double[RootFinder.MAX_DEGREE + 2],
+					new double[RootFinder.SCRATCH_LENGTH] };
+		}
+	};
+	static final int ID_FEATURE = NGram.newFeatureSlot();
+	
+	protected final DecimalFormat format = new DecimalFormat("#.###");
+	protected final NGramVocabulary vocabulary = NGramVocabulary.getVocabulary(this);
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "BSplineTime"}.
+	 */
+	@Override
+	public String getName() {
+		return "BSplineTime";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The spline of each {@link NGram} is computed only the first time the
+	 * n-gram is compared, and then stored as one of its features.
+	 * 
+	 * @return 0 if both {@link NGram}s are equivalent or the area between the
+	 *         first derivatives of their corresponding Uniform B-Splines.
+	 */
+	@Override
+	public double compare(NGram g1, NGram g2) {
+		int size = (g1 != null ? g1 : g2).size();
+		if (size < 2 || size > UniformBSpline.BASIS_FUNCTIONS.length)
+			throw new IllegalArgumentException(this.getName() + " only supports n-grams with 2 to " + UniformBSpline.BASIS_FUNCTIONS.length
+					+ " notes.");
+		// the null span of an n-gram has the same durations, so it is
+		// equivalent to the n-gram
+		if (g1 == null || g2 == null || this.vocabulary.getId(g1) == this.vocabulary.getId(g2))
+			return 0;
+		
+		SplinePolynomial p1t = this.getSpline(g1);
+		SplinePolynomial p2t = this.getSpline(g2);
+		double[][] buffers = BSplineTimeNGramComparer.BUFFERS.get();
+		int length = SplinePolynomial.subtractDerivatives(p1t, p2t, buffers[0]);
+		int count = RootFinder.findRoots(buffers[0], length, buffers[1], buffers[2]);
+		return -RootFinder.computeAreaBetweenDerivatives(p1t, p2t, buffers[1], count);
+	}
+	
+	/**
+	 * Gets the Uniform B-Spline that interpolates the duration ratios of an
+	 * {@link NGram}, computing it if not already stored in the n-gram.
+	 * 
+	 * @param g
+	 *            the n-gram.
+	 * @return the spline polynomial.
+	 */
+	protected SplinePolynomial getSpline(NGram g) {
+		SplinePolynomial p = (SplinePolynomial) g.getFeature(BSplineTimeNGramComparer.SPLINE_FEATURE);
+		if (p == null) {
+			double[] weights = new double[g.size()];
+			for (int i = 0; i < g.size(); i++)
+				weights[i] = g.getDurationRatio(g.size() - i - 1);
+			p = new SplinePolynomial(g.size() - 1, weights);
+			g.setFeature(BSplineTimeNGramComparer.SPLINE_FEATURE, p);
+		}
+		return p;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return a {@link String} with the format
+	 *         <code>{d2/d1, d3/d1, ..., d(n-1)/d1}</code>, where {@code di}
+	 *         corresponds to the duration of the i-th note inside the n-gram.
+	 *         The {@link String} {@code "null"} is returned if the n-gram is
+	 *         {@code null}.
+	 */
+	@Override
+	public String getNGramId(NGram g) {
+		if (g == null)
+			return "null";
+		
+		String id = (String) g.getFeature(BSplineTimeNGramComparer.ID_FEATURE);
+		if (id == null) {
+			String res = "{";
+			synchronized (this.format) { // DecimalFormat is not thread-safe
+				for (int i = 1; i < g.size(); i++)
+					res += this.format.format(g.get(i).getDuration() / (double) g.get(0).getDuration()) + " ";
+			}
+			id = res.trim() + "}";
+			g.setFeature(BSplineTimeNGramComparer.ID_FEATURE, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return 0.
+	 */
+	@Override
+	public double getMaxScore(NGram g) {
+		return 0;
+	}
+}
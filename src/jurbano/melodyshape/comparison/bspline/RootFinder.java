@@ -0,0 +1,308 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.bspline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+
+/**
+ * Finds the real roots between 0 and 1 of polynomials of low degree, and
+ * computes areas between spline derivatives, without allocating objects.
+ * <p>
+ * Roots of polynomials up to degree 3 are computed in closed form and then
+ * polished with Newton's method. Roots of polynomials of higher degree are
+ * isolated in the intervals where the polynomial is monotone, delimited by the
+ * roots of its derivative, and then refined by bisection. All results and
+ * intermediate values are written into buffers supplied by the caller.
+ * <p>
+ * Unlike {@link Laguerre}, roots are exact up to rounding error and returned
+ * in increasing order. The {@link #main(String[])} method checks that the
+ * areas computed with both are the same over representative polynomials.
+ *
+ * @author Julián Urbano
+ * @see Laguerre
+ */
+public class RootFinder
+{
+	/**
+	 * The maximum degree of the polynomials supported.
+	 */
+	public static final int MAX_DEGREE = UniformBSpline.BASIS_FUNCTIONS.length - 1;
+	/**
+	 * The maximum difference between areas computed with this class and with
+	 * {@link Laguerre}.
+	 */
+	public static final double LAGUERRE_TOLERANCE = 1e-6;
+	/**
+	 * The length of the scratch buffer needed to find the roots of
+	 * polynomials up to {@link #MAX_DEGREE}. Each polynomial of degree
+	 * {@code d>=4} needs {@code 2d+1} values for its derivative and the
+	 * bounds of its monotone intervals, and then so does its derivative, down
+	 * to degree 4, which adds up to {@code (MAX_DEGREE+1)^2-16}.
+	 */
+	public static final int SCRATCH_LENGTH = Math.max(0, (RootFinder.MAX_DEGREE + 1) * (RootFinder.MAX_DEGREE + 1) - 16);
+	static final int BISECTION_ITERATIONS = 100;
+	static final int NEWTON_ITERATIONS = 2;
+
+	/**
+	 * Finds the real roots between 0 and 1 of a polynomial. Like
+	 * {@link Laguerre#findRoots(PolynomialFunction)}, 0 and 1 are always
+	 * included as the first and last roots.
+	 *
+	 * @param coefficients
+	 *            the coefficients of the polynomial, from the constant term up.
+	 * @param length
+	 *            the number of coefficients, at most {@code MAX_DEGREE+1}.
+	 * @param roots
+	 *            the buffer where the roots are written, of length
+	 *            {@code length+1} at least.
+	 * @param scratch
+	 *            the buffer for intermediate values, of length
+	 *            {@link #SCRATCH_LENGTH} at least.
+	 * @return the number of roots written, including 0 and 1.
+	 */
+	public static int findRoots(double[] coefficients, int length, double[] roots, double[] scratch) {
+		while (length > 1 && coefficients[length - 1] == 0)
+			length--;
+		roots[0] = 0;
+		int count = 1 + RootFinder.findInnerRoots(coefficients, 0, length - 1, roots, 1, scratch, 0);
+		Arrays.sort(roots, 1, count);
+		roots[count] = 1;
+		return count + 1;
+	}
+
+	/**
+	 * Computes the area between two {@link SplinePolynomial}s' first
+	 * derivatives, knowing the sorted roots of their derivatives' difference.
+	 *
+	 * @param p1
+	 *            the first polynomial.
+	 * @param p2
+	 *            the second polynomial.
+	 * @param roots
+	 *            the known roots of the difference, including 0 and 1.
+	 * @param count
+	 *            the number of roots.
+	 * @return the area between the polynomials.
+	 */
+	public static double computeAreaBetweenDerivatives(SplinePolynomial p1, SplinePolynomial p2, double[] roots, int count) {
+		double area = 0;
+		double previous = p1.value(roots[0]) - p2.value(roots[0]);
+		for (int i = 1; i < count; i++) {
+			double current = p1.value(roots[i]) - p2.value(roots[i]);
+			area += Math.abs(current - previous);
+			previous = current;
+		}
+		return area;
+	}
+
+	/**
+	 * Computes the area between two {@link SplinePolynomial}s' first
+	 * derivatives, both with this class and with {@link Laguerre}, and returns
+	 * their difference. It is used to check the accuracy of this class.
+	 *
+	 * @param p1
+	 *            the first polynomial.
+	 * @param p2
+	 *            the second polynomial.
+	 * @return the absolute difference between both areas.
+	 */
+	public static double getDeviationFromLaguerre(SplinePolynomial p1, SplinePolynomial p2) {
+		double[] difference = new double[RootFinder.MAX_DEGREE + 2];
+		int length = SplinePolynomial.subtractDerivatives(p1, p2, difference);
+		double[] roots = new double[difference.length + 1];
+		int count = RootFinder.findRoots(difference, length, roots, new double[RootFinder.SCRATCH_LENGTH]);
+		double area = RootFinder.computeAreaBetweenDerivatives(p1, p2, roots, count);
+
+		Laguerre laguerre = new Laguerre();
+		ArrayList<Double> realRoots = laguerre.findRoots(SplinePolynomial.subtractDerivatives(p1, p2));
+		// Laguerre does not sort roots, but the area is only well defined if
+		// computed between consecutive roots
+		Collections.sort(realRoots);
+		double laguerreArea = laguerre.computeAreaBetweenDerivatives(p1, p2, realRoots);
+		return Math.abs(area - laguerreArea);
+	}
+
+	/**
+	 * Checks the areas computed with this class against those computed with
+	 * {@link Laguerre}, over the splines of random weights of every degree,
+	 * and prints the maximum deviation. It exits with status 1 if it exceeds
+	 * {@link #LAGUERRE_TOLERANCE}.
+	 *
+	 * @param args
+	 *            optionally, the number of pairs of splines per degree and the
+	 *            seed of the weights.
+	 */
+	public static void main(String[] args) {
+		int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 0);
+		double max = 0;
+		for (int degree = 1; degree <= RootFinder.MAX_DEGREE; degree++) {
+			for (int pair = 0; pair < pairs; pair++) {
+				// like the comparers, pitch intervals and duration ratios as
+				// weights, and some splines against the null one
+				SplinePolynomial p1 = RootFinder.newRandomSpline(degree, random);
+				SplinePolynomial p2 = pair % 10 == 0 ? new SplinePolynomial(0, new double[0])
+						: RootFinder.newRandomSpline(degree, random);
+				max = Math.max(max, RootFinder.getDeviationFromLaguerre(p1, p2));
+			}
+		}
+		System.out.println("Maximum deviation from Laguerre: " + max);
+		if (!(max <= RootFinder.LAGUERRE_TOLERANCE))
+			System.exit(1);
+	}
+
+	static SplinePolynomial newRandomSpline(int degree, Random random) {
+		double[] weights = new double[degree];
+		for (int i = 0; i < degree; i++)
+			weights[i] = random.nextBoolean() ? random.nextInt(25) - 12 : 4 * random.nextDouble();
+		return new SplinePolynomial(degree, weights);
+	}
+
+	/**
+	 * Finds the roots strictly between 0 and 1 of a polynomial of the specified
+	 * degree, whose coefficients start at {@code c[from]}, not necessarily
+	 * sorted.
+	 */
+	static int findInnerRoots(double[] c, int from, int degree, double[] roots, int offset, double[] scratch,
+			int scratchOffset) {
+		switch (degree) {
+		case 0:
+			return 0;
+		case 1:
+			return RootFinder.add(-c[from] / c[from + 1], roots, offset, 0);
+		case 2:
+			return RootFinder.findQuadraticRoots(c, from, roots, offset);
+		case 3:
+			return RootFinder.findCubicRoots(c, from, roots, offset);
+		default:
+			return RootFinder.findIsolatedRoots(c, from, degree, roots, offset, scratch, scratchOffset);
+		}
+	}
+
+	static int findQuadraticRoots(double[] c, int from, double[] roots, int offset) {
+		double a = c[from + 2], b = c[from + 1], d = c[from];
+		double disc = b * b - 4 * a * d;
+		if (disc < 0)
+			return 0;
+		// numerically stable form, avoiding the subtraction of similar values
+		double q = -0.5 * (b + Math.copySign(Math.sqrt(disc), b));
+		int count = 0;
+		if (q != 0) {
+			count = RootFinder.add(q / a, roots, offset, count);
+			count = RootFinder.add(d / q, roots, offset, count);
+		} else
+			count = RootFinder.add(0, roots, offset, count);
+		return count;
+	}
+
+	static int findCubicRoots(double[] c, int from, double[] roots, int offset) {
+		double a = c[from + 3];
+		double b = c[from + 2] / a, d = c[from + 1] / a, e = c[from] / a;
+		// depressed cubic t^3+p*t+q=0 with x=t-b/3
+		double shift = b / 3;
+		double p = d - b * shift;
+		double q = 2 * shift * shift * shift - d * shift + e;
+		double disc = q * q / 4 + p * p * p / 27;
+		int count = 0;
+		if (disc > 0) {
+			double s = Math.sqrt(disc);
+			double t = Math.cbrt(-q / 2 + s) + Math.cbrt(-q / 2 - s);
+			count = RootFinder.add(RootFinder.polish(c, from, 3, t - shift), roots, offset, count);
+		} else if (p == 0) {
+			count = RootFinder.add(RootFinder.polish(c, from, 3, Math.cbrt(-q) - shift), roots, offset, count);
+		} else {
+			double m = 2 * Math.sqrt(-p / 3);
+			double cos = Math.max(-1, Math.min(1, 3 * q / (p * m)));
+			double theta = Math.acos(cos) / 3;
+			for (int k = 0; k < 3; k++) {
+				double t = m * Math.cos(theta - 2 * Math.PI * k / 3);
+				count = RootFinder.add(RootFinder.polish(c, from, 3, t - shift), roots, offset, count);
+			}
+		}
+		return count;
+	}
+
+	static int findIsolatedRoots(double[] c, int from, int degree, double[] roots, int offset, double[] scratch,
+			int scratchOffset) {
+		// the roots of the derivative delimit the intervals where the
+		// polynomial is monotone, so each can contain one root at most. The
+		// derivative and the bounds are kept in the scratch buffer, and the
+		// derivative uses the rest of it
+		int derivative = scratchOffset;
+		int bounds = scratchOffset + degree;
+		for (int i = 1; i <= degree; i++)
+			scratch[derivative + i - 1] = i * c[from + i];
+		int length = degree;
+		while (length > 1 && scratch[derivative + length - 1] == 0)
+			length--;
+		scratch[bounds] = 0;
+		int boundCount = 1 + RootFinder.findInnerRoots(scratch, derivative, length - 1, scratch, bounds + 1, scratch,
+				bounds + degree + 1);
+		Arrays.sort(scratch, bounds + 1, bounds + boundCount);
+		scratch[bounds + boundCount++] = 1;
+
+		int count = 0;
+		for (int i = 1; i < boundCount; i++) {
+			double lo = scratch[bounds + i - 1], hi = scratch[bounds + i];
+			double fLo = RootFinder.value(c, from, degree, lo), fHi = RootFinder.value(c, from, degree, hi);
+			if (fHi == 0 && hi < 1) {
+				count = RootFinder.add(hi, roots, offset, count);
+			} else if (fLo != 0 && (fLo < 0) != (fHi < 0)) {
+				for (int it = 0; it < RootFinder.BISECTION_ITERATIONS && lo < hi; it++) {
+					double mid = (lo + hi) / 2;
+					if (mid <= lo || mid >= hi)
+						break;
+					double fMid = RootFinder.value(c, from, degree, mid);
+					if (fMid == 0) {
+						lo = hi = mid;
+					} else if ((fMid < 0) == (fLo < 0)) {
+						lo = mid;
+						fLo = fMid;
+					} else
+						hi = mid;
+				}
+				count = RootFinder.add((lo + hi) / 2, roots, offset, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Refines a root with a few iterations of Newton's method.
+	 */
+	static double polish(double[] c, int from, int degree, double x) {
+		for (int it = 0; it < RootFinder.NEWTON_ITERATIONS; it++) {
+			double f = c[from + degree], df = 0;
+			for (int j = degree - 1; j >= 0; j--) {
+				df = df * x + f;
+				f = f * x + c[from + j];
+			}
+			if (df == 0)
+				break;
+			x -= f / df;
+		}
+		return x;
+	}
+
+	static double value(double[] c, int from, int degree, double x) {
+		double result = c[from + degree];
+		for (int j = degree - 1; j >= 0; j--)
+			result = x * result + c[from + j];
+		return result;
+	}
+
+	/**
+	 * Writes a root in the buffer if it is strictly between 0 and 1.
+	 */
+	static int add(double root, double[] roots, int offset, int count) {
+		if (root > 0 && root < 1)
+			roots[offset + count++] = root;
+		return count;
+	}
+}
@@ -0,0 +1,140 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.comparison.bspline;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+
+/**
+ * The polynomial of a Uniform B-Spline span, together with its first
+ * derivative, stored as primitive arrays of coefficients.
+ * <p>
+ * A {@code SplinePolynomial} is immutable, so it can be computed once per
+ * {@link jurbano.melodyshape.comparison.NGram} and reused in every comparison.
+ * All arithmetic follows the same order of operations as
+ * {@link PolynomialFunction}, so evaluations give the exact same values.
+ *
+ * @author Julián Urbano
+ * @see UniformBSpline
+ */
+public class SplinePolynomial
+{
+	/**
+	 * The coefficients of the {@link UniformBSpline#BASIS_FUNCTIONS}, from the
+	 * constant term up.
+	 */
+	static final double[][][] BASIS_COEFFICIENTS = new double[UniformBSpline.BASIS_FUNCTIONS.length][][];
+	static {
+		for (int degree = 0; degree < UniformBSpline.BASIS_FUNCTIONS.length; degree++) {
+			PolynomialFunction[] basis = UniformBSpline.BASIS_FUNCTIONS[degree];
+			SplinePolynomial.BASIS_COEFFICIENTS[degree] = new double[basis.length][];
+			for (int i = 0; i < basis.length; i++)
+				SplinePolynomial.BASIS_COEFFICIENTS[degree][i] = basis[i].getCoefficients();
+		}
+	}
+
+	protected final double[] coefficients;
+	protected final double[] derivative;
+
+	/**
+	 * Constructs the {@code SplinePolynomial} that results from weighting the
+	 * first basis functions of the specified degree, that is,
+	 * {@code sum_i weights[i]*BASIS_FUNCTIONS[degree][i]}.
+	 *
+	 * @param degree
+	 *            the degree of the spline.
+	 * @param weights
+	 *            the weights of the basis functions.
+	 */
+	public SplinePolynomial(int degree, double[] weights) {
+		double[] coefficients = new double[degree + 1];
+		for (int i = 0; i < weights.length; i++) {
+			double[] basis = SplinePolynomial.BASIS_COEFFICIENTS[degree][i];
+			for (int j = 0; j < basis.length; j++)
+				coefficients[j] += basis[j] * weights[i];
+		}
+		this.coefficients = SplinePolynomial.trim(coefficients, coefficients.length);
+
+		int n = this.coefficients.length;
+		double[] derivative = new double[Math.max(1, n - 1)];
+		for (int i = n - 1; i > 0; i--)
+			derivative[i - 1] = i * this.coefficients[i];
+		this.derivative = SplinePolynomial.trim(derivative, derivative.length);
+	}
+
+	/**
+	 * Evaluates the polynomial at the specified point.
+	 *
+	 * @param x
+	 *            the point to evaluate.
+	 * @return the value of the polynomial.
+	 */
+	public double value(double x) {
+		double result = this.coefficients[this.coefficients.length - 1];
+		for (int j = this.coefficients.length - 2; j >= 0; j--)
+			result = x * result + this.coefficients[j];
+		return result;
+	}
+
+	/**
+	 * Gets the difference between the first derivatives of two
+	 * {@code SplinePolynomial}s.
+	 *
+	 * @param p1
+	 *            the first polynomial.
+	 * @param p2
+	 *            the second polynomial.
+	 * @return the polynomial {@code p1'-p2'}.
+	 */
+	public static PolynomialFunction subtractDerivatives(SplinePolynomial p1, SplinePolynomial p2) {
+		double[] d1 = p1.derivative;
+		double[] d2 = p2.derivative;
+		int low = Math.min(d1.length, d2.length);
+		int high = Math.max(d1.length, d2.length);
+		double[] difference = new double[high];
+		for (int i = 0; i < low; i++)
+			difference[i] = d1[i] - d2[i];
+		for (int i = low; i < high; i++)
+			difference[i] = d1.length < d2.length ? -d2[i] : d1[i];
+		return new PolynomialFunction(difference);
+	}
+
+	/**
+	 * Writes the difference between the first derivatives of two
+	 * {@code SplinePolynomial}s into a buffer.
+	 *
+	 * @param p1
+	 *            the first polynomial.
+	 * @param p2
+	 *            the second polynomial.
+	 * @param difference
+	 *            the buffer where the coefficients of {@code p1'-p2'} are
+	 *            written.
+	 * @return the number of coefficients written.
+	 */
+	public static int subtractDerivatives(SplinePolynomial p1, SplinePolynomial p2, double[] difference) {
+		double[] d1 = p1.derivative;
+		double[] d2 = p2.derivative;
+		int low = Math.min(d1.length, d2.length);
+		int high = Math.max(d1.length, d2.length);
+		for (int i = 0; i < low; i++)
+			difference[i] = d1[i] - d2[i];
+		for (int i = low; i < high; i++)
+			difference[i] = d1.length < d2.length ? -d2[i] : d1[i];
+		return high;
+	}
+
+	/**
+	 * Trims the trailing zero coefficients of a polynomial, keeping at least
+	 * one coefficient.
+	 */
+	static double[] trim(double[] coefficients, int length) {
+		while (length > 1 && coefficients[length - 1] == 0)
+			length--;
+		if (length == coefficients.length)
+			return coefficients;
+		double[] trimmed = new double[length];
+		System.arraycopy(coefficients, 0, trimmed, 0, length);
+		return trimmed;
+	}
+}
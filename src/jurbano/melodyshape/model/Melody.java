@@ -1,48 +1,105 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.model;
-
-import java.util.ArrayList;
-
-/**
- * Represents a uniquely identified sequence of {@link Note}s.
- * <p>
- * This class does not guarantee that all melody identifiers are different
- * though; it is the caller's responsibility to guarantee it. It does not
- * guarantee either that the {@link Note} objects are sorted by their onset
- * time.
- * 
- * @author Julián Urbano
- * @see Note
- * @see MelodyReader
- */
-@SuppressWarnings("serial")
-public class Melody extends ArrayList<Note>
-{
-	protected String id;
-	
-	/**
-	 * Gets the unique ID of the melody.
-	 * 
-	 * @return the ID of the melody.
-	 */
-	public String getId() {
-		return this.id;
-	}
-	
-	/**
-	 * Constructs a new and empty {@code Melody} object.
-	 * 
-	 * @param id
-	 *            the unique ID of the melody.
-	 */
-	public Melody(String id) {
-		this.id = id;
-	}
-	
-	@Override
-	public String toString() {
-		return "Melody [id=" + id + ", size=" + this.size() + "]";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.model;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a uniquely identified sequence of {@link Note}s.
+ * <p>
+ * This class does not guarantee that all melody identifiers are different
+ * though; it is the caller's responsibility to guarantee it. It does not
+ * guarantee either that the {@link Note} objects are sorted by their onset
+ * time.
+ * <p>
+ * Other classes may store features computed from a melody, such as its
+ * sequence of n-grams, so that they are computed only once. Therefore, the
+ * notes of a melody must not change after it is compared for the first time.
+ * 
+ * @author Julián Urbano
+ * @see Note
+ * @see MelodyReader
+ */
+@SuppressWarnings("serial")
+public class Melody extends ArrayList<Note>
+{
+	private static final AtomicInteger nextFeatureSlot = new AtomicInteger();
+	
+	protected String id;
+	protected transient volatile Object[] features;
+	
+	/**
+	 * Gets the unique ID of the melody.
+	 * 
+	 * @return the ID of the melody.
+	 */
+	public String getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Constructs a new and empty {@code Melody} object.
+	 * 
+	 * @param id
+	 *            the unique ID of the melody.
+	 */
+	public Melody(String id) {
+		this.id = id;
+	}
+	
+	/**
+	 * Reserves a new slot to store a feature computed from melodies. Slots are
+	 * usually reserved once per class, in a static initializer.
+	 * 
+	 * @return the index of the new slot.
+	 * @see Melody#getFeature(int)
+	 */
+	public static int newFeatureSlot() {
+		return Melody.nextFeatureSlot.getAndIncrement();
+	}
+	
+	/**
+	 * Gets a feature previously computed from this melody.
+	 * 
+	 * @param slot
+	 *            the slot of the feature.
+	 * @return the feature, or {@code null} if it has not been set.
+	 * @see Melody#setFeature(int, Object)
+	 */
+	public Object getFeature(int slot) {
+		Object[] features = this.features;
+		if (features == null || slot >= features.length)
+			return null;
+		return features[slot];
+	}
+	
+	/**
+	 * Stores a feature computed from this melody, so that it does not need to
+	 * be computed again every time this melody is compared.
+	 * <p>
+	 * Features must be immutable and depend only on the notes of the melody.
+	 * This method is thread-safe, but if several threads set features
+	 * concurrently some of them may be lost and need to be computed again.
+	 * 
+	 * @param slot
+	 *            the slot of the feature.
+	 * @param feature
+	 *            the feature.
+	 * @see Melody#newFeatureSlot()
+	 */
+	public void setFeature(int slot, Object feature) {
+		Object[] features = this.features;
+		Object[] newFeatures = new Object[Math.max(slot + 1, features == null ? 0 : features.length)];
+		if (features != null)
+			System.arraycopy(features, 0, newFeatures, 0, features.length);
+		newFeatures[slot] = feature;
+		this.features = newFeatures;
+	}
+	
+	@Override
+	public String toString() {
+		return "Melody [id=" + id + ", size=" + this.size() + "]";
+	}
+}
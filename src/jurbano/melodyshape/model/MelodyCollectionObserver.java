@@ -0,0 +1,27 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.model;
+
+import java.util.List;
+
+/**
+ * Receives notifications when {@link Melody} objects are added to a
+ * {@link MelodyCollection}, such as to update statistics computed from the
+ * collection without reading it again.
+ *
+ * @author Julián Urbano
+ * @see InMemoryMelodyCollection#addObserver(MelodyCollectionObserver)
+ */
+public interface MelodyCollectionObserver
+{
+	/**
+	 * Notifies that new melodies were added to a collection.
+	 *
+	 * @param coll
+	 *            the collection.
+	 * @param melodies
+	 *            the melodies added.
+	 */
+	public void melodiesAdded(MelodyCollection coll, List<Melody> melodies);
+}
@@ -0,0 +1,182 @@
+// Copyright (C) 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.ranking;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jurbano.melodyshape.model.Melody;
+
+/**
+ * A bounded collection of the {@code k} best similarity scores offered to it,
+ * together with the ordinals of their melodies, plus every other score tied
+ * with the {@code k}-th best, so that rankers can still break those ties.
+ * <p>
+ * Scores are kept in a binary min-heap of primitive arrays, so offering a
+ * score takes {@code O(log k)} time and no {@link Result} is created until the
+ * end. Scores are compared with {@link Double#compare(double, double)}, as
+ * rankers do. This class is not thread-safe: each thread should fill its own
+ * heap, and then all heaps are merged with {@link #addAll(ScoreHeap)}.
+ *
+ * @author Julián Urbano
+ * @see ResultRanker
+ */
+public class ScoreHeap
+{
+	static final int INITIAL_CAPACITY = 64;
+
+	protected final int k;
+	protected int[] ordinals;
+	protected double[] scores;
+	protected int size;
+	/**
+	 * The ordinals of the melodies left out of the heap with the same score as
+	 * its minimum.
+	 */
+	protected int[] ties;
+	protected int tiesSize;
+
+	/**
+	 * Constructs a new and empty {@code ScoreHeap} for the specified cutoff.
+	 *
+	 * @param k
+	 *            the number of top scores to keep.
+	 * @throws IllegalArgumentException
+	 *             if {@code k} is not positive.
+	 */
+	public ScoreHeap(int k) {
+		if (k < 1)
+			throw new IllegalArgumentException("k must be positive.");
+		this.k = k;
+		this.ordinals = new int[Math.min(k, ScoreHeap.INITIAL_CAPACITY)];
+		this.scores = new double[this.ordinals.length];
+		this.size = 0;
+		this.ties = new int[ScoreHeap.INITIAL_CAPACITY];
+		this.tiesSize = 0;
+	}
+
+	/**
+	 * Gets the number of scores kept, ties included.
+	 *
+	 * @return the number of scores.
+	 */
+	public int size() {
+		return this.size + this.tiesSize;
+	}
+
+	/**
+	 * Offers the similarity score of a melody, which is kept if it is among
+	 * the top {@code k} offered so far or tied with the {@code k}-th.
+	 *
+	 * @param ordinal
+	 *            the ordinal of the melody.
+	 * @param score
+	 *            the similarity score.
+	 */
+	public void offer(int ordinal, double score) {
+		if (this.size < this.k) {
+			if (this.size == this.ordinals.length) {
+				int capacity = (int) Math.min(this.k, 2L * this.size);
+				this.ordinals = Arrays.copyOf(this.ordinals, capacity);
+				this.scores = Arrays.copyOf(this.scores, capacity);
+			}
+			this.ordinals[this.size] = ordinal;
+			this.scores[this.size] = score;
+			this.siftUp(this.size++);
+			return;
+		}
+		int cmp = Double.compare(score, this.scores[0]);
+		if (cmp == 0) {
+			this.addTie(ordinal);
+		} else if (cmp > 0) {
+			// replace the minimum, which is still a tie if the new minimum
+			// has the same score
+			int evicted = this.ordinals[0];
+			double evictedScore = this.scores[0];
+			this.ordinals[0] = ordinal;
+			this.scores[0] = score;
+			this.siftDown(0);
+			if (Double.compare(this.scores[0], evictedScore) == 0)
+				this.addTie(evicted);
+			else
+				this.tiesSize = 0;
+		}
+	}
+
+	/**
+	 * Offers all the scores kept by another heap.
+	 *
+	 * @param other
+	 *            the other heap.
+	 */
+	public void addAll(ScoreHeap other) {
+		for (int i = 0; i < other.size; i++)
+			this.offer(other.ordinals[i], other.scores[i]);
+		for (int i = 0; i < other.tiesSize; i++)
+			this.offer(other.ties[i], other.scores[0]);
+	}
+
+	/**
+	 * Creates the {@link Result}s of the scores kept, in increasing order of
+	 * ordinal.
+	 *
+	 * @param melodies
+	 *            the melodies, indexed by ordinal.
+	 * @return the results, not sorted by similarity.
+	 */
+	public Result[] toResults(List<Melody> melodies) {
+		// sort by ordinal, carrying the position of each score
+		long[] keys = new long[this.size()];
+		for (int i = 0; i < this.size; i++)
+			keys[i] = ((long) this.ordinals[i] << 32) | i;
+		for (int i = 0; i < this.tiesSize; i++)
+			keys[this.size + i] = (long) this.ties[i] << 32; // score of the minimum, at 0
+		Arrays.sort(keys);
+		Result[] results = new Result[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			results[i] = new Result(melodies.get((int) (keys[i] >>> 32)), this.scores[(int) keys[i]]);
+		return results;
+	}
+
+	protected void addTie(int ordinal) {
+		if (this.tiesSize == this.ties.length)
+			this.ties = Arrays.copyOf(this.ties, 2 * this.tiesSize);
+		this.ties[this.tiesSize++] = ordinal;
+	}
+
+	protected void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (Double.compare(this.scores[parent], this.scores[i]) <= 0)
+				break;
+			this.swap(i, parent);
+			i = parent;
+		}
+	}
+
+	protected void siftDown(int i) {
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < this.size && Double.compare(this.scores[left], this.scores[smallest]) < 0)
+				smallest = left;
+			if (right < this.size && Double.compare(this.scores[right], this.scores[smallest]) < 0)
+				smallest = right;
+			if (smallest == i)
+				break;
+			this.swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	protected void swap(int i, int j) {
+		int ordinal = this.ordinals[i];
+		this.ordinals[i] = this.ordinals[j];
+		this.ordinals[j] = ordinal;
+		double score = this.scores[i];
+		this.scores[i] = this.scores[j];
+		this.scores[j] = score;
+	}
+}
@@ -1,84 +1,176 @@
-// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.ranking;
-
-import jurbano.melodyshape.comparison.MelodyComparer;
-import jurbano.melodyshape.model.Melody;
-
-import java.util.Arrays;
-import java.util.Comparator;
-
-/**
- * A ranking function that sorts by decreasing similarity score, then by
- * decreasing similarity according to a second {@link MelodyComparer}, then by
- * increasing difference in length with the query, and then by melody
- * identifier.
- * 
- * @author Julián Urbano
- * @see ResultRanker
- */
-public class UntieResultRanker implements ResultRanker
-{
-	protected MelodyComparer comparer;
-	
-	/**
-	 * Constructs a new {@code UntieResultRanker} with the specified
-	 * {@link MelodyComparer}.
-	 * 
-	 * @param comparer
-	 *            the n-gram comparer to use.
-	 */
-	public UntieResultRanker(MelodyComparer comparer) {
-		this.comparer = comparer;
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public void rank(final Melody query, Result[] results, int k) {
-		// first sort by score
-		Arrays.sort(results, new Comparator<Result>() {
-			@Override
-			public int compare(Result r1, Result r2) {
-				return Double.compare(r2.getScore(), r1.getScore());
-			}
-		});
-		// now traverse and sort groups with the same score
-		for (int i = 1, top = 0; i < results.length; i++) {
-			if (results[i].getScore() < results[top].getScore()) {
-				// re-sort from top to i-1
-				Arrays.sort(results, top, i, new Comparator<Result>() {
-					@Override
-					public int compare(Result r1, Result r2) {
-						// sort by new comparer
-						double score1 = UntieResultRanker.this.comparer.compare(query, r1.getMelody());
-						double score2 = UntieResultRanker.this.comparer.compare(query, r2.getMelody());
-						if (score1 != score2)
-							return Double.compare(score2, score1);
-						// then by length
-						if (r1.getMelody().size() != r2.getMelody().size())
-							return Integer.compare(Math.abs(r1.getMelody().size() - query.size()),
-									Math.abs(r2.getMelody().size() - query.size()));
-						// then by doc id
-						return r1.getMelody().getId().compareTo(r2.getMelody().getId());
-					}
-				});
-				top = i;
-				if (top >= k)
-					break; // no need to re-sort beyond the top k
-			}
-		}
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @return the {@link String} {@code "Untie(comparer)"}.
-	 */
-	@Override
-	public String getName() {
-		return "Untie(" + this.comparer.getName() + ")";
-	}
-}
+// Copyright (C) 2013, 2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.ranking;
+
+import jurbano.melodyshape.comparison.MelodyComparer;
+import jurbano.melodyshape.model.Melody;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A ranking function that sorts by decreasing similarity score, then by
+ * decreasing similarity according to a second {@link MelodyComparer}, then by
+ * increasing difference in length with the query, and then by melody
+ * identifier.
+ * <p>
+ * The second similarity is computed only once per tied result, before
+ * sorting, and it may be computed in parallel.
+ * 
+ * @author Julián Urbano
+ * @see ResultRanker
+ */
+public class UntieResultRanker implements ResultRanker
+{
+	protected MelodyComparer comparer;
+	
+	/**
+	 * Constructs a new {@code UntieResultRanker} with the specified
+	 * {@link MelodyComparer}.
+	 * 
+	 * @param comparer
+	 *            the n-gram comparer to use.
+	 */
+	public UntieResultRanker(MelodyComparer comparer) {
+		this.comparer = comparer;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void rank(final Melody query, Result[] results, int k) {
+		this.rank(query, results, k, 1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void rank(final Melody query, Result[] results, int k, int tOpt) throws RuntimeException {
+		// first sort by score
+		Arrays.sort(results, new Comparator<Result>() {
+			@Override
+			public int compare(Result r1, Result r2) {
+				return Double.compare(r2.getScore(), r1.getScore());
+			}
+		});
+		// find the groups with the same score within the top k, including the
+		// last one, and the results that need to be untied
+		ArrayList<Integer> groups = new ArrayList<Integer>();
+		ArrayList<Melody> tied = new ArrayList<Melody>();
+		for (int i = 1, top = 0; i <= results.length; i++) {
+			if (i == results.length || results[i].getScore() < results[top].getScore()) {
+				if (i - top > 1) {
+					groups.add(top);
+					groups.add(i);
+					for (int j = top; j < i; j++)
+						tied.add(results[j].getMelody());
+				}
+				top = i;
+				if (top >= k)
+					break; // no need to re-sort beyond the top k
+			}
+		}
+		// compare each tied result once
+		final double[] untie = new double[results.length];
+		double[] scores = this.compare(query, tied, tOpt);
+		for (int g = 0, c = 0; g < groups.size(); g += 2)
+			for (int j = groups.get(g); j < groups.get(g + 1); j++)
+				untie[j] = scores[c++];
+		// and re-sort each group with the stored scores
+		for (int g = 0; g < groups.size(); g += 2) {
+			int top = groups.get(g);
+			int bottom = groups.get(g + 1);
+			final Result[] group = Arrays.copyOfRange(results, top, bottom);
+			final double[] groupUntie = Arrays.copyOfRange(untie, top, bottom);
+			Integer[] order = new Integer[group.length];
+			for (int j = 0; j < order.length; j++)
+				order[j] = j;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer i1, Integer i2) {
+					Melody m1 = group[i1].getMelody();
+					Melody m2 = group[i2].getMelody();
+					// sort by new comparer
+					if (groupUntie[i1] != groupUntie[i2])
+						return Double.compare(groupUntie[i2], groupUntie[i1]);
+					// then by length
+					if (m1.size() != m2.size())
+						return Integer.compare(Math.abs(m1.size() - query.size()), Math.abs(m2.size() - query.size()));
+					// then by doc id
+					return m1.getId().compareTo(m2.getId());
+				}
+			});
+			for (int j = 0; j < order.length; j++)
+				results[top + j] = group[order[j]];
+		}
+	}
+	
+	/**
+	 * Compares the query with a list of melodies, split in chunks that are
+	 * compared in parallel.
+	 * 
+	 * @param query
+	 *            the query melody.
+	 * @param melodies
+	 *            the melodies to compare with the query.
+	 * @param tOpt
+	 *            the number of threads to use.
+	 * @return the similarity scores, in the same order as the melodies.
+	 * @throws RuntimeException
+	 *             if there is some error or an {@link InterruptedException} is
+	 *             received.
+	 */
+	protected double[] compare(final Melody query, List<Melody> melodies, int tOpt) throws RuntimeException {
+		final double[] scores = new double[melodies.size()];
+		if (tOpt == 1 || melodies.size() < 2) {
+			this.comparer.compare(query, melodies, null, scores);
+			return scores;
+		}
+		// a few chunks per thread to balance them
+		int chunkSize = Math.max(1, (melodies.size() + 4 * tOpt - 1) / (4 * tOpt));
+		ArrayList<Callable<Void>> callables = new ArrayList<>();
+		for (int from = 0; from < melodies.size(); from += chunkSize) {
+			final int chunkFrom = from;
+			final List<Melody> chunk = melodies.subList(from, Math.min(from + chunkSize, melodies.size()));
+			callables.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					double[] chunkScores = new double[chunk.size()];
+					UntieResultRanker.this.comparer.compare(query, chunk, null, chunkScores);
+					System.arraycopy(chunkScores, 0, scores, chunkFrom, chunkScores.length);
+					return null;
+				}
+			});
+		}
+		ExecutorService service = Executors.newFixedThreadPool(tOpt);
+		try {
+			for (Future<Void> future : service.invokeAll(callables))
+				future.get();
+			service.shutdown();
+		} catch (InterruptedException | ExecutionException ex) {
+			service.shutdownNow();
+			throw new RuntimeException(ex);
+		}
+		return scores;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return the {@link String} {@code "Untie(comparer)"}.
+	 */
+	@Override
+	public String getName() {
+		return "Untie(" + this.comparer.getName() + ")";
+	}
+}
@@ -1,310 +1,483 @@
-// Copyright (C) 2013, 2015-2016  Julián Urbano <urbano.julian@gmail.com>
-// Distributed under the terms of the MIT License.
-
-package jurbano.melodyshape.ui;
-
-import jurbano.melodyshape.MelodyShape;
-import jurbano.melodyshape.comparison.MelodyComparer;
-import jurbano.melodyshape.model.Melody;
-import jurbano.melodyshape.model.MelodyCollection;
-import jurbano.melodyshape.ranking.Result;
-import jurbano.melodyshape.ranking.ResultRanker;
-import org.apache.commons.cli.*;
-
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.*;
-
-/**
- * Runs an algorithm with options specified through the command line.
- * 
- * @author Julián Urbano
- * @see UIObserver
- */
-public class ConsoleUIObserver implements UIObserver {
-	protected String[] args;
-	protected Options options;
-
-	protected File qOpt;
-	protected File cOpt;
-	protected String aOpt;
-	protected boolean lOpt;
-	protected boolean hOpt;
-	protected int tOpt;
-	protected int kOpt;
-	protected int vOpt;
-
-	/**
-	 * Constructs a new {@code ConsoleUIObserver} according to some command line
-	 * arguments.
-	 * 
-	 * @param args
-	 *            the command line arguments to configure the algorithm.
-	 */
-	@SuppressWarnings("static-access")
-	public ConsoleUIObserver(String[] args) {
-		this.args = args;
-
-		this.qOpt = null;
-		this.cOpt = null;
-		this.aOpt = null;
-		this.lOpt = false;
-		this.hOpt = false;
-		this.tOpt = Runtime.getRuntime().availableProcessors();
-		this.kOpt = Integer.MAX_VALUE;
-		this.vOpt = 0;
-
-		this.options = new Options();
-		// required arguments
-		this.options.addOption(Option.builder("q").required().hasArg().argName("file/dir")
-				.desc("path to the query melody or melodies.").build());
-		this.options.addOption(Option.builder("c").required().hasArg().argName("dir")
-				.desc("path to the collection of documents.").build());
-		this.options.addOption(Option.builder("a").required().hasArg().argName("name")
-				.desc("algorithm to run:" + "\n- 2010-domain, 2010-pitchderiv, 2010-shape"
-								+ "\n- 2011-shape, 2011-pitch, 2011-time"
-								+ "\n- 2012-shapeh, 2012-shapel, 2012-shapeg, 2012-time, 2012-shapetime"
-								+ "\n- 2013-shapeh, 2013-time, 2013-shapetime"
-								+ "\n- 2014-shapeh, 2014-time, 2014-shapetime"
-								+ "\n- 2015-shapeh, 2015-time, 2015-shapetime").build());
-		// optional arguments
-		this.options.addOption(Option.builder("l").desc("show results in a single line (omits similarity scores).").build());
-		this.options.addOption(Option.builder("t").hasArg().argName("num").desc("run a fixed number of threads.").build());
-		this.options.addOption(Option.builder("k").hasArg().argName("cutoff").desc("number of documents to retrieve.").build());
-		this.options.addOption(Option.builder("v").desc("verbose, to stderr.").build());
-		this.options.addOption(Option.builder("vv").desc("verbose a lot, to stderr.").build());
-		this.options.addOption(Option.builder("h").desc("show this help message.").build());
-		this.options.addOption(Option.builder("gui").desc("run with graphical user interface.").build());
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public void start() {
-		/**
-		 * Parse Command Line Options
-		 */
-		boolean parsed = this.parseArguments();
-		if (!parsed)
-			System.exit(1);
-
-		if (this.hOpt) {
-			this.printUsage(this.options);
-			return;
-		}
-
-		// queries
-		ArrayList<Melody> queries = null;
-		try {
-			this.verbose(2, "Reading queries...");
-			queries = MelodyShape.readQueries(this.qOpt);
-			this.verbose(2, "done (" + queries.size() + " melodies).\n");
-		} catch (IllegalArgumentException ex) {
-			System.err.println("Error: " + ex.getMessage());
-			System.exit(1);
-		}
-		// documents
-		MelodyCollection coll = null;
-		try {
-			this.verbose(2, "Reading collection...");
-			coll = MelodyShape.readCollection(this.cOpt);
-			this.verbose(2, "done (" + coll.size() + " melodies).\n");
-		} catch (IllegalArgumentException ex) {
-			System.err.println("Error: " + ex.getMessage());
-			System.exit(1);
-		}
-		// algorithm
-		this.verbose(2, "Instantiating algorithm...");
-		MelodyComparer comparer = MelodyShape.getMainComparer(this.aOpt, coll);
-		ResultRanker ranker = MelodyShape.getMainRanker(this.aOpt, coll);
-		MelodyComparer comparerRerank = MelodyShape.getRerankComparer(this.aOpt, coll); // for 201x-shapetime
-		ResultRanker rankerRerank = MelodyShape.getRerankRanker(this.aOpt, coll); // for 201x-shapetime
-
-		this.verbose(2, "done.\n\n");
-		this.verbose(2, "  Comparer: " + comparer.getName() + "\n");
-		if (this.aOpt.equals("2012-shapetime") || this.aOpt.equals("2013-shapetime") || this.aOpt.equals("2014-shapetime")
-				 || this.aOpt.equals("2015-shapetime"))
-			this.verbose(2, "    Ranker: " + comparerRerank.getName() + "\n");
-		else
-			this.verbose(2, "    Ranker: " + ranker.getName() + "\n");
-		this.verbose(2, "   Threads: " + this.tOpt + "\n");
-
-		/**
-		 * Run Algorithm
-		 **/
-		for (int queryNum = 0; queryNum < queries.size(); queryNum++) {
-			Melody query = queries.get(queryNum);
-
-			this.verbose(1, "(" + (queryNum + 1) + "/" + queries.size() + ") " + query.getId() + "...");
-			this.verbose(2, "(" + (queryNum + 1) + "/" + queries.size() + ") " + query.getId() + ":");
-
-			long before = System.currentTimeMillis();
-			Result[] results = MelodyShape.runAlgorithm(comparer, comparerRerank, ranker, rankerRerank, this.kOpt,
-					queries, queryNum, coll, this.tOpt, this);
-			long after = System.currentTimeMillis();
-
-			this.verbose(1, "done.\n");
-			this.verbose(2, "done (" + (after - before) / 1000 + " sec).\n");
-
-			this.printResults(queries, queryNum, results);
-		}
-	}
-
-	protected boolean parseArguments() {
-		CommandLineParser parser = new DefaultParser();
-
-		// help? Cannot wait to parse args because it will throw exception
-		// before
-		for (String arg : this.args)
-			if (arg.equals("-h")) {
-				this.hOpt = true;
-				return true;
-			}
-		try {
-			CommandLine cmd = parser.parse(options, args);
-
-			// query
-			this.qOpt = new File(cmd.getOptionValue("q"));
-			if (!this.qOpt.exists()) {
-				System.err.println("Error: query file does not exist: '" + cmd.getOptionValue("q") + "'");
-				return false;
-			}
-			// documents
-			this.cOpt = new File(cmd.getOptionValue("c"));
-			if (!this.cOpt.exists() || !this.cOpt.isDirectory()) {
-				System.err.println("Error: documents directory does not exist: '" + cmd.getOptionValue("c") + "'");
-				return false;
-			}
-			// algorithm
-			this.aOpt = cmd.getOptionValue("a");
-			if (!MelodyShape.ALGORITHMS.contains(this.aOpt)) {
-				System.err.println("Error: invalid algorithm name: '" + cmd.getOptionValue("a") + "'");
-				return false;
-			}
-			// single-line
-			if (cmd.hasOption("l"))
-				this.lOpt = true;
-			// threads
-			if (cmd.hasOption("t")) {
-				try {
-					int tOptArg = Integer.parseInt(cmd.getOptionValue("t"));
-					if (tOptArg < 1) {
-						System.err.println("Error: invalid number ot threads: '" + cmd.getOptionValue("t") + "'");
-						return false;
-					}
-					this.tOpt = tOptArg;
-				} catch (NumberFormatException ex) {
-					System.err.println("Error: invalid number ot threads: '" + cmd.getOptionValue("t") + "'");
-					return false;
-				}
-			}
-			// cutoff
-			if (cmd.hasOption("k")) {
-				try {
-					this.kOpt = Integer.parseInt(cmd.getOptionValue("k"));
-					if (this.kOpt < 1) {
-						System.err.println("Error: invalid cutoff k: '" + kOpt + "'");
-						return false;
-					}
-				} catch (NumberFormatException ex) {
-					System.err.println("Error: invalid cutoff k: '" + cmd.getOptionValue("k") + "'");
-					return false;
-				}
-			}
-			// verbose
-			if (cmd.hasOption("v"))
-				this.vOpt = 1;
-			if (cmd.hasOption("vv"))
-				this.vOpt = 2;
-
-			return true;
-		} catch (ParseException e) {
-			System.err.println(e.getMessage());
-			this.printUsage(options);
-			return false;
-		}
-	}
-
-	protected void printResults(ArrayList<Melody> queries, int queryIndex, Result[] results) {
-		for (int k = 0; k < this.kOpt && k < results.length; k++) {
-			Result res = results[k];
-			if (queries.size() == 1) {
-				// just one query, don't output query ID
-				if (this.lOpt)
-					if (k + 1 < this.kOpt && k + 1 < results.length)
-						System.out.print(res.getMelody().getId() + "\t");
-					else
-						System.out.println(res.getMelody().getId());
-				else
-					System.out.println(res.getMelody().getId() + "\t"
-							+ String.format(Locale.ENGLISH, "%.8f", res.getScore()));
-			} else {
-				// several queries, output query IDs
-				if (this.lOpt) {
-					if (k == 0)
-						System.out.print(queries.get(queryIndex).getId() + "\t");
-					if (k + 1 < this.kOpt && k + 1 < results.length)
-						System.out.print(res.getMelody().getId() + "\t");
-					else
-						System.out.println(res.getMelody().getId());
-				} else
-					System.out.println(queries.get(queryIndex).getId() + "\t" + res.getMelody().getId() + "\t"
-							+ String.format(Locale.ENGLISH, "%.8f", res.getScore()));
-			}
-		}
-	}
-
-	protected void verbose(int level, String msg) {
-		if (this.vOpt == level)
-			System.err.print(msg);
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public void updateProgressComparer(Melody query, int numQuery, int totalQueries, double progress) {
-		int width = 40;
-		StringBuilder sb = new StringBuilder("\r");
-		sb.append("(" + (numQuery + 1) + "/" + totalQueries + ") " + query.getId() + ": [");
-		int done = (int) (width * progress);
-		int pending = width - done;
-		for (int i = 0; i < done; i++)
-			sb.append("=");
-		if (pending > 0)
-			sb.append(">");
-		for (int i = 1; i < pending; i++)
-			sb.append(" ");
-		sb.append("] " + String.format("%3s", (int) (100 * progress)) + "% comparing...");
-		this.verbose(2, sb.toString());
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-
-	@Override
-	public void updateStartRanker(Melody query, int numQuery, int totalQueries) {
-		this.verbose(2, "ranking...");
-	}
-
-	/**
-	 * Prints the usage message to stderr.
-	 * 
-	 * @param options
-	 *            the command line options.
-	 */
-	protected void printUsage(Options options) {
-		HelpFormatter formatter = new HelpFormatter();
-		formatter.setOptionComparator(new Comparator<Option>() {
-			public int compare(Option o1, Option o2) {
-				List<String> options = Arrays.asList("q", "c", "a", "k", "l", "t", "v", "vv", "gui", "h");
-
-				return Integer.compare(options.indexOf(o1.getOpt()), options.indexOf(o2.getOpt()));
-			}
-		});
-		formatter.printHelp(new PrintWriter(System.err, true), Integer.MAX_VALUE, "melodyshape-" + MelodyShape.VERSION,
-				null, options, 0, 2, "\n" + MelodyShape.COPYRIGHT_NOTICE, true);
-	}
-}
+// Copyright (C) 2013, 2015-2016  Julián Urbano <urbano.julian@gmail.com>
+// Distributed under the terms of the MIT License.
+
+package jurbano.melodyshape.ui;
+
+import jurbano.melodyshape.MelodyShape;
+import jurbano.melodyshape.comparison.MelodyComparer;
+import jurbano.melodyshape.comparison.MelodyIndex;
+import jurbano.melodyshape.comparison.MinHashIndex;
+import jurbano.melodyshape.comparison.NGramIndex;
+import jurbano.melodyshape.comparison.alignment.Alignment;
+import jurbano.melodyshape.comparison.alignment.AlignmentLimits;
+import jurbano.melodyshape.comparison.alignment.AlignmentPrecision;
+import jurbano.melodyshape.model.Melody;
+import jurbano.melodyshape.model.MelodyCollection;
+import jurbano.melodyshape.ranking.Result;
+import jurbano.melodyshape.ranking.ResultRanker;
+import org.apache.commons.cli.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Runs an algorithm with options specified through the command line.
+ * 
+ * @author Julián Urbano
+ * @see UIObserver
+ */
+public class ConsoleUIObserver implements UIObserver {
+	protected String[] args;
+	protected Options options;
+
+	protected File qOpt;
+	protected File cOpt;
+	protected String aOpt;
+	protected boolean lOpt;
+	protected boolean eOpt;
+	protected boolean hOpt;
+	protected int tOpt;
+	protected int kOpt;
+	protected int sOpt;
+	protected int[] mOpt;
+	protected int vOpt;
+	protected int bOpt;
+	protected double xOpt;
+	protected AlignmentPrecision pOpt;
+	protected int cacheOpt;
+
+	/**
+	 * Constructs a new {@code ConsoleUIObserver} according to some command line
+	 * arguments.
+	 * 
+	 * @param args
+	 *            the command line arguments to configure the algorithm.
+	 */
+	@SuppressWarnings("static-access")
+	public ConsoleUIObserver(String[] args) {
+		this.args = args;
+
+		this.qOpt = null;
+		this.cOpt = null;
+		this.aOpt = null;
+		this.lOpt = false;
+		this.eOpt = false;
+		this.hOpt = false;
+		this.tOpt = Runtime.getRuntime().availableProcessors();
+		this.kOpt = Integer.MAX_VALUE;
+		this.sOpt = Integer.MAX_VALUE;
+		this.mOpt = null;
+		this.vOpt = 0;
+		this.bOpt = Integer.MAX_VALUE;
+		this.xOpt = Double.POSITIVE_INFINITY;
+		this.pOpt = AlignmentPrecision.DOUBLE;
+		this.cacheOpt = 0;
+
+		this.options = new Options();
+		// required arguments
+		this.options.addOption(Option.builder("q").required().hasArg().argName("file/dir")
+				.desc("path to the query melody or melodies.").build());
+		this.options.addOption(Option.builder("c").required().hasArg().argName("dir")
+				.desc("path to the collection of documents.").build());
+		this.options.addOption(Option.builder("a").required().hasArg().argName("name")
+				.desc("algorithm to run:" + "\n- 2010-domain, 2010-pitchderiv, 2010-shape"
+								+ "\n- 2011-shape, 2011-pitch, 2011-time"
+								+ "\n- 2012-shapeh, 2012-shapel, 2012-shapeg, 2012-time, 2012-shapetime"
+								+ "\n- 2013-shapeh, 2013-time, 2013-shapetime"
+								+ "\n- 2014-shapeh, 2014-time, 2014-shapetime"
+								+ "\n- 2015-shapeh, 2015-time, 2015-shapetime").build());
+		// optional arguments
+		this.options.addOption(Option.builder("l").desc("show results in a single line (omits similarity scores).").build());
+		this.options.addOption(Option.builder("e").desc("explain results with the n-grams aligned with the query (omitted with -l).").build());
+		this.options.addOption(Option.builder("t").hasArg().argName("num").desc("run a fixed number of threads.").build());
+		this.options.addOption(Option.builder("k").hasArg().argName("cutoff").desc("number of documents to retrieve.").build());
+		this.options.addOption(Option.builder("s").hasArg().argName("candidates")
+				.desc("compare only with the documents that share the most n-grams with the query.").build());
+		this.options.addOption(Option.builder("m").hasArg().argName("bands>x<rows")
+				.desc("compare only with the documents that share a band of the MinHash signature with the query.").build());
+		this.options.addOption(Option.builder("b").hasArg().argName("width")
+				.desc("align only within a band of this width around the diagonal (hybrid and global).").build());
+		this.options.addOption(Option.builder("x").hasArg().argName("drop")
+				.desc("stop extending alignments that drop this much below the best score (hybrid and global).").build());
+		this.options.addOption(Option.builder("p").hasArg().argName("precision")
+				.desc("arithmetic of the alignments: double (default), float or fixed.").build());
+		this.options.addOption(Option.builder("cache").hasArg().argName("mbytes")
+				.desc("cache n-gram scores in this many megabytes, replacing the least used.").build());
+		this.options.addOption(Option.builder("v").desc("verbose, to stderr.").build());
+		this.options.addOption(Option.builder("vv").desc("verbose a lot, to stderr.").build());
+		this.options.addOption(Option.builder("h").desc("show this help message.").build());
+		this.options.addOption(Option.builder("gui").desc("run with graphical user interface.").build());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void start() {
+		/**
+		 * Parse Command Line Options
+		 */
+		boolean parsed = this.parseArguments();
+		if (!parsed)
+			System.exit(1);
+
+		if (this.hOpt) {
+			this.printUsage(this.options);
+			return;
+		}
+
+		// queries
+		ArrayList<Melody> queries = null;
+		try {
+			this.verbose(2, "Reading queries...");
+			queries = MelodyShape.readQueries(this.qOpt);
+			this.verbose(2, "done (" + queries.size() + " melodies).\n");
+		} catch (IllegalArgumentException ex) {
+			System.err.println("Error: " + ex.getMessage());
+			System.exit(1);
+		}
+		// documents
+		MelodyCollection coll = null;
+		try {
+			this.verbose(2, "Reading collection...");
+			coll = MelodyShape.readCollection(this.cOpt);
+			this.verbose(2, "done (" + coll.size() + " melodies).\n");
+		} catch (IllegalArgumentException ex) {
+			System.err.println("Error: " + ex.getMessage());
+			System.exit(1);
+		}
+		// index
+		MelodyIndex index = null;
+		MinHashIndex minHashIndex = null;
+		if (this.sOpt != Integer.MAX_VALUE) {
+			this.verbose(2, "Indexing collection...");
+			NGramIndex nGramIndex = MelodyShape.getIndex(this.aOpt, coll, this.sOpt);
+			index = nGramIndex;
+			this.verbose(2, "done (" + nGramIndex.size() + " n-grams).\n");
+		} else if (this.mOpt != null) {
+			this.verbose(2, "Indexing collection...");
+			minHashIndex = MelodyShape.getMinHashIndex(this.aOpt, coll, this.mOpt[0], this.mOpt[1]);
+			index = minHashIndex;
+			this.verbose(2, "done.\n");
+		}
+		// algorithm
+		this.verbose(2, "Instantiating algorithm...");
+		AlignmentLimits limits = AlignmentLimits.NONE;
+		if (this.bOpt != Integer.MAX_VALUE || this.xOpt != Double.POSITIVE_INFINITY)
+			limits = new AlignmentLimits(this.bOpt, this.xOpt);
+		long cacheBytes = this.cacheOpt * 1024L * 1024L;
+		MelodyComparer comparer = MelodyShape.getMainComparer(this.aOpt, coll, limits, this.pOpt, cacheBytes);
+		ResultRanker ranker = MelodyShape.getMainRanker(this.aOpt, coll);
+		MelodyComparer comparerRerank = MelodyShape.getRerankComparer(this.aOpt, coll, cacheBytes); // for 201x-shapetime
+		ResultRanker rankerRerank = MelodyShape.getRerankRanker(this.aOpt, coll); // for 201x-shapetime
+
+		this.verbose(2, "done.\n\n");
+		this.verbose(2, "  Comparer: " + comparer.getName() + "\n");
+		if (this.aOpt.equals("2012-shapetime") || this.aOpt.equals("2013-shapetime") || this.aOpt.equals("2014-shapetime")
+				 || this.aOpt.equals("2015-shapetime"))
+			this.verbose(2, "    Ranker: " + comparerRerank.getName() + "\n");
+		else
+			this.verbose(2, "    Ranker: " + ranker.getName() + "\n");
+		this.verbose(2, "   Threads: " + this.tOpt + "\n");
+		if (index != null)
+			this.verbose(2, "     Index: " + index.getName() + "\n");
+		if (minHashIndex != null)
+			this.verbose(2, "    Recall: " + String.format(Locale.ENGLISH,
+					"%.2f at Jaccard 0.25, %.2f at 0.5, %.2f at 0.75 (threshold %.2f)",
+					minHashIndex.getRecall(0.25), minHashIndex.getRecall(0.5), minHashIndex.getRecall(0.75),
+					minHashIndex.getThreshold()) + "\n");
+		if (!limits.isUnlimited())
+			this.verbose(2, "    Limits: band=" + this.bOpt + ", xdrop=" + this.xOpt + "\n");
+		if (this.pOpt != AlignmentPrecision.DOUBLE)
+			this.verbose(2, " Precision: " + this.pOpt.getName() + "\n");
+		if (this.cacheOpt != 0)
+			this.verbose(2, "     Cache: " + this.cacheOpt + " MB\n");
+
+		/**
+		 * Run Algorithm
+		 **/
+		for (int queryNum = 0; queryNum < queries.size(); queryNum++) {
+			Melody query = queries.get(queryNum);
+
+			this.verbose(1, "(" + (queryNum + 1) + "/" + queries.size() + ") " + query.getId() + "...");
+			this.verbose(2, "(" + (queryNum + 1) + "/" + queries.size() + ") " + query.getId() + ":");
+
+			long before = System.currentTimeMillis();
+			List<Melody> candidates = index != null ? index.getCandidates(query) : null;
+			Result[] results = MelodyShape.runAlgorithm(comparer, comparerRerank, ranker, rankerRerank, this.kOpt,
+					queries, queryNum, coll, candidates, this.tOpt, this);
+			if (this.eOpt)
+				MelodyShape.explainResults(comparerRerank != null ? comparerRerank : comparer, query, results,
+						this.kOpt, this.tOpt);
+			long after = System.currentTimeMillis();
+
+			this.verbose(1, "done.\n");
+			this.verbose(2, "done (" + (after - before) / 1000 + " sec).\n");
+			if (candidates != null)
+				this.verbose(2, "  compared " + candidates.size() + " of " + coll.size()
+						+ " documents.\n");
+			if (!limits.isUnlimited())
+				this.verbose(2, "  hit limits in " + limits.getHitCount() + " of " + limits.getAlignmentCount()
+						+ " alignments so far.\n");
+
+			this.printResults(queries, queryNum, results);
+		}
+	}
+
+	protected boolean parseArguments() {
+		CommandLineParser parser = new DefaultParser();
+
+		// help? Cannot wait to parse args because it will throw exception
+		// before
+		for (String arg : this.args)
+			if (arg.equals("-h")) {
+				this.hOpt = true;
+				return true;
+			}
+		try {
+			CommandLine cmd = parser.parse(options, args);
+
+			// query
+			this.qOpt = new File(cmd.getOptionValue("q"));
+			if (!this.qOpt.exists()) {
+				System.err.println("Error: query file does not exist: '" + cmd.getOptionValue("q") + "'");
+				return false;
+			}
+			// documents
+			this.cOpt = new File(cmd.getOptionValue("c"));
+			if (!this.cOpt.exists() || !this.cOpt.isDirectory()) {
+				System.err.println("Error: documents directory does not exist: '" + cmd.getOptionValue("c") + "'");
+				return false;
+			}
+			// algorithm
+			this.aOpt = cmd.getOptionValue("a");
+			if (!MelodyShape.ALGORITHMS.contains(this.aOpt)) {
+				System.err.println("Error: invalid algorithm name: '" + cmd.getOptionValue("a") + "'");
+				return false;
+			}
+			// single-line
+			if (cmd.hasOption("l"))
+				this.lOpt = true;
+			// explain
+			if (cmd.hasOption("e"))
+				this.eOpt = true;
+			// threads
+			if (cmd.hasOption("t")) {
+				try {
+					int tOptArg = Integer.parseInt(cmd.getOptionValue("t"));
+					if (tOptArg < 1) {
+						System.err.println("Error: invalid number ot threads: '" + cmd.getOptionValue("t") + "'");
+						return false;
+					}
+					this.tOpt = tOptArg;
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid number ot threads: '" + cmd.getOptionValue("t") + "'");
+					return false;
+				}
+			}
+			// cutoff
+			if (cmd.hasOption("k")) {
+				try {
+					this.kOpt = Integer.parseInt(cmd.getOptionValue("k"));
+					if (this.kOpt < 1) {
+						System.err.println("Error: invalid cutoff k: '" + kOpt + "'");
+						return false;
+					}
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid cutoff k: '" + cmd.getOptionValue("k") + "'");
+					return false;
+				}
+			}
+			// candidates
+			if (cmd.hasOption("s")) {
+				try {
+					this.sOpt = Integer.parseInt(cmd.getOptionValue("s"));
+					if (this.sOpt < 1) {
+						System.err.println("Error: invalid number of candidates: '" + cmd.getOptionValue("s") + "'");
+						return false;
+					}
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid number of candidates: '" + cmd.getOptionValue("s") + "'");
+					return false;
+				}
+			}
+			// MinHash
+			if (cmd.hasOption("m")) {
+				try {
+					String[] mOptArgs = cmd.getOptionValue("m").split("x");
+					if (mOptArgs.length != 2)
+						throw new NumberFormatException();
+					this.mOpt = new int[] { Integer.parseInt(mOptArgs[0]), Integer.parseInt(mOptArgs[1]) };
+					if (this.mOpt[0] < 1 || this.mOpt[1] < 1) {
+						System.err.println("Error: invalid MinHash bands and rows: '" + cmd.getOptionValue("m") + "'");
+						return false;
+					}
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid MinHash bands and rows: '" + cmd.getOptionValue("m") + "'");
+					return false;
+				}
+				if (cmd.hasOption("s")) {
+					System.err.println("Error: options -s and -m cannot be used together");
+					return false;
+				}
+			}
+			// band
+			if (cmd.hasOption("b")) {
+				try {
+					this.bOpt = Integer.parseInt(cmd.getOptionValue("b"));
+					if (this.bOpt < 0) {
+						System.err.println("Error: invalid band width: '" + cmd.getOptionValue("b") + "'");
+						return false;
+					}
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid band width: '" + cmd.getOptionValue("b") + "'");
+					return false;
+				}
+			}
+			// x-drop
+			if (cmd.hasOption("x")) {
+				try {
+					this.xOpt = Double.parseDouble(cmd.getOptionValue("x"));
+					if (!(this.xOpt >= 0)) {
+						System.err.println("Error: invalid x-drop: '" + cmd.getOptionValue("x") + "'");
+						return false;
+					}
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid x-drop: '" + cmd.getOptionValue("x") + "'");
+					return false;
+				}
+			}
+			// precision
+			if (cmd.hasOption("p")) {
+				try {
+					this.pOpt = AlignmentPrecision.forName(cmd.getOptionValue("p"));
+				} catch (IllegalArgumentException ex) {
+					System.err.println("Error: invalid precision: '" + cmd.getOptionValue("p") + "'");
+					return false;
+				}
+			}
+			// cache
+			if (cmd.hasOption("cache")) {
+				try {
+					this.cacheOpt = Integer.parseInt(cmd.getOptionValue("cache"));
+					if (this.cacheOpt < 1) {
+						System.err.println("Error: invalid cache size: '" + cmd.getOptionValue("cache") + "'");
+						return false;
+					}
+				} catch (NumberFormatException ex) {
+					System.err.println("Error: invalid cache size: '" + cmd.getOptionValue("cache") + "'");
+					return false;
+				}
+			}
+			// verbose
+			if (cmd.hasOption("v"))
+				this.vOpt = 1;
+			if (cmd.hasOption("vv"))
+				this.vOpt = 2;
+
+			return true;
+		} catch (ParseException e) {
+			System.err.println(e.getMessage());
+			this.printUsage(options);
+			return false;
+		}
+	}
+
+	protected void printResults(ArrayList<Melody> queries, int queryIndex, Result[] results) {
+		for (int k = 0; k < this.kOpt && k < results.length; k++) {
+			Result res = results[k];
+			if (queries.size() == 1) {
+				// just one query, don't output query ID
+				if (this.lOpt)
+					if (k + 1 < this.kOpt && k + 1 < results.length)
+						System.out.print(res.getMelody().getId() + "\t");
+					else
+						System.out.println(res.getMelody().getId());
+				else
+					System.out.println(res.getMelody().getId() + "\t"
+							+ String.format(Locale.ENGLISH, "%.8f", res.getScore()));
+			} else {
+				// several queries, output query IDs
+				if (this.lOpt) {
+					if (k == 0)
+						System.out.print(queries.get(queryIndex).getId() + "\t");
+					if (k + 1 < this.kOpt && k + 1 < results.length)
+						System.out.print(res.getMelody().getId() + "\t");
+					else
+						System.out.println(res.getMelody().getId());
+				} else
+					System.out.println(queries.get(queryIndex).getId() + "\t" + res.getMelody().getId() + "\t"
+							+ String.format(Locale.ENGLISH, "%.8f", res.getScore()));
+			}
+			if (!this.lOpt && res.getAlignment() != null)
+				this.printAlignment(res.getAlignment());
+		}
+	}
+
+	protected void printAlignment(Alignment alignment) {
+		StringBuilder sb = new StringBuilder("\tquery " + alignment.getQueryStart() + "-" + alignment.getQueryEnd()
+				+ "\tdocument " + alignment.getDocumentStart() + "-" + alignment.getDocumentEnd() + "\t");
+		for (int step = 0; step < alignment.getLength(); step++) {
+			if (step > 0)
+				sb.append(" ");
+			int q = alignment.getQueryIndex(step);
+			int d = alignment.getDocumentIndex(step);
+			sb.append((q == Alignment.GAP ? "-" : String.valueOf(q)) + ":" + (d == Alignment.GAP ? "-" : String.valueOf(d)));
+		}
+		System.out.println(sb.toString());
+	}
+
+	protected void verbose(int level, String msg) {
+		if (this.vOpt == level)
+			System.err.print(msg);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void updateProgressComparer(Melody query, int numQuery, int totalQueries, double progress) {
+		int width = 40;
+		StringBuilder sb = new StringBuilder("\r");
+		sb.append("(" + (numQuery + 1) + "/" + totalQueries + ") " + query.getId() + ": [");
+		int done = (int) (width * progress);
+		int pending = width - done;
+		for (int i = 0; i < done; i++)
+			sb.append("=");
+		if (pending > 0)
+			sb.append(">");
+		for (int i = 1; i < pending; i++)
+			sb.append(" ");
+		sb.append("] " + String.format("%3s", (int) (100 * progress)) + "% comparing...");
+		this.verbose(2, sb.toString());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
+	@Override
+	public void updateStartRanker(Melody query, int numQuery, int totalQueries) {
+		this.verbose(2, "ranking...");
+	}
+
+	/**
+	 * Prints the usage message to stderr.
+	 * 
+	 * @param options
+	 *            the command line options.
+	 */
+	protected void printUsage(Options options) {
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.setOptionComparator(new Comparator<Option>() {
+			public int compare(Option o1, Option o2) {
+				List<String> options = Arrays.asList("q", "c", "a", "k", "l", "e", "t", "s", "m", "b", "x", "p", "cache", "v", "vv", "gui", "h");
+
+				return Integer.compare(options.indexOf(o1.getOpt()), options.indexOf(o2.getOpt()));
+			}
+		});
+		formatter.printHelp(new PrintWriter(System.err, true), Integer.MAX_VALUE, "melodyshape-" + MelodyShape.VERSION,
+				null, options, 0, 2, "\n" + MelodyShape.COPYRIGHT_NOTICE, true);
+	}
+}